@@ -24,6 +24,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * This class represents a hologram. A hologram is a collection of components
@@ -171,4 +172,15 @@ public interface Hologram {
     @NotNull
     List<HologramPage> getPages();
 
+    /**
+     * Edit the pages of this hologram in one batch. All pages are edited at once
+     * (see {@link HologramPage#edit(Consumer)}), so the changes of each page are
+     * only sent to the viewers after the editor finishes.
+     *
+     * @param editor The consumer, that edits the hologram.
+     * @return Instance of this hologram.
+     */
+    @NotNull
+    Hologram edit(@NotNull Consumer<Hologram> editor);
+
 }
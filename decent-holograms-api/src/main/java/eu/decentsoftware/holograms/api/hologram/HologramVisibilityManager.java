@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -149,6 +150,30 @@ public interface HologramVisibilityManager {
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * Call the given consumer for each player that currently sees this hologram.
+     * Unlike {@link #getViewerPlayers()}, this method is not required to create
+     * a copy of the viewers, so prefer it if you only need to iterate them.
+     *
+     * @param consumer The consumer.
+     */
+    default void forEachViewer(@NotNull Consumer<Player> consumer) {
+        getViewerPlayers().forEach(consumer);
+    }
+
+    /**
+     * Call the given consumer for each player that currently sees this hologram
+     * at the given page. Unlike {@link #getViewerPlayers(int)}, this method is not
+     * required to create a copy of the viewers, so prefer it if you only need to
+     * iterate them.
+     *
+     * @param page     The page of the players.
+     * @param consumer The consumer.
+     */
+    default void forEachViewer(int page, @NotNull Consumer<Player> consumer) {
+        getViewerPlayers(page).forEach(consumer);
+    }
+
     /**
      * Get the players that are allowed to see the hologram.
      *
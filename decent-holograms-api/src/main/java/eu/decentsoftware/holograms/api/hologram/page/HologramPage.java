@@ -26,6 +26,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * This class represents a hologram page. A page is a collection of lines.
@@ -182,7 +183,9 @@ public interface HologramPage {
     HologramPage clearLines();
 
     /**
-     * Set the lines of this page.
+     * Set the lines of this page. The existing lines are reused for the new
+     * contents, so lines of the same type keep their entities and only the
+     * changed lines are updated for the viewers.
      *
      * @param lines The lines to set.
      * @return Instance of this page.
@@ -207,4 +210,35 @@ public interface HologramPage {
     @NotNull
     List<HologramLine> getLines();
 
+    /**
+     * Edit this page in one batch. The editor can freely add, remove and set lines,
+     * but nothing is sent to the viewers until it finishes. Then the old and the new
+     * lines are compared and only the differences are sent, followed by one relayout.
+     *
+     * @param editor The consumer, that edits the page.
+     * @return Instance of this page.
+     * @see #beginEdit()
+     * @see #commitEdit()
+     */
+    @NotNull
+    HologramPage edit(@NotNull Consumer<HologramPage> editor);
+
+    /**
+     * Start editing this page in one batch. All changes made until {@link #commitEdit()}
+     * is called are only sent to the viewers when the edit is committed. Edits can be
+     * nested, the changes are sent when the outermost edit is committed.
+     *
+     * @see #edit(Consumer)
+     */
+    void beginEdit();
+
+    /**
+     * Finish editing this page and send the changes made since {@link #beginEdit()}
+     * to the viewers.
+     *
+     * @throws IllegalStateException If the page is not being edited.
+     * @see #edit(Consumer)
+     */
+    void commitEdit();
+
 }
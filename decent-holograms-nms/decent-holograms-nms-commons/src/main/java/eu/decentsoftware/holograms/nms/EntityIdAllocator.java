@@ -0,0 +1,126 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.nms;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This class allocates entity ids for fake entities. The ids are reserved from the
+ * server in blocks, so the server's entity counter is only touched once per block,
+ * and the ids within a block are handed out with an atomic counter. Ids of destroyed
+ * fake entities can be released, so they are handed out again before new ids are
+ * reserved.
+ *
+ * @author d0by
+ * @since 3.0.0
+ */
+public final class EntityIdAllocator {
+
+    /**
+     * The default number of ids reserved from the server at once.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private final IntUnaryOperator reserver;
+    private final int blockSize;
+    /**
+     * The current block of ids. The upper 32 bits hold the next id
+     * and the lower 32 bits hold the end of the block (exclusive).
+     */
+    private final AtomicLong block;
+    private final Queue<Integer> released;
+
+    /**
+     * Creates a new instance of {@link EntityIdAllocator} with the default block size.
+     *
+     * @param reserver The function, that reserves the given number of consecutive
+     *                 ids from the server and returns the first of them.
+     */
+    public EntityIdAllocator(@NotNull IntUnaryOperator reserver) {
+        this(reserver, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a new instance of {@link EntityIdAllocator}.
+     *
+     * @param reserver  The function, that reserves the given number of consecutive
+     *                  ids from the server and returns the first of them.
+     * @param blockSize The number of ids reserved from the server at once.
+     */
+    public EntityIdAllocator(@NotNull IntUnaryOperator reserver, int blockSize) {
+        this.reserver = reserver;
+        this.blockSize = Math.max(1, blockSize);
+        this.block = new AtomicLong(0L);
+        this.released = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Get a free entity id. Released ids are handed out first.
+     *
+     * @return The entity id.
+     */
+    public int allocate() {
+        Integer releasedId = released.poll();
+        if (releasedId != null) {
+            return releasedId;
+        }
+
+        while (true) {
+            long current = block.get();
+            int next = (int) (current >>> 32);
+            int end = (int) current;
+            if (next < end) {
+                if (block.compareAndSet(current, pack(next + 1, end))) {
+                    return next;
+                }
+                continue;
+            }
+            reserveBlock(current);
+        }
+    }
+
+    /**
+     * Release the given entity id, so it can be allocated again. The id must not
+     * be used anymore and the entity must already be destroyed for all players.
+     *
+     * @param id The entity id.
+     */
+    public void release(int id) {
+        released.add(id);
+    }
+
+    private synchronized void reserveBlock(long exhausted) {
+        // Another thread may have reserved a new block in the meantime.
+        if (block.get() != exhausted) {
+            return;
+        }
+        int first = reserver.applyAsInt(blockSize);
+        block.set(pack(first, first + blockSize));
+    }
+
+    private static long pack(int next, int end) {
+        return ((long) next << 32) | (end & 0xFFFFFFFFL);
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.nms;
+
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class collects the ids of entities, that are being destroyed for players,
+ * so the entities of each player can be destroyed with one packet, instead of one
+ * packet per entity. (See {@link NMSAdapter#removeEntities(Player, int...)})
+ * <p>
+ * This class is not thread-safe, it's meant to be used by one thread at a time.
+ *
+ * @author d0by
+ * @since 3.0.0
+ */
+public final class EntityRemoval {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<Player, EntityIds> entityIds;
+
+    /**
+     * Creates a new instance of {@link EntityRemoval}.
+     */
+    public EntityRemoval() {
+        this.entityIds = new LinkedHashMap<>();
+    }
+
+    /**
+     * Add the given entities to be destroyed for the given player.
+     *
+     * @param player The player.
+     * @param eids   The entity ids.
+     */
+    public void add(@NotNull Player player, int... eids) {
+        if (eids.length == 0) {
+            return;
+        }
+        entityIds.computeIfAbsent(player, (p) -> new EntityIds()).add(eids);
+    }
+
+    /**
+     * Check whether there are no entities to destroy.
+     *
+     * @return True if there are no entities, false otherwise.
+     */
+    public boolean isEmpty() {
+        return entityIds.isEmpty();
+    }
+
+    /**
+     * Destroy the collected entities using the given adapter. One packet is sent to
+     * each player. After this, the collected entities are cleared.
+     *
+     * @param adapter The adapter.
+     */
+    public void send(@NotNull NMSAdapter adapter) {
+        for (Map.Entry<Player, EntityIds> entry : entityIds.entrySet()) {
+            try {
+                adapter.removeEntities(entry.getKey(), entry.getValue().toArray());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        entityIds.clear();
+    }
+
+    private static class EntityIds {
+
+        private int[] values = new int[INITIAL_CAPACITY];
+        private int size = 0;
+
+        void add(int[] eids) {
+            if (size + eids.length > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + eids.length));
+            }
+            System.arraycopy(eids, 0, values, size, eids.length);
+            size += eids.length;
+        }
+
+        @NotNull
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+    }
+
+}
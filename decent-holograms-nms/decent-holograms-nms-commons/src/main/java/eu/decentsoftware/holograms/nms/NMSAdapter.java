@@ -20,7 +20,11 @@ package eu.decentsoftware.holograms.nms;
 
 import eu.decentsoftware.holograms.nms.event.PacketPlayInUseEntityEvent;
 import eu.decentsoftware.holograms.nms.utils.EntityEquipmentSlot;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
+import io.netty.util.ReferenceCountUtil;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -30,6 +34,7 @@ import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -56,6 +61,121 @@ public interface NMSAdapter {
      */
     void sendPacket(@NotNull Player player, Object packet);
 
+    /**
+     * Sends the given packets to a player at once. The packets are written directly
+     * to the player's pipeline on its event loop and the channel is flushed only once.
+     *
+     * @param player  The player to send the packets to.
+     * @param packets The packets to send.
+     * @see PacketBatch
+     */
+    default void sendPackets(@NotNull Player player, @NotNull List<?> packets) {
+        if (packets.isEmpty()) {
+            return;
+        }
+        ChannelPipeline pipeline = getPipeline(player);
+        Channel channel = pipeline.channel();
+        Object[] array = packets.toArray();
+        if (!channel.isOpen()) {
+            for (Object packet : array) {
+                ReferenceCountUtil.release(packet);
+            }
+            return;
+        }
+        channel.eventLoop().execute(() -> {
+            ChannelHandlerContext encoder = pipeline.context("encoder");
+            for (Object packet : array) {
+                if (packet instanceof ByteBuf) {
+                    // Already encoded packets skip the encoder. (See #sendEncodedPacket)
+                    if (encoder != null) {
+                        encoder.write(packet);
+                    } else {
+                        ReferenceCountUtil.release(packet);
+                    }
+                } else {
+                    pipeline.write(packet);
+                }
+            }
+            pipeline.flush();
+        });
+    }
+
+    /**
+     * Sends the same packet to multiple players. The packet is encoded only once into
+     * a pooled buffer, which is then written to each player's channel as a retained
+     * duplicate. Players, whose channel doesn't support this, get the packet as usual.
+     *
+     * @param players The players to send the packet to.
+     * @param packet  The packet to send.
+     * @see #encodePacket(Object)
+     */
+    default void sendSharedPacket(@NotNull Collection<? extends Player> players, Object packet) {
+        ByteBuf buf = players.size() > 1 ? encodePacket(packet) : null;
+        if (buf == null) {
+            for (Player player : players) {
+                sendPacket(player, packet);
+            }
+            return;
+        }
+
+        try {
+            for (Player player : players) {
+                if (canSendEncodedPacket(player)) {
+                    // Netty 4.0 doesn't have retainedDuplicate().
+                    sendEncodedPacket(player, buf.duplicate().retain());
+                } else {
+                    sendPacket(player, packet);
+                }
+            }
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Sends an already encoded packet to a player. The buffer is written past the
+     * encoder of the player's pipeline, so it's only framed (and compressed).
+     * This method takes over one reference of the buffer.
+     *
+     * @param player The player to send the packet to.
+     * @param buf    The encoded packet.
+     * @see #canSendEncodedPacket(Player)
+     */
+    default void sendEncodedPacket(@NotNull Player player, @NotNull ByteBuf buf) {
+        if (PacketBatch.queue(player, buf)) {
+            return;
+        }
+        ChannelHandlerContext encoder = getPipeline(player).context("encoder");
+        if (encoder == null || !encoder.channel().isOpen()) {
+            buf.release();
+            return;
+        }
+        encoder.writeAndFlush(buf);
+    }
+
+    /**
+     * Encode the given packet into a new pooled buffer, the same way the encoder
+     * of a player's pipeline does. The caller is responsible for releasing it.
+     *
+     * @param packet The packet to encode.
+     * @return The buffer or null if the packet can't be encoded by this adapter.
+     */
+    default ByteBuf encodePacket(Object packet) {
+        return null;
+    }
+
+    /**
+     * Check whether already encoded packets can be sent to the given player. This is
+     * not the case, if the encoder of the player's pipeline has been replaced, e.g. by
+     * a protocol translation plugin, as the packets must not bypass it then.
+     *
+     * @param player The player.
+     * @return True if encoded packets can be sent, false otherwise.
+     */
+    default boolean canSendEncodedPacket(@NotNull Player player) {
+        return false;
+    }
+
     /**
      * Sends a packet to all online players.
      *
@@ -270,6 +390,16 @@ public interface NMSAdapter {
      */
     void sendEntityMetadata(Player player, int eid, List<?> objects);
 
+    /**
+     * Create the packet to update the entity metadata, without sending it.
+     *
+     * @param eid     The entity id.
+     * @param objects The entity metadata objects.
+     * @return The packet or null if it couldn't be created.
+     * @see #sendSharedPacket(Collection, Object)
+     */
+    Object createEntityMetadataPacket(int eid, List<?> objects);
+
     /**
      * Create a new entity metadata object, that represents a custom metadata value.
      *
@@ -376,13 +506,24 @@ public interface NMSAdapter {
      * Get a free, unique entity id.
      * <p>
      * All entity ids coming from this method are unique and will not be used
-     * by any other entity. This is because the entity ids are generated by
-     * the server and are not reused.
+     * by any other entity. This is because the entity ids are reserved from
+     * the server, which never reuses them. Only ids released using
+     * {@link #releaseEntityId(int)} are handed out again.
      *
      * @return The free entity id.
+     * @see EntityIdAllocator
      */
     int getFreeEntityId();
 
+    /**
+     * Release the given entity id, so it can be returned by {@link #getFreeEntityId()}
+     * again. The id must not be used anymore and the entity must already be destroyed
+     * for all players.
+     *
+     * @param eid The entity id.
+     */
+    void releaseEntityId(int eid);
+
     /**
      * Get the entity type id of a certain entity type.
      *
@@ -423,6 +564,38 @@ public interface NMSAdapter {
      */
     void spawnEntityLiving(Player player, int eid, UUID id, EntityType type, Location l);
 
+    /**
+     * Send the spawn packet for a living entity along with its metadata to the given
+     * player. The metadata is part of the spawn packet, if the protocol allows it (see
+     * {@link #canInlineSpawnMetadata()}). Otherwise, it's sent in a separate packet.
+     *
+     * @param player   The player to spawn the entity for.
+     * @param eid      The entity id.
+     * @param id       The entity uuid.
+     * @param type     The entity type.
+     * @param l        The location to spawn the entity at.
+     * @param metadata The entity metadata objects.
+     * @see #spawnEntityLiving(Player, int, UUID, EntityType, Location)
+     * @see #sendEntityMetadata(Player, int, Object...)
+     */
+    default void spawnEntityLiving(Player player, int eid, UUID id, EntityType type, Location l, Object... metadata) {
+        spawnEntityLiving(player, eid, id, type, l);
+        if (metadata.length > 0) {
+            sendEntityMetadata(player, eid, metadata);
+        }
+    }
+
+    /**
+     * Check whether the spawn packet of a living entity can carry its metadata.
+     * This is the case for the protocol of 1.8 - 1.14.
+     *
+     * @return True if the metadata can be part of the spawn packet, false otherwise.
+     * @see #spawnEntityLiving(Player, int, UUID, EntityType, Location, Object...)
+     */
+    default boolean canInlineSpawnMetadata() {
+        return false;
+    }
+
     /**
      * Send the packet to update the equipment of an entity to the given player.
      *
@@ -443,6 +616,28 @@ public interface NMSAdapter {
      */
     void teleportEntity(Player player, int eid, Location l, boolean onGround);
 
+    /**
+     * Send the packet to move an entity relatively to its previous position to the
+     * given player. The delta is computed from the encoded positions, the same way
+     * the client stores them, so the client ends up exactly at the new position.
+     * <p>
+     * Relative moves only support short distances. If the distance is too long,
+     * nothing is sent and the entity has to be teleported instead.
+     *
+     * @param player   The player to send the packet to.
+     * @param eid      The entity id.
+     * @param fromX    The x coordinate of the previous position sent to the player.
+     * @param fromY    The y coordinate of the previous position sent to the player.
+     * @param fromZ    The z coordinate of the previous position sent to the player.
+     * @param toX      The x coordinate of the new position.
+     * @param toY      The y coordinate of the new position.
+     * @param toZ      The z coordinate of the new position.
+     * @param onGround Whether the entity is on the ground.
+     * @return True if the packet has been sent, false if the distance is too long.
+     */
+    boolean moveEntity(Player player, int eid, double fromX, double fromY, double fromZ,
+                       double toX, double toY, double toZ, boolean onGround);
+
     /**
      * Send the packet to update the passengers of an entity to the given player.
      *
@@ -460,4 +655,14 @@ public interface NMSAdapter {
      */
     void removeEntity(Player player, int eid);
 
+    /**
+     * Send the packet to destroy multiple entities to the given player.
+     * All entities are destroyed with one packet.
+     *
+     * @param player The player to send the packet to.
+     * @param eids   The entity ids.
+     * @see EntityRemoval
+     */
+    void removeEntities(Player player, int... eids);
+
 }
@@ -0,0 +1,234 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.nms;
+
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents a batch of outbound packets of the current thread. While a
+ * batch is open (see {@link #begin(NMSAdapter)}), the adapters queue the packets
+ * instead of sending them. When the batch is closed, the packets of each player are
+ * written to the player's pipeline and flushed once (see {@link NMSAdapter#sendPackets}).
+ * <p>
+ * Metadata of the same entity, that is sent to the same player multiple times within
+ * one batch, is coalesced into one packet, as long as no other packet is queued in
+ * between. Metadata is never merged across a packet, that could spawn or destroy
+ * the entity, so stale metadata can't overwrite the metadata of a respawned entity.
+ *
+ * @author d0by
+ * @since 3.0.0
+ */
+public final class PacketBatch {
+
+    private static final ThreadLocal<PacketBatch> BATCH = ThreadLocal.withInitial(PacketBatch::new);
+
+    private final Map<Player, PlayerQueue> queues;
+    private NMSAdapter adapter;
+    private int depth;
+
+    private PacketBatch() {
+        this.queues = new LinkedHashMap<>();
+        this.depth = 0;
+    }
+
+    /**
+     * Open a batch on the current thread. Batches can be nested, the packets
+     * are sent when the outermost batch is closed.
+     *
+     * @param adapter The adapter used to send the packets.
+     */
+    public static void begin(@NotNull NMSAdapter adapter) {
+        PacketBatch batch = BATCH.get();
+        if (batch.depth++ == 0) {
+            batch.adapter = adapter;
+        }
+    }
+
+    /**
+     * Close the batch of the current thread and send the queued packets,
+     * if this closes the outermost batch.
+     */
+    public static void end() {
+        PacketBatch batch = BATCH.get();
+        if (batch.depth <= 0) {
+            return;
+        }
+        if (--batch.depth == 0) {
+            batch.flush();
+        }
+    }
+
+    /**
+     * Check whether a batch is open on the current thread.
+     *
+     * @return True if a batch is open, false otherwise.
+     */
+    public static boolean isActive() {
+        return BATCH.get().depth > 0;
+    }
+
+    /**
+     * Queue the given packet for the given player, if a batch is open on the current thread.
+     * The packet can also be an already encoded buffer. (See {@link NMSAdapter#sendEncodedPacket})
+     *
+     * @param player The player.
+     * @param packet The packet.
+     * @return True if the packet has been queued, false if it has to be sent directly.
+     */
+    public static boolean queue(@NotNull Player player, @NotNull Object packet) {
+        PacketBatch batch = BATCH.get();
+        if (batch.depth <= 0) {
+            return false;
+        }
+        PlayerQueue queue = batch.getQueue(player);
+        queue.entries.add(packet);
+        // The packet can spawn or destroy any entity, so metadata queued before it
+        // must not be merged with metadata queued after it.
+        queue.metadataIndexes.clear();
+        return true;
+    }
+
+    /**
+     * Queue the given metadata of an entity for the given player, if a batch is open on
+     * the current thread. If there already is queued metadata of the same entity, and no
+     * other packet has been queued since, both are merged into one packet.
+     *
+     * @param player  The player.
+     * @param eid     The entity id.
+     * @param objects The metadata objects.
+     * @param encoder The encoder, that creates the packet when the batch is sent.
+     * @return True if the metadata has been queued, false if it has to be sent directly.
+     */
+    public static boolean queueMetadata(@NotNull Player player, int eid, @NotNull List<?> objects, @NotNull MetadataEncoder encoder) {
+        PacketBatch batch = BATCH.get();
+        if (batch.depth <= 0) {
+            return false;
+        }
+        PlayerQueue queue = batch.getQueue(player);
+        Metadata metadata = new Metadata(eid, encoder);
+        Integer previousIndex = queue.metadataIndexes.get(eid);
+        if (previousIndex != null) {
+            // Only metadata of other entities has been queued in between, so it can be moved to the end.
+            Metadata previous = (Metadata) queue.entries.set(previousIndex, null);
+            metadata.objects.addAll(previous.objects);
+        }
+        metadata.objects.addAll(objects);
+        queue.metadataIndexes.put(eid, queue.entries.size());
+        queue.entries.add(metadata);
+        return true;
+    }
+
+    @NotNull
+    private PlayerQueue getQueue(@NotNull Player player) {
+        return queues.computeIfAbsent(player, (p) -> new PlayerQueue());
+    }
+
+    private void flush() {
+        NMSAdapter adapter = this.adapter;
+        this.adapter = null;
+        if (queues.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<Player, PlayerQueue> entry : queues.entrySet()) {
+            List<Object> packets = new ArrayList<>(entry.getValue().entries.size());
+            for (Object object : entry.getValue().entries) {
+                if (object instanceof Metadata) {
+                    Object packet = ((Metadata) object).encode();
+                    if (packet != null) {
+                        packets.add(packet);
+                    }
+                } else if (object != null) {
+                    packets.add(object);
+                }
+            }
+            try {
+                adapter.sendPackets(entry.getKey(), packets);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        queues.clear();
+    }
+
+    /**
+     * This interface is implemented by the adapters to let the batch
+     * merge the metadata objects and create the metadata packets.
+     */
+    public interface MetadataEncoder {
+
+        /**
+         * Get the index of the given metadata object.
+         *
+         * @param object The metadata object.
+         * @return The index.
+         */
+        int getIndex(@NotNull Object object);
+
+        /**
+         * Create the metadata packet for the given entity.
+         *
+         * @param eid     The entity id.
+         * @param objects The metadata objects.
+         * @return The packet or null if it couldn't be created.
+         */
+        Object encode(int eid, @NotNull List<Object> objects);
+
+    }
+
+    private static class PlayerQueue {
+
+        private final List<Object> entries = new ArrayList<>();
+        private final Map<Integer, Integer> metadataIndexes = new HashMap<>();
+
+    }
+
+    private static class Metadata {
+
+        private final int eid;
+        private final MetadataEncoder encoder;
+        private final List<Object> objects;
+
+        Metadata(int eid, @NotNull MetadataEncoder encoder) {
+            this.eid = eid;
+            this.encoder = encoder;
+            this.objects = new ArrayList<>();
+        }
+
+        Object encode() {
+            // Only keep the last object of each index.
+            List<Object> merged = new ArrayList<>(objects.size());
+            for (Object object : objects) {
+                int index = encoder.getIndex(object);
+                merged.removeIf((o) -> encoder.getIndex(o) == index);
+                merged.add(object);
+            }
+            return encoder.encode(eid, merged);
+        }
+
+    }
+
+}
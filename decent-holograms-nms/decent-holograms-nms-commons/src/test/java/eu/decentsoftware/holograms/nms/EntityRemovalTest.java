@@ -0,0 +1,112 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.nms;
+
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Tests that {@link EntityRemoval} destroys the entities collected for each player
+ * with one packet, in the order they were added.
+ */
+class EntityRemovalTest {
+
+    private NMSAdapter adapter;
+    private Player player;
+    private Player otherPlayer;
+
+    @BeforeEach
+    void setUp() {
+        adapter = mock(NMSAdapter.class);
+        player = mock(Player.class);
+        otherPlayer = mock(Player.class);
+    }
+
+    @Test
+    void testEmptyRemovalSendsNothing() {
+        EntityRemoval removal = new EntityRemoval();
+        removal.add(player);
+        assertTrue(removal.isEmpty());
+
+        removal.send(adapter);
+        verifyNoInteractions(adapter);
+    }
+
+    @Test
+    void testEntitiesOfOnePlayerAreDestroyedWithOnePacket() {
+        EntityRemoval removal = new EntityRemoval();
+        removal.add(player, 1, 2);
+        removal.add(player, 3);
+        removal.add(otherPlayer, 4);
+        assertFalse(removal.isEmpty());
+
+        removal.send(adapter);
+        verify(adapter, times(1)).removeEntities(player, 1, 2, 3);
+        verify(adapter, times(1)).removeEntities(otherPlayer, 4);
+    }
+
+    @Test
+    void testManyEntitiesAreKeptInOrder() {
+        EntityRemoval removal = new EntityRemoval();
+        int[] expected = new int[100];
+        for (int i = 0; i < expected.length; i += 2) {
+            expected[i] = i;
+            expected[i + 1] = i + 1;
+            removal.add(player, i, i + 1);
+        }
+
+        removal.send(adapter);
+        verify(adapter).removeEntities(player, expected);
+    }
+
+    @Test
+    void testRemovalIsClearedAfterItHasBeenSent() {
+        EntityRemoval removal = new EntityRemoval();
+        removal.add(player, 1);
+        removal.send(adapter);
+        assertTrue(removal.isEmpty());
+
+        removal.add(player, 2);
+        removal.send(adapter);
+        verify(adapter, times(1)).removeEntities(player, 1);
+        verify(adapter, times(1)).removeEntities(player, 2);
+    }
+
+    @Test
+    void testFailureForOnePlayerDoesNotStopTheOthers() {
+        doThrow(new IllegalStateException("Closed channel")).when(adapter).removeEntities(player, 1);
+        EntityRemoval removal = new EntityRemoval();
+        removal.add(player, 1);
+        removal.add(otherPlayer, 2);
+
+        removal.send(adapter);
+        verify(adapter).removeEntities(otherPlayer, 2);
+        assertTrue(removal.isEmpty());
+    }
+
+}
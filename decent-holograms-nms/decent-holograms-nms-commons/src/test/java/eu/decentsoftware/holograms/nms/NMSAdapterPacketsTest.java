@@ -0,0 +1,249 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.nms;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Tests the default packet sending methods of {@link NMSAdapter} against embedded
+ * channels. Every buffer handed to the adapter must end up either written to a
+ * channel (and released by whoever reads it) or released by the adapter.
+ */
+class NMSAdapterPacketsTest {
+
+    private NMSAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        // Abstract methods do nothing, default methods are the real ones.
+        adapter = mock(NMSAdapter.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+    }
+
+    @AfterEach
+    void tearDown() {
+        while (PacketBatch.isActive()) {
+            PacketBatch.end();
+        }
+    }
+
+    @Test
+    void testSendPacketsWritesInOrderAndFlushesOnce() {
+        EmbeddedChannel channel = channel(true);
+        Player player = player(channel);
+        ByteBuf encoded = buffer();
+
+        adapter.sendPackets(player, Arrays.asList("spawn:1", encoded, "metadata:1"));
+        // Nothing is written until the event loop runs the task.
+        assertNull(channel.readOutbound());
+        channel.runPendingTasks();
+
+        assertEquals("spawn:1", channel.readOutbound());
+        ByteBuf written = channel.readOutbound();
+        assertSame(encoded, written);
+        assertEquals("metadata:1", channel.readOutbound());
+        assertNull(channel.readOutbound());
+
+        // The channel took over the one reference of the buffer.
+        assertEquals(1, written.refCnt());
+        written.release();
+    }
+
+    @Test
+    void testSendPacketsReleasesBuffersOnClosedChannel() {
+        EmbeddedChannel channel = channel(true);
+        channel.close();
+        Player player = player(channel);
+        ByteBuf encoded = buffer();
+
+        adapter.sendPackets(player, Arrays.asList("spawn:1", encoded));
+        channel.runPendingTasks();
+
+        assertEquals(0, encoded.refCnt());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    void testSendPacketsReleasesBuffersWithoutEncoder() {
+        // Encoded packets can't be sent past an encoder that isn't there.
+        EmbeddedChannel channel = channel(false);
+        Player player = player(channel);
+        ByteBuf encoded = buffer();
+
+        adapter.sendPackets(player, Arrays.asList("spawn:1", encoded, "metadata:1"));
+        channel.runPendingTasks();
+
+        assertEquals(0, encoded.refCnt());
+        assertEquals("spawn:1", channel.readOutbound());
+        assertEquals("metadata:1", channel.readOutbound());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    void testSendEncodedPacketReleasesBufferWithoutEncoder() {
+        EmbeddedChannel channel = channel(false);
+        ByteBuf encoded = buffer();
+
+        adapter.sendEncodedPacket(player(channel), encoded);
+
+        assertEquals(0, encoded.refCnt());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    void testSendEncodedPacketReleasesBufferOnClosedChannel() {
+        EmbeddedChannel channel = channel(true);
+        channel.close();
+        ByteBuf encoded = buffer();
+
+        adapter.sendEncodedPacket(player(channel), encoded);
+
+        assertEquals(0, encoded.refCnt());
+    }
+
+    @Test
+    void testSendEncodedPacketIsQueuedInBatch() {
+        EmbeddedChannel channel = channel(true);
+        Player player = player(channel);
+        ByteBuf encoded = buffer();
+
+        PacketBatch.begin(adapter);
+        adapter.sendEncodedPacket(player, encoded);
+        channel.runPendingTasks();
+        assertNull(channel.readOutbound());
+        assertEquals(1, encoded.refCnt());
+        PacketBatch.end();
+        channel.runPendingTasks();
+
+        ByteBuf written = channel.readOutbound();
+        assertSame(encoded, written);
+        assertEquals(1, written.refCnt());
+        written.release();
+    }
+
+    @Test
+    void testSharedPacketRetainsOneReferencePerChannel() {
+        ByteBuf shared = buffer();
+        shared.writeInt(42);
+        doReturn(shared).when(adapter).encodePacket("metadata:1");
+
+        List<EmbeddedChannel> channels = new ArrayList<>();
+        List<Player> players = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            EmbeddedChannel channel = channel(true);
+            Player player = player(channel);
+            doReturn(true).when(adapter).canSendEncodedPacket(player);
+            channels.add(channel);
+            players.add(player);
+        }
+        // A player, whose encoder has been replaced, gets the packet as usual.
+        Player translated = player(channel(true));
+        doReturn(false).when(adapter).canSendEncodedPacket(translated);
+        players.add(translated);
+
+        adapter.sendSharedPacket(players, "metadata:1");
+
+        // One reference per channel, the one of the adapter has been released.
+        assertEquals(3, shared.refCnt());
+        verify(adapter).sendPacket(translated, "metadata:1");
+        for (EmbeddedChannel channel : channels) {
+            channel.runPendingTasks();
+            ByteBuf written = channel.readOutbound();
+            assertEquals(42, written.getInt(written.readerIndex()));
+            written.release();
+        }
+        assertEquals(0, shared.refCnt());
+    }
+
+    @Test
+    void testSharedPacketReleasesReferencesOfClosedChannels() {
+        ByteBuf shared = buffer();
+        doReturn(shared).when(adapter).encodePacket("metadata:1");
+
+        EmbeddedChannel open = channel(true);
+        EmbeddedChannel closed = channel(true);
+        closed.close();
+        Player openPlayer = player(open);
+        Player closedPlayer = player(closed);
+        doReturn(true).when(adapter).canSendEncodedPacket(any());
+
+        adapter.sendSharedPacket(Arrays.asList(openPlayer, closedPlayer), "metadata:1");
+
+        assertEquals(1, shared.refCnt());
+        ByteBuf written = open.readOutbound();
+        written.release();
+        assertEquals(0, shared.refCnt());
+    }
+
+    @Test
+    void testSharedPacketIsNotEncodedForOnePlayer() {
+        Player player = player(channel(true));
+
+        adapter.sendSharedPacket(Collections.singletonList(player), "metadata:1");
+
+        verify(adapter, never()).encodePacket(any());
+        verify(adapter).sendPacket(player, "metadata:1");
+    }
+
+    @NotNull
+    private ByteBuf buffer() {
+        return Unpooled.buffer(16);
+    }
+
+    @NotNull
+    private EmbeddedChannel channel(boolean encoder) {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        if (encoder) {
+            // Stands in for the packet encoder, encoded packets are written past it.
+            channel.pipeline().addLast("encoder", new ChannelOutboundHandlerAdapter());
+        }
+        return channel;
+    }
+
+    @NotNull
+    private Player player(@NotNull EmbeddedChannel channel) {
+        Player player = mock(Player.class);
+        doReturn(channel.pipeline()).when(adapter).getPipeline(player);
+        return player;
+    }
+
+}
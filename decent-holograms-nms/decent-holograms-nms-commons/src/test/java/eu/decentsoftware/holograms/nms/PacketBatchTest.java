@@ -0,0 +1,210 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.nms;
+
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class PacketBatchTest {
+
+    private NMSAdapter adapter;
+    private Player player;
+    private Player otherPlayer;
+
+    @BeforeEach
+    void setUp() {
+        adapter = mock(NMSAdapter.class);
+        player = mock(Player.class);
+        otherPlayer = mock(Player.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Never leak an open batch into another test running on this thread.
+        while (PacketBatch.isActive()) {
+            PacketBatch.end();
+        }
+    }
+
+    @Test
+    void testNothingIsQueuedWithoutBatch() {
+        assertFalse(PacketBatch.isActive());
+        assertFalse(PacketBatch.queue(player, "spawn:1"));
+        assertFalse(PacketBatch.queueMetadata(player, 1, Collections.singletonList("0:a"), new TestEncoder()));
+    }
+
+    @Test
+    void testPacketsAreSentInOrderWhenBatchEnds() {
+        PacketBatch.begin(adapter);
+        assertTrue(PacketBatch.queue(player, "spawn:1"));
+        assertTrue(PacketBatch.queue(player, "teleport:1"));
+        assertTrue(PacketBatch.queue(otherPlayer, "spawn:2"));
+        verify(adapter, never()).sendPackets(any(), anyList());
+
+        PacketBatch.end();
+
+        assertEquals(Arrays.asList("spawn:1", "teleport:1"), sentPackets(player));
+        assertEquals(Collections.singletonList("spawn:2"), sentPackets(otherPlayer));
+    }
+
+    @Test
+    void testNestedBatchesAreSentByTheOutermostEnd() {
+        PacketBatch.begin(adapter);
+        PacketBatch.begin(adapter);
+        PacketBatch.queue(player, "spawn:1");
+        PacketBatch.end();
+        verify(adapter, never()).sendPackets(any(), anyList());
+        assertTrue(PacketBatch.isActive());
+
+        PacketBatch.end();
+        assertFalse(PacketBatch.isActive());
+        assertEquals(Collections.singletonList("spawn:1"), sentPackets(player));
+    }
+
+    @Test
+    void testMetadataIsNotMergedAcrossSpawnPackets() {
+        TestEncoder encoder = new TestEncoder();
+        PacketBatch.begin(adapter);
+        // Metadata of an entity, that is then spawned (again) and gets more metadata.
+        PacketBatch.queueMetadata(player, 1, Collections.singletonList("0:a"), encoder);
+        PacketBatch.queue(player, "spawn:1");
+        PacketBatch.queueMetadata(player, 1, Collections.singletonList("2:b"), encoder);
+        PacketBatch.end();
+
+        // The metadata of the old entity stays before the spawn packet.
+        assertEquals(Arrays.asList("metadata:1[0:a]", "spawn:1", "metadata:1[2:b]"), sentPackets(player));
+    }
+
+    @Test
+    void testStaleMetadataIsNotMovedPastRespawn() {
+        TestEncoder encoder = new TestEncoder();
+        PacketBatch.begin(adapter);
+        PacketBatch.queue(player, "spawn:1");
+        PacketBatch.queueMetadata(player, 1, Collections.singletonList("2:old"), encoder);
+        // The entity is destroyed and spawned again with its new metadata inlined.
+        PacketBatch.queue(player, "destroy:1");
+        PacketBatch.queue(player, "spawn:1[2:new]");
+        PacketBatch.queueMetadata(player, 1, Collections.singletonList("0:a"), encoder);
+        PacketBatch.end();
+
+        // The old name must not overwrite the name of the new entity.
+        assertEquals(Arrays.asList("spawn:1", "metadata:1[2:old]", "destroy:1", "spawn:1[2:new]", "metadata:1[0:a]"),
+                sentPackets(player));
+    }
+
+    @Test
+    void testMetadataOfTheSameIndexIsCoalesced() {
+        TestEncoder encoder = new TestEncoder();
+        PacketBatch.begin(adapter);
+        PacketBatch.queue(player, "spawn:1");
+        PacketBatch.queue(player, "spawn:2");
+        PacketBatch.queueMetadata(player, 1, Arrays.asList("0:a", "2:name"), encoder);
+        PacketBatch.queueMetadata(player, 2, Collections.singletonList("2:other"), encoder);
+        PacketBatch.queueMetadata(player, 1, Collections.singletonList("2:renamed"), encoder);
+        PacketBatch.end();
+
+        // Only the last object of each index is kept and the entities stay separate.
+        assertEquals(Arrays.asList("spawn:1", "spawn:2", "metadata:2[2:other]", "metadata:1[0:a, 2:renamed]"), sentPackets(player));
+    }
+
+    @Test
+    void testMetadataIsNotMergedAcrossPlayers() {
+        TestEncoder encoder = new TestEncoder();
+        PacketBatch.begin(adapter);
+        PacketBatch.queueMetadata(player, 1, Collections.singletonList("0:a"), encoder);
+        PacketBatch.queueMetadata(otherPlayer, 1, Collections.singletonList("0:b"), encoder);
+        PacketBatch.end();
+
+        assertEquals(Collections.singletonList("metadata:1[0:a]"), sentPackets(player));
+        assertEquals(Collections.singletonList("metadata:1[0:b]"), sentPackets(otherPlayer));
+    }
+
+    @Test
+    void testMetadataThatCantBeEncodedIsSkipped() {
+        PacketBatch.begin(adapter);
+        PacketBatch.queue(player, "spawn:1");
+        PacketBatch.queueMetadata(player, 1, Collections.singletonList("0:a"), new TestEncoder() {
+            @Override
+            public Object encode(int eid, @NotNull List<Object> objects) {
+                return null;
+            }
+        });
+        PacketBatch.end();
+
+        assertEquals(Collections.singletonList("spawn:1"), sentPackets(player));
+    }
+
+    @Test
+    void testBatchIsEmptyAfterItHasBeenSent() {
+        PacketBatch.begin(adapter);
+        PacketBatch.queue(player, "spawn:1");
+        PacketBatch.end();
+
+        PacketBatch.begin(adapter);
+        PacketBatch.end();
+        verify(adapter, times(1)).sendPackets(eq(player), anyList());
+    }
+
+    @NotNull
+    @SuppressWarnings("unchecked")
+    private List<Object> sentPackets(@NotNull Player player) {
+        ArgumentCaptor<List<Object>> captor = ArgumentCaptor.forClass(List.class);
+        verify(adapter).sendPackets(eq(player), captor.capture());
+        return new ArrayList<>(captor.getValue());
+    }
+
+    /**
+     * Metadata objects are strings in the form of "index:value".
+     */
+    private static class TestEncoder implements PacketBatch.MetadataEncoder {
+
+        @Override
+        public int getIndex(@NotNull Object object) {
+            String string = (String) object;
+            return Integer.parseInt(string.substring(0, string.indexOf(':')));
+        }
+
+        @Override
+        public Object encode(int eid, @NotNull List<Object> objects) {
+            return "metadata:" + eid + objects;
+        }
+
+    }
+
+}
@@ -21,6 +21,8 @@ package eu.decentsoftware.holograms.nms;
 import eu.decentsoftware.holograms.nms.event.PacketPlayInUseEntityEvent;
 import eu.decentsoftware.holograms.nms.utils.EntityEquipmentSlot;
 import eu.decentsoftware.holograms.nms.utils.ReflectUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelPipeline;
 import net.minecraft.server.v1_8_R3.*;
@@ -35,6 +37,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -62,18 +65,86 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
         }
     }
 
+    /*
+     * Interned metadata objects. These objects are never modified, so they can be shared
+     * by all packets. This is possible, because most metadata only consists of a few
+     * flags, which only have a small number of combinations.
+     */
+    private static final DataWatcher.WatchableObject[] META_ENTITY_PROPERTIES = createByteObjects(0, 256);
+    private static final DataWatcher.WatchableObject[] META_ARMOR_STAND_PROPERTIES = createByteObjects(10, 32);
+    private static final DataWatcher.WatchableObject[] META_CUSTOM_NAME_VISIBLE = createByteObjects(3, 2);
+    private static final DataWatcher.WatchableObject[] META_SILENCED = createByteObjects(4, 2);
+
+    /**
+     * Initial capacity of the serializer buffers. Most packets we build are smaller than this.
+     */
+    private static final int SERIALIZER_INITIAL_CAPACITY = 256;
     /**
-     * Serializer for packet data.
+     * Serializer buffers, that grew larger than this, are replaced, so one large
+     * packet doesn't keep its memory allocated forever.
+     */
+    private static final int SERIALIZER_MAX_CAPACITY = 8192;
+
+    /**
+     * Serializers for packet data.
      *
-     * @implNote We use this one instance for all packets, clearing it after each use. This is
-     * because we don't want to create a new instance every time we need to send a packet.
+     * @implNote Each thread has its own instance, which is cleared and reused for all packets
+     * built by that thread. This way, packets can be built from any number of threads, and we
+     * don't need to create a new instance every time we need to send a packet.
      */
-    private final PacketDataSerializer serializer = new PacketDataSerializer(Unpooled.buffer());
+    private final ThreadLocal<PacketDataSerializer> serializers = new ThreadLocal<>();
+
+    /**
+     * Allocator of the entity ids for our fake entities. The ids are reserved from the
+     * server's entity counter in blocks.
+     */
+    private final EntityIdAllocator entityIdAllocator = new EntityIdAllocator(NMSAdapter_v1_8_R3::reserveEntityIds);
+
+    /**
+     * Encoder for the metadata packets, that are coalesced in a {@link PacketBatch}.
+     */
+    private final PacketBatch.MetadataEncoder metadataEncoder = new PacketBatch.MetadataEncoder() {
+        @Override
+        public int getIndex(@NotNull Object object) {
+            return ((DataWatcher.WatchableObject) object).a();
+        }
+
+        @Override
+        public Object encode(int eid, @NotNull List<Object> objects) {
+            return createEntityMetadataPacket(eid, objects);
+        }
+    };
 
     /*
      *  Utils
      */
 
+    /**
+     * Get the cleared packet data serializer of the current thread.
+     *
+     * @return The serializer.
+     */
+    @NotNull
+    private PacketDataSerializer serializer() {
+        PacketDataSerializer serializer = serializers.get();
+        if (serializer == null || serializer.capacity() > SERIALIZER_MAX_CAPACITY) {
+            serializer = new PacketDataSerializer(Unpooled.buffer(SERIALIZER_INITIAL_CAPACITY));
+            serializers.set(serializer);
+        } else {
+            serializer.clear();
+        }
+        return serializer;
+    }
+
+    @NotNull
+    private static DataWatcher.WatchableObject[] createByteObjects(int index, int count) {
+        DataWatcher.WatchableObject[] objects = new DataWatcher.WatchableObject[count];
+        for (int i = 0; i < count; i++) {
+            objects[i] = new DataWatcher.WatchableObject(0, index, (byte) i);
+        }
+        return objects;
+    }
+
     private IChatBaseComponent s(String s) {
         return IChatBaseComponent.ChatSerializer.a(s);
     }
@@ -99,10 +170,43 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
     @Override
     public void sendPacket(@NotNull Player player, Object packet) {
         if (packet instanceof Packet) {
+            if (PacketBatch.queue(player, packet)) {
+                return;
+            }
             ((CraftPlayer) player).getHandle().playerConnection.sendPacket((Packet<?>) packet);
         }
     }
 
+    @Override
+    public ByteBuf encodePacket(Object packet) {
+        if (!(packet instanceof Packet)) {
+            return null;
+        }
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.buffer();
+        try {
+            // Same as PacketEncoder: packet id followed by the packet data.
+            Integer id = EnumProtocol.PLAY.a(EnumProtocolDirection.CLIENTBOUND, (Packet<?>) packet);
+            if (id == null) {
+                buf.release();
+                return null;
+            }
+            PacketDataSerializer out = new PacketDataSerializer(buf);
+            out.b(id);
+            ((Packet<?>) packet).b(out);
+            return buf;
+        } catch (Exception e) {
+            buf.release();
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public boolean canSendEncodedPacket(@NotNull Player player) {
+        // If the encoder has been replaced, e.g. by a protocol translation plugin, we must not bypass it.
+        return getPipeline(player).get("encoder") instanceof PacketEncoder;
+    }
+
     /*
      *  Player
      */
@@ -190,7 +294,7 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
 
     @Override
     public Object packetHeaderFooter(String header, String footer) {
-        serializer.clear();
+        PacketDataSerializer serializer = serializer();
         serializer.a(header);
         serializer.a(footer);
 
@@ -206,7 +310,7 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
 
     @Override
     public Object packetEntityAnimation(int eid, int animation) {
-        serializer.clear();
+        PacketDataSerializer serializer = serializer();
         serializer.b(eid);
         serializer.writeByte(animation);
 
@@ -227,7 +331,7 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
 
     @Override
     public Object packetBlockChange(Location l, int blockId, byte blockData) {
-        serializer.clear();
+        PacketDataSerializer serializer = serializer();
         serializer.a(blockPos(l));
         serializer.b(blockId << 4 | (blockData & 15));
 
@@ -247,16 +351,29 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
 
     @Override
     public void sendEntityMetadata(Player player, int eid, List<?> objects) {
+        if (PacketBatch.queueMetadata(player, eid, objects, metadataEncoder)) {
+            return;
+        }
+        PacketPlayOutEntityMetadata packet = createEntityMetadataPacket(eid, objects);
+        if (packet != null) {
+            sendPacket(player, packet);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public PacketPlayOutEntityMetadata createEntityMetadataPacket(int eid, List<?> objects) {
         try {
-            serializer.clear();
+            PacketDataSerializer serializer = serializer();
             serializer.b(eid);
             DataWatcher.a((List<DataWatcher.WatchableObject>) objects, serializer);
 
             PacketPlayOutEntityMetadata packet = new PacketPlayOutEntityMetadata();
             packet.a(serializer);
-            sendPacket(player, packet);
+            return packet;
         } catch (IOException e) {
             e.printStackTrace();
+            return null;
         }
     }
 
@@ -282,12 +399,12 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
 
     @Override
     public Object getMetaEntityCustomNameVisible(boolean visible) {
-        return new DataWatcher.WatchableObject(0, 3, (byte) (visible ? 1 : 0));
+        return META_CUSTOM_NAME_VISIBLE[visible ? 1 : 0];
     }
 
     @Override
     public Object getMetaEntitySilenced(boolean silenced) {
-        return new DataWatcher.WatchableObject(0, 4, (byte) (silenced ? 1 : 0));
+        return META_SILENCED[silenced ? 1 : 0];
     }
 
     @Override
@@ -303,7 +420,7 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
         data += sprinting ? 0x08 : 0x00;
         data += swimming ? 0x10 : 0x00;
         data += invisible ? 0x20 : 0x00;
-        return new DataWatcher.WatchableObject(0, 0, data);
+        return META_ENTITY_PROPERTIES[data & 0xFF];
     }
 
     @Override
@@ -313,7 +430,7 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
         data += arms ? 0x02 : 0x00;
         data += noBasePlate ? 0x08 : 0x00;
         data += marker ? 0x10 : 0x00;
-        return new DataWatcher.WatchableObject(0, 10, data);
+        return META_ARMOR_STAND_PROPERTIES[data];
     }
 
     @Override
@@ -327,13 +444,22 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
 
     @Override
     public int getFreeEntityId() {
+        return entityIdAllocator.allocate();
+    }
+
+    @Override
+    public void releaseEntityId(int eid) {
+        entityIdAllocator.release(eid);
+    }
+
+    private static synchronized int reserveEntityIds(int count) {
         try {
             /*
              * We are getting the new entity ids the same way as the server does. This is to ensure
              * that the ids are unique and don't conflict with any other entities.
              */
             int entityCount = ENTITY_COUNT_FIELD.getInt(null);
-            ENTITY_COUNT_FIELD.setInt(null, entityCount + 1);
+            ENTITY_COUNT_FIELD.setInt(null, entityCount + count);
             return entityCount;
         } catch (Exception e) {
             throw new RuntimeException("Failed to get new entity ID", e);
@@ -353,7 +479,7 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
 
     @Override
     public void spawnEntity(Player player, int eid, UUID id, EntityType type, Location l) {
-        serializer.clear();
+        PacketDataSerializer serializer = serializer();
         serializer.b(eid);
         serializer.writeByte(getEntityTypeId(type));
         serializer.writeInt(MathHelper.floor(l.getX() * 32));
@@ -379,7 +505,13 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
 
     @Override
     public void spawnEntityLiving(Player player, int eid, UUID id, EntityType type, Location l) {
-        serializer.clear();
+        spawnEntityLiving(player, eid, id, type, l, new Object[0]);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void spawnEntityLiving(Player player, int eid, UUID id, EntityType type, Location l, Object... metadata) {
+        PacketDataSerializer serializer = serializer();
         serializer.b(eid);
         serializer.writeByte(getEntityTypeId(type));
         serializer.writeInt(MathHelper.floor(l.getX() * 32));
@@ -391,11 +523,18 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
         serializer.writeShort(0);
         serializer.writeShort(0);
         serializer.writeShort(0);
-        serializer.writeByte(127);
 
         try {
+            // The packet is written from its data watcher, so the metadata has to be in there.
+            DataWatcher dataWatcher = new DataWatcher(null);
+            for (Object object : metadata) {
+                DataWatcher.WatchableObject watchableObject = (DataWatcher.WatchableObject) object;
+                dataWatcher.a(watchableObject.a(), watchableObject.b());
+            }
+            DataWatcher.a((List<DataWatcher.WatchableObject>) (List<?>) Arrays.asList(metadata), serializer);
+
             PacketPlayOutSpawnEntityLiving packet = new PacketPlayOutSpawnEntityLiving();
-            ReflectUtil.setFieldValue(packet, "l", new DataWatcher(null));
+            ReflectUtil.setFieldValue(packet, "l", dataWatcher);
             packet.a(serializer);
             sendPacket(player, packet);
         } catch (IOException e) {
@@ -403,6 +542,11 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
         }
     }
 
+    @Override
+    public boolean canInlineSpawnMetadata() {
+        return true;
+    }
+
     @Override
     public void setEquipment(Player player, int eid, EntityEquipmentSlot slot, org.bukkit.inventory.ItemStack itemStack) {
         PacketPlayOutEntityEquipment packet = new PacketPlayOutEntityEquipment(eid, slot.getLegacySlotId(), i(itemStack));
@@ -422,6 +566,24 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
         ));
     }
 
+    @Override
+    public boolean moveEntity(Player player, int eid, double fromX, double fromY, double fromZ,
+                              double toX, double toY, double toZ, boolean onGround) {
+        // Positions are encoded as 1/32 of a block and the delta is a byte.
+        int dx = MathHelper.floor(toX * 32.0) - MathHelper.floor(fromX * 32.0);
+        int dy = MathHelper.floor(toY * 32.0) - MathHelper.floor(fromY * 32.0);
+        int dz = MathHelper.floor(toZ * 32.0) - MathHelper.floor(fromZ * 32.0);
+        if (dx < Byte.MIN_VALUE || dx > Byte.MAX_VALUE
+                || dy < Byte.MIN_VALUE || dy > Byte.MAX_VALUE
+                || dz < Byte.MIN_VALUE || dz > Byte.MAX_VALUE) {
+            return false;
+        }
+
+        sendPacket(player, new PacketPlayOutEntity.PacketPlayOutRelEntityMove(
+                eid, (byte) dx, (byte) dy, (byte) dz, onGround));
+        return true;
+    }
+
     @Override
     public void updatePassengers(Player player, int eid, int... passengers) {
         /*
@@ -432,7 +594,7 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
          * We don't care about multiple passengers in the context of DecentHolograms.
          */
 
-        serializer.clear();
+        PacketDataSerializer serializer = serializer();
         serializer.writeInt(passengers != null && passengers.length >= 1 ? passengers[0] : -1);
         serializer.writeInt(eid);
         serializer.writeByte(0);
@@ -452,4 +614,13 @@ public class NMSAdapter_v1_8_R3 implements NMSAdapter {
         sendPacket(player, packet);
     }
 
+    @Override
+    public void removeEntities(Player player, int... eids) {
+        if (eids.length == 0) {
+            return;
+        }
+        PacketPlayOutEntityDestroy packet = new PacketPlayOutEntityDestroy(eids);
+        sendPacket(player, packet);
+    }
+
 }
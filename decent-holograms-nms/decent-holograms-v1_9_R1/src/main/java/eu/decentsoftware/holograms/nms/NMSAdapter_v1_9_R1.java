@@ -22,6 +22,8 @@ import com.google.common.base.Optional;
 import eu.decentsoftware.holograms.nms.event.PacketPlayInUseEntityEvent;
 import eu.decentsoftware.holograms.nms.utils.EntityEquipmentSlot;
 import eu.decentsoftware.holograms.nms.utils.ReflectUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelPipeline;
 import net.minecraft.server.v1_9_R1.*;
@@ -33,6 +35,7 @@ import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
@@ -49,18 +52,97 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
         }
     }
 
+    /*
+     * Interned metadata items. These items are never modified, so they can be shared
+     * by all packets. This is possible, because most metadata only consists of a few
+     * flags, which only have a small number of combinations.
+     */
+    private static final DataWatcher.Item<?>[] META_ENTITY_PROPERTIES = createByteItems(0, 256);
+    private static final DataWatcher.Item<?>[] META_ARMOR_STAND_PROPERTIES = createByteItems(13, 32);
+    private static final DataWatcher.Item<?>[] META_CUSTOM_NAME_VISIBLE = createBooleanItems(3);
+    private static final DataWatcher.Item<?>[] META_SILENCED = createBooleanItems(4);
+    private static final DataWatcher.Item<?>[] META_GRAVITY = createBooleanItems(5);
+
+    /**
+     * Initial capacity of the serializer buffers. Most packets we build are smaller than this.
+     */
+    private static final int SERIALIZER_INITIAL_CAPACITY = 256;
     /**
-     * Serializer for packet data.
+     * Serializer buffers, that grew larger than this, are replaced, so one large
+     * packet doesn't keep its memory allocated forever.
+     */
+    private static final int SERIALIZER_MAX_CAPACITY = 8192;
+
+    /**
+     * Serializers for packet data.
      *
-     * @implNote We use this one instance for all packets, clearing it after each use. This is
-     * because we don't want to create a new instance every time we need to send a packet.
+     * @implNote Each thread has its own instance, which is cleared and reused for all packets
+     * built by that thread. This way, packets can be built from any number of threads, and we
+     * don't need to create a new instance every time we need to send a packet.
      */
-    private final PacketDataSerializer serializer = new PacketDataSerializer(Unpooled.buffer());
+    private final ThreadLocal<PacketDataSerializer> serializers = new ThreadLocal<>();
+
+    /**
+     * Allocator of the entity ids for our fake entities. The ids are reserved from the
+     * server's entity counter in blocks.
+     */
+    private final EntityIdAllocator entityIdAllocator = new EntityIdAllocator(NMSAdapter_v1_9_R1::reserveEntityIds);
+
+    /**
+     * Encoder for the metadata packets, that are coalesced in a {@link PacketBatch}.
+     */
+    private final PacketBatch.MetadataEncoder metadataEncoder = new PacketBatch.MetadataEncoder() {
+        @Override
+        public int getIndex(@NotNull Object object) {
+            return ((DataWatcher.Item<?>) object).a().a();
+        }
+
+        @Override
+        public Object encode(int eid, @NotNull List<Object> objects) {
+            return createEntityMetadataPacket(eid, objects);
+        }
+    };
 
     /*
      *  Utils
      */
 
+    /**
+     * Get the cleared packet data serializer of the current thread.
+     *
+     * @return The serializer.
+     */
+    @NotNull
+    private PacketDataSerializer serializer() {
+        PacketDataSerializer serializer = serializers.get();
+        if (serializer == null || serializer.capacity() > SERIALIZER_MAX_CAPACITY) {
+            serializer = new PacketDataSerializer(Unpooled.buffer(SERIALIZER_INITIAL_CAPACITY));
+            serializers.set(serializer);
+        } else {
+            serializer.clear();
+        }
+        return serializer;
+    }
+
+    @NotNull
+    private static DataWatcher.Item<?>[] createByteItems(int index, int count) {
+        DataWatcherObject<Byte> object = new DataWatcherObject<>(index, DataWatcherRegistry.a);
+        DataWatcher.Item<?>[] items = new DataWatcher.Item<?>[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = new DataWatcher.Item<>(object, (byte) i);
+        }
+        return items;
+    }
+
+    @NotNull
+    private static DataWatcher.Item<?>[] createBooleanItems(int index) {
+        DataWatcherObject<Boolean> object = new DataWatcherObject<>(index, DataWatcherRegistry.h);
+        return new DataWatcher.Item<?>[]{
+                new DataWatcher.Item<>(object, false),
+                new DataWatcher.Item<>(object, true)
+        };
+    }
+
     private IChatBaseComponent s(String s) {
         return IChatBaseComponent.ChatSerializer.a(s);
     }
@@ -104,10 +186,43 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
     @Override
     public void sendPacket(@NotNull Player player, Object packet) {
         if (packet instanceof Packet) {
+            if (PacketBatch.queue(player, packet)) {
+                return;
+            }
             ((CraftPlayer) player).getHandle().playerConnection.sendPacket((Packet<?>) packet);
         }
     }
 
+    @Override
+    public ByteBuf encodePacket(Object packet) {
+        if (!(packet instanceof Packet)) {
+            return null;
+        }
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.buffer();
+        try {
+            // Same as PacketEncoder: packet id followed by the packet data.
+            Integer id = EnumProtocol.PLAY.a(EnumProtocolDirection.CLIENTBOUND, (Packet<?>) packet);
+            if (id == null) {
+                buf.release();
+                return null;
+            }
+            PacketDataSerializer out = new PacketDataSerializer(buf);
+            out.b(id);
+            ((Packet<?>) packet).b(out);
+            return buf;
+        } catch (Exception e) {
+            buf.release();
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public boolean canSendEncodedPacket(@NotNull Player player) {
+        // If the encoder has been replaced, e.g. by a protocol translation plugin, we must not bypass it.
+        return getPipeline(player).get("encoder") instanceof PacketEncoder;
+    }
+
     /*
      *  Player
      */
@@ -173,7 +288,7 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
 
     @Override
     public Object packetHeaderFooter(String header, String footer) {
-        serializer.clear();
+        PacketDataSerializer serializer = serializer();
         serializer.a(s(header));
         serializer.a(s(footer));
 
@@ -189,7 +304,7 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
 
     @Override
     public Object packetEntityAnimation(int eid, int animation) {
-        serializer.clear();
+        PacketDataSerializer serializer = serializer();
         serializer.b(eid);
         serializer.writeByte(animation);
 
@@ -210,7 +325,7 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
 
     @Override
     public Object packetBlockChange(Location l, int blockId, byte blockData) {
-        serializer.clear();
+        PacketDataSerializer serializer = serializer();
         serializer.a(blockPos(l));
         serializer.b(blockId << 4 | (blockData & 15));
 
@@ -230,16 +345,29 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
 
     @Override
     public void sendEntityMetadata(Player player, int eid, List<?> objects) {
+        if (PacketBatch.queueMetadata(player, eid, objects, metadataEncoder)) {
+            return;
+        }
+        PacketPlayOutEntityMetadata packet = createEntityMetadataPacket(eid, objects);
+        if (packet != null) {
+            sendPacket(player, packet);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public PacketPlayOutEntityMetadata createEntityMetadataPacket(int eid, List<?> objects) {
         try {
-            serializer.clear();
+            PacketDataSerializer serializer = serializer();
             serializer.b(eid);
             DataWatcher.a((List<DataWatcher.Item<?>>) objects, serializer);
 
             PacketPlayOutEntityMetadata packet = new PacketPlayOutEntityMetadata();
             packet.a(serializer);
-            sendPacket(player, packet);
+            return packet;
         } catch (Exception e) {
             e.printStackTrace();
+            return null;
         }
     }
 
@@ -268,17 +396,17 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
 
     @Override
     public Object getMetaEntityCustomNameVisible(boolean visible) {
-        return new DataWatcher.Item<>(new DataWatcherObject<>(3, DataWatcherRegistry.h), visible);
+        return META_CUSTOM_NAME_VISIBLE[visible ? 1 : 0];
     }
 
     @Override
     public Object getMetaEntitySilenced(boolean silenced) {
-        return new DataWatcher.Item<>(new DataWatcherObject<>(4, DataWatcherRegistry.h), silenced);
+        return META_SILENCED[silenced ? 1 : 0];
     }
 
     @Override
     public Object getMetaEntityGravity(boolean gravity) {
-        return new DataWatcher.Item<>(new DataWatcherObject<>(5, DataWatcherRegistry.h), gravity);
+        return META_GRAVITY[gravity ? 1 : 0];
     }
 
     @Override
@@ -291,7 +419,7 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
         data += invisible ? 0x20 : 0x00;
         data += glowing ? 0x40 : 0x00;
         data += flyingElytra ? 0x80 : 0x00;
-        return new DataWatcher.Item<>(new DataWatcherObject<>(0, DataWatcherRegistry.a), data);
+        return META_ENTITY_PROPERTIES[data & 0xFF];
     }
 
     @Override
@@ -301,7 +429,7 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
         data += arms ? 0x02 : 0x00;
         data += noBasePlate ? 0x08 : 0x00;
         data += marker ? 0x10 : 0x00;
-        return new DataWatcher.Item<>(new DataWatcherObject<>(13, DataWatcherRegistry.a), data);
+        return META_ARMOR_STAND_PROPERTIES[data];
     }
 
     @Override
@@ -315,13 +443,22 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
 
     @Override
     public int getFreeEntityId() {
+        return entityIdAllocator.allocate();
+    }
+
+    @Override
+    public void releaseEntityId(int eid) {
+        entityIdAllocator.release(eid);
+    }
+
+    private static synchronized int reserveEntityIds(int count) {
         try {
             /*
              * We are getting the new entity ids the same way as the server does. This is to ensure
              * that the ids are unique and don't conflict with any other entities.
              */
             int entityCount = ENTITY_COUNT_FIELD.getInt(null);
-            ENTITY_COUNT_FIELD.setInt(null, entityCount + 1);
+            ENTITY_COUNT_FIELD.setInt(null, entityCount + count);
             return entityCount;
         } catch (Exception e) {
             throw new RuntimeException("Failed to get new entity ID", e);
@@ -341,7 +478,7 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
 
     @Override
     public void spawnEntity(Player player, int eid, UUID id, EntityType type, Location l) {
-        serializer.clear();
+        PacketDataSerializer serializer = serializer();
         serializer.b(eid);
         serializer.a(id);
         serializer.writeByte(getEntityTypeId(type));
@@ -366,7 +503,13 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
 
     @Override
     public void spawnEntityLiving(Player player, int eid, UUID id, EntityType type, Location l) {
-        serializer.clear();
+        spawnEntityLiving(player, eid, id, type, l, new Object[0]);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void spawnEntityLiving(Player player, int eid, UUID id, EntityType type, Location l, Object... metadata) {
+        PacketDataSerializer serializer = serializer();
         serializer.b(eid);
         serializer.a(id);
         serializer.writeByte(getEntityTypeId(type));
@@ -381,15 +524,31 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
         serializer.writeShort(0);
 
         try {
+            // The packet is written from its data watcher, so the metadata has to be in there.
+            DataWatcher dataWatcher = new DataWatcher(null);
+            for (Object object : metadata) {
+                register(dataWatcher, (DataWatcher.Item<?>) object);
+            }
+            DataWatcher.a((List<DataWatcher.Item<?>>) (List<?>) Arrays.asList(metadata), serializer);
+
             PacketPlayOutSpawnEntityLiving packet = new PacketPlayOutSpawnEntityLiving();
-            ReflectUtil.setFieldValue(packet, "l", new DataWatcher(null));
             packet.a(serializer);
+            ReflectUtil.setFieldValue(packet, "m", dataWatcher);
             sendPacket(player, packet);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    @Override
+    public boolean canInlineSpawnMetadata() {
+        return true;
+    }
+
+    private static <T> void register(@NotNull DataWatcher dataWatcher, @NotNull DataWatcher.Item<T> item) {
+        dataWatcher.register(item.a(), item.b());
+    }
+
     @Override
     public void setEquipment(Player player, int eid, EntityEquipmentSlot slot, org.bukkit.inventory.ItemStack itemStack) {
         PacketPlayOutEntityEquipment packet = new PacketPlayOutEntityEquipment(eid, slot(slot), i(itemStack));
@@ -398,7 +557,7 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
 
     @Override
     public void teleportEntity(Player player, int eid, Location l, boolean onGround) {
-        serializer.clear();
+        PacketDataSerializer serializer = serializer();
         serializer.b(eid);
         serializer.writeDouble(l.getX());
         serializer.writeDouble(l.getY());
@@ -416,9 +575,26 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
         }
     }
 
+    @Override
+    public boolean moveEntity(Player player, int eid, double fromX, double fromY, double fromZ,
+                              double toX, double toY, double toZ, boolean onGround) {
+        // Positions are encoded as 1/4096 of a block and the delta is a short.
+        long dx = (long) Math.floor(toX * 4096.0) - (long) Math.floor(fromX * 4096.0);
+        long dy = (long) Math.floor(toY * 4096.0) - (long) Math.floor(fromY * 4096.0);
+        long dz = (long) Math.floor(toZ * 4096.0) - (long) Math.floor(fromZ * 4096.0);
+        if (dx < Short.MIN_VALUE || dx > Short.MAX_VALUE
+                || dy < Short.MIN_VALUE || dy > Short.MAX_VALUE
+                || dz < Short.MIN_VALUE || dz > Short.MAX_VALUE) {
+            return false;
+        }
+
+        sendPacket(player, new PacketPlayOutEntity.PacketPlayOutRelEntityMove(eid, dx, dy, dz, onGround));
+        return true;
+    }
+
     @Override
     public void updatePassengers(Player player, int eid, int... passengers) {
-        serializer.clear();
+        PacketDataSerializer serializer = serializer();
         serializer.b(eid);
         serializer.a(passengers);
 
@@ -437,4 +613,13 @@ public class NMSAdapter_v1_9_R1 implements NMSAdapter {
         sendPacket(player, packet);
     }
 
+    @Override
+    public void removeEntities(Player player, int... eids) {
+        if (eids.length == 0) {
+            return;
+        }
+        PacketPlayOutEntityDestroy packet = new PacketPlayOutEntityDestroy(eids);
+        sendPacket(player, packet);
+    }
+
 }
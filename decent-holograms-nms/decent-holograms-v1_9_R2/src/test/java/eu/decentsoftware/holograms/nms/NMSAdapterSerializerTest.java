@@ -0,0 +1,200 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.nms;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.server.v1_9_R2.DispenserRegistry;
+import net.minecraft.server.v1_9_R2.Packet;
+import net.minecraft.server.v1_9_R2.PacketDataSerializer;
+import org.bukkit.Location;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Builds packets through the per-thread serializers of {@link NMSAdapter_v1_9_R2} from
+ * multiple threads at once and checks, that the bytes of every packet are the same as
+ * when it's built alone. Some of the packets are large enough to make the serializer
+ * grow past its maximum capacity, so it gets replaced in between.
+ */
+class NMSAdapterSerializerTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 2_000;
+    private static final int CASES = 64;
+
+    private static final int SERIALIZER_INITIAL_CAPACITY = 256;
+    private static final int SERIALIZER_MAX_CAPACITY = 8192;
+
+    private static final ThreadLocal<List<Object>> SENT = ThreadLocal.withInitial(ArrayList::new);
+    /**
+     * Adapter, that collects the sent packets of the current thread instead of sending them.
+     */
+    private static final NMSAdapter_v1_9_R2 ADAPTER = new NMSAdapter_v1_9_R2() {
+        @Override
+        public void sendPacket(@NotNull Player player, Object packet) {
+            SENT.get().add(packet);
+        }
+    };
+
+    @BeforeAll
+    static void bootstrap() {
+        // Block and entity registries used by the packets.
+        DispenserRegistry.c();
+    }
+
+    @Test
+    void testConcurrentPacketsAreNotCorrupted() throws Exception {
+        // Expected bytes, each packet built alone on this thread.
+        byte[][][] expected = new byte[CASES][][];
+        for (int i = 0; i < CASES; i++) {
+            expected[i] = build(i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int offset = t * 7;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        // Each thread walks the cases in a different order.
+                        int i = (round + offset) % CASES;
+                        byte[][] actual = build(i);
+                        for (int p = 0; p < actual.length; p++) {
+                            assertArrayEquals(expected[i][p], actual[p], "case " + i + ", packet " + p);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                // Rethrows the assertion errors of the threads.
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testGrownSerializerIsReplaced() throws Exception {
+        byte[][] small = build(1);
+        PacketDataSerializer serializer = currentSerializer();
+        assertTrue(serializer.capacity() <= SERIALIZER_MAX_CAPACITY);
+
+        // Case 0 has a long name, that makes the serializer grow past its maximum capacity.
+        byte[][] large = build(0);
+        assertSame(serializer, currentSerializer());
+        assertTrue(serializer.capacity() > SERIALIZER_MAX_CAPACITY);
+
+        // The next packet gets a new serializer, the packets built so far are unaffected.
+        byte[][] smallAgain = build(1);
+        PacketDataSerializer replaced = currentSerializer();
+        assertNotSame(serializer, replaced);
+        assertEquals(SERIALIZER_INITIAL_CAPACITY, replaced.capacity());
+        assertEquals(small.length, smallAgain.length);
+        for (int p = 0; p < small.length; p++) {
+            assertArrayEquals(small[p], smallAgain[p]);
+        }
+        assertArrayEquals(large[0], build(0)[0]);
+    }
+
+    /**
+     * Build the metadata, spawn and block change packets of the given case and encode them.
+     *
+     * @param i The case.
+     * @return The encoded packets.
+     */
+    @NotNull
+    private static byte[][] build(int i) throws Exception {
+        // Every eighth case has a name long enough to grow the serializer past its maximum.
+        String name = (i % 8 == 0) ? repeat('\u20ac', 3000) : "Hologram line #" + i;
+        String json = "{\"text\":\"" + name + "\"}";
+        Object customName = ADAPTER.getMetaEntityCustomName(json);
+        Object properties = ADAPTER.getMetaEntityProperties(false, false, false, false, true, false, false);
+        Object nameVisible = ADAPTER.getMetaEntityCustomNameVisible(i % 2 == 0);
+        Location l = new Location(null, i * 1.5, 64 + i, -i * 2.25, i * 5.0F, i % 90);
+
+        List<Object> packets = new ArrayList<>();
+        packets.add(ADAPTER.createEntityMetadataPacket(i, Arrays.asList(properties, customName, nameVisible)));
+        packets.add(ADAPTER.packetBlockChange(l, 35, (byte) (i & 15)));
+
+        List<Object> sent = SENT.get();
+        sent.clear();
+        ADAPTER.spawnEntity(null, i, new UUID(i, ~i), EntityType.ARROW, l);
+        ADAPTER.spawnEntityLiving(null, CASES + i, new UUID(~i, i), EntityType.ARMOR_STAND, l, properties, customName);
+        packets.addAll(sent);
+        sent.clear();
+
+        byte[][] encoded = new byte[packets.size()][];
+        for (int p = 0; p < encoded.length; p++) {
+            encoded[p] = encode(packets.get(p));
+        }
+        return encoded;
+    }
+
+    @NotNull
+    private static byte[] encode(Object packet) throws Exception {
+        // A fresh buffer, so the encoded bytes don't depend on the serializers under test.
+        PacketDataSerializer serializer = new PacketDataSerializer(Unpooled.buffer());
+        ((Packet<?>) packet).b(serializer);
+        byte[] bytes = new byte[serializer.readableBytes()];
+        serializer.readBytes(bytes);
+        return bytes;
+    }
+
+    @NotNull
+    @SuppressWarnings("unchecked")
+    private static PacketDataSerializer currentSerializer() throws Exception {
+        Field field = NMSAdapter_v1_9_R2.class.getDeclaredField("serializers");
+        field.setAccessible(true);
+        return ((ThreadLocal<PacketDataSerializer>) field.get(ADAPTER)).get();
+    }
+
+    @NotNull
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+}
@@ -0,0 +1,309 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram.page;
+
+import eu.decentsoftware.holograms.DecentHolograms;
+import eu.decentsoftware.holograms.api.hologram.Hologram;
+import eu.decentsoftware.holograms.api.hologram.HologramSettings;
+import eu.decentsoftware.holograms.api.hologram.component.ClickHandler;
+import eu.decentsoftware.holograms.api.hologram.component.PositionManager;
+import eu.decentsoftware.holograms.api.hologram.line.HologramLine;
+import eu.decentsoftware.holograms.api.hologram.line.HologramLineRenderer;
+import eu.decentsoftware.holograms.api.hologram.line.HologramLineSettings;
+import eu.decentsoftware.holograms.api.hologram.line.HologramLineType;
+import eu.decentsoftware.holograms.api.hologram.page.HologramPage;
+import eu.decentsoftware.holograms.hologram.component.DefaultPositionManager;
+import eu.decentsoftware.holograms.hologram.line.DefaultHologramLineSettings;
+import eu.decentsoftware.holograms.profile.ProfileRegistry;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objenesis.ObjenesisStd;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures the recalculation of one page for one viewer, whose look direction changes
+ * with every operation, so the rotation cache never skips the work. Run it with the GC
+ * profiler: {@code gc.alloc.rate.norm} of {@link #rotating} and {@link #aligned} is
+ * expected to be 0 B/op.
+ * <p>
+ * The viewer is a {@link Proxy}, as there is no server. {@link #viewer} makes the same
+ * calls to the proxy as one recalculation does, so if the proxy itself allocates, that
+ * shows up there as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecalculateBenchmark {
+
+    @Param({"5", "20"})
+    private int lineCount;
+
+    private final Location viewerLocation = new Location(null, 0, 64, 0);
+    private final Location scratch = new Location(null, 0, 0, 0);
+    private Player player;
+    private DefaultHologramPage rotatingPage;
+    private DefaultHologramPage alignedPage;
+    private float yaw;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        installPlugin();
+
+        UUID uuid = UUID.randomUUID();
+        player = (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getUniqueId":
+                    return uuid;
+                case "getLocation":
+                    if (args != null && args.length == 1) {
+                        Location location = (Location) args[0];
+                        location.setX(viewerLocation.getX());
+                        location.setY(viewerLocation.getY());
+                        location.setZ(viewerLocation.getZ());
+                        location.setYaw(viewerLocation.getYaw());
+                        location.setPitch(viewerLocation.getPitch());
+                        return location;
+                    }
+                    return viewerLocation.clone();
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+
+        rotatingPage = createPage();
+        rotatingPage.recalculate(player, true, true, false);
+        alignedPage = createPage();
+        alignedPage.recalculate(player, false, false, false);
+    }
+
+    @Benchmark
+    public void rotating() {
+        turn();
+        rotatingPage.recalculateViewer(player);
+    }
+
+    @Benchmark
+    public void aligned() {
+        // The viewer has no profile, so the aligned lines aren't cached either.
+        turn();
+        alignedPage.recalculateViewer(player);
+    }
+
+    @Benchmark
+    public void viewer(Blackhole blackhole) {
+        turn();
+        blackhole.consume(player.getUniqueId());
+        blackhole.consume(player.getLocation(scratch));
+    }
+
+    private void turn() {
+        yaw = (yaw + 1.0f) % 360.0f;
+        viewerLocation.setYaw(yaw);
+        viewerLocation.setPitch((yaw % 90.0f) - 45.0f);
+    }
+
+    @NotNull
+    private DefaultHologramPage createPage() {
+        Hologram hologram = mock(Hologram.class);
+        HologramSettings settings = mock(HologramSettings.class);
+        PositionManager positionManager = new DefaultPositionManager(new Location(null, 10, 70, 10));
+        when(hologram.getSettings()).thenReturn(settings);
+        when(hologram.getPositionManager()).thenReturn(positionManager);
+        // The page isn't part of the hologram, so it isn't shown or recalculated by itself.
+        when(hologram.getIndex(any())).thenReturn(-1);
+
+        DefaultHologramPage page = new DefaultHologramPage(hologram);
+        for (int i = 0; i < lineCount; i++) {
+            page.addLine(new BenchmarkLine(page, i % 2 == 0 ? 0.25d : 0.0d));
+        }
+        return page;
+    }
+
+    /**
+     * Set up just enough of the plugin for a page to look up the profiles of its viewers.
+     */
+    private static void installPlugin() throws ReflectiveOperationException {
+        ObjenesisStd objenesis = new ObjenesisStd();
+        DecentHolograms plugin = objenesis.newInstance(DecentHolograms.class);
+        ProfileRegistry profileRegistry = objenesis.newInstance(ProfileRegistry.class);
+        setField(ProfileRegistry.class, profileRegistry, "profileMap", new ConcurrentHashMap<>());
+        setField(DecentHolograms.class, plugin, "profileRegistry", profileRegistry);
+        setField(DecentHolograms.class, null, "instance", plugin);
+    }
+
+    private static void setField(@NotNull Class<?> clazz, @Nullable Object object, @NotNull String name, Object value) throws ReflectiveOperationException {
+        Field field = clazz.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(object, value);
+    }
+
+    /**
+     * A line with a renderer, that doesn't do anything, so only the page is measured.
+     */
+    private static class BenchmarkLine implements HologramLine {
+
+        private final HologramPage parent;
+        private final PositionManager positionManager;
+        private final HologramLineSettings settings;
+        private final HologramLineRenderer renderer;
+
+        BenchmarkLine(@NotNull HologramPage parent, double offsetX) {
+            this.parent = parent;
+            this.positionManager = new DefaultPositionManager(new Location(null, 0, 0, 0));
+            this.settings = new DefaultHologramLineSettings();
+            this.settings.setOffsetX(offsetX);
+            this.renderer = new BenchmarkRenderer(this);
+        }
+
+        @NotNull
+        @Override
+        public HologramPage getParent() {
+            return parent;
+        }
+
+        @NotNull
+        @Override
+        public HologramLineType getType() {
+            return HologramLineType.TEXT;
+        }
+
+        @NotNull
+        @Override
+        public HologramLineSettings getSettings() {
+            return settings;
+        }
+
+        @NotNull
+        @Override
+        public PositionManager getPositionManager() {
+            return positionManager;
+        }
+
+        @NotNull
+        @Override
+        public HologramLineRenderer getRenderer() {
+            return renderer;
+        }
+
+        @Override
+        public void setRenderer(@NotNull HologramLineRenderer renderer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @NotNull
+        @Override
+        public String getContent() {
+            return "";
+        }
+
+        @Override
+        public void setContent(@NotNull String content) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Nullable
+        @Override
+        public ClickHandler getClickHandler() {
+            return null;
+        }
+
+        @NotNull
+        @Override
+        public HologramLine setClickHandler(@Nullable ClickHandler clickHandler) {
+            return this;
+        }
+
+    }
+
+    private static class BenchmarkRenderer implements HologramLineRenderer {
+
+        private final HologramLine parent;
+
+        BenchmarkRenderer(@NotNull HologramLine parent) {
+            this.parent = parent;
+        }
+
+        @NotNull
+        @Override
+        public HologramLine getParent() {
+            return parent;
+        }
+
+        @NotNull
+        @Override
+        public HologramLineType getType() {
+            return HologramLineType.TEXT;
+        }
+
+        @Override
+        public double getHeight() {
+            return parent.getSettings().getHeight();
+        }
+
+        @Override
+        public double getWidth() {
+            return 0;
+        }
+
+        @Override
+        public void display(@NotNull Player player) {
+        }
+
+        @Override
+        public void update(@NotNull Player player) {
+        }
+
+        @Override
+        public void hide(@NotNull Player player) {
+        }
+
+        @Override
+        public void teleport(@NotNull Player player, @NotNull Location location) {
+        }
+
+    }
+
+}
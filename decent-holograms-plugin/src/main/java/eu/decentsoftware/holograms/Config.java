@@ -24,6 +24,7 @@ import eu.decentsoftware.holograms.utils.config.FileConfig;
 import lombok.experimental.UtilityClass;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -58,6 +59,76 @@ public final class Config {
     @ConfigValue("datetime.zone")
     public static String DATETIME_ZONE = "GMT+0";
 
+    // ========== TICKER ========== //
+
+    @ConfigValue("ticker.sharded")
+    public static boolean TICKER_SHARDED = false;
+    @ConfigValue(value = "ticker.shards", min = 0, max = 256)
+    public static int TICKER_SHARDS = 0;
+    @ConfigValue("ticker.timing-wheel.enabled")
+    public static boolean TICKER_TIMING_WHEEL = false;
+    @ConfigValue(value = "ticker.timing-wheel.resolution", min = 1, max = 50)
+    public static int TICKER_TIMING_WHEEL_RESOLUTION = 5;
+    @ConfigValue("ticker.budget.enabled")
+    public static boolean TICKER_BUDGET_ENABLED = false;
+    @ConfigValue(value = "ticker.budget.time", min = 1, max = 1000)
+    public static int TICKER_BUDGET_TIME = 40;
+    @ConfigValue(value = "ticker.budget.degrade-after", min = 1, max = 1200)
+    public static int TICKER_BUDGET_DEGRADE_AFTER = 20;
+    @ConfigValue(value = "ticker.budget.recover-after", min = 1, max = 6000)
+    public static int TICKER_BUDGET_RECOVER_AFTER = 100;
+    @ConfigValue(value = "ticker.budget.max-degradation", min = 0, max = 10)
+    public static int TICKER_BUDGET_MAX_DEGRADATION = 3;
+
+    // ========== TIMINGS ========== //
+
+    @ConfigValue(value = "timings.sample-rate", min = 0, max = 10000)
+    public static int TIMINGS_SAMPLE_RATE = 10;
+    @ConfigValue(value = "timings.exception-log-interval", min = 0, max = 86400)
+    public static int TIMINGS_EXCEPTION_LOG_INTERVAL = 60;
+
+    // ========== VISIBILITY ========== //
+
+    @ConfigValue("visibility.event-driven")
+    public static boolean VISIBILITY_EVENT_DRIVEN = false;
+    @ConfigValue(value = "visibility.fallback-interval", min = 1, max = 300)
+    public static int VISIBILITY_FALLBACK_INTERVAL = 5;
+    @ConfigValue(value = "visibility.spawn-limit.packets-per-tick", min = 0, max = 100000)
+    public static int VISIBILITY_SPAWN_PACKETS_PER_TICK = 250;
+    @ConfigValue(value = "visibility.spawn-limit.max-entities", min = 0, max = 100000)
+    public static int VISIBILITY_SPAWN_MAX_ENTITIES = 0;
+
+    // ========== CONDITIONS ========== //
+
+    @ConfigValue(value = "conditions.cache-time", min = 0, max = 12000)
+    public static int CONDITIONS_CACHE_TIME = 100;
+
+    // ========== CONTENT UPDATES ========== //
+
+    @ConfigValue("content-updates.tiers")
+    public static List<String> CONTENT_UPDATE_TIERS = new ArrayList<>(Arrays.asList("16:1", "32:2", "48:4"));
+    @ConfigValue(value = "content-updates.far-lines", min = 0, max = 1000)
+    public static int CONTENT_UPDATE_FAR_LINES = 0;
+
+    // ========== ROTATION ========== //
+
+    @ConfigValue(value = "rotation.epsilon", min = 0, max = 1)
+    public static double ROTATION_EPSILON = 0.001d;
+
+    // ========== MOVEMENT ========== //
+
+    @ConfigValue(value = "movement.threshold", min = 0, max = 1)
+    public static double MOVEMENT_THRESHOLD = 0.01d;
+    @ConfigValue("movement.relative-moves")
+    public static boolean MOVEMENT_RELATIVE_MOVES = true;
+
+    // ========== PACKETS ========== //
+
+    @ConfigValue("packets.batching")
+    public static boolean PACKETS_BATCHING = true;
+    @ConfigValue("packets.shared-encoding")
+    public static boolean PACKETS_SHARED_ENCODING = true;
+
     // ========== PINGER ========== //
 
     @ConfigValue("pinger.enabled")
@@ -86,6 +157,12 @@ public final class Config {
      */
     private static FileConfig config;
 
+    /**
+     * The parsed content update tiers, sorted by distance. (See {@link #CONTENT_UPDATE_TIERS})
+     */
+    private static double[] contentUpdateTierDistances = new double[0];
+    private static int[] contentUpdateTierMultipliers = new int[0];
+
     /**
      * Get the "config.yml" file as a {@link FileConfig}.
      *
@@ -108,6 +185,34 @@ public final class Config {
         }
 
         CFG.load(PLUGIN, Config.class, config.getFile());
+        loadContentUpdateTiers();
+    }
+
+    /**
+     * Parse the content update tiers from {@link #CONTENT_UPDATE_TIERS}.
+     */
+    private static void loadContentUpdateTiers() {
+        List<double[]> tiers = new ArrayList<>();
+        for (String tier : CONTENT_UPDATE_TIERS) {
+            String[] spl = tier.split(":");
+            try {
+                double distance = Double.parseDouble(spl[0].trim());
+                int multiplier = spl.length > 1 ? Integer.parseInt(spl[1].trim()) : 1;
+                tiers.add(new double[]{distance, Math.max(1, multiplier)});
+            } catch (NumberFormatException e) {
+                PLUGIN.getLogger().warning("Invalid content update tier: '" + tier + "'! Skipping...");
+            }
+        }
+        tiers.sort((a, b) -> Double.compare(a[0], b[0]));
+
+        double[] distances = new double[tiers.size()];
+        int[] multipliers = new int[tiers.size()];
+        for (int i = 0; i < tiers.size(); i++) {
+            distances[i] = tiers.get(i)[0] * tiers.get(i)[0];
+            multipliers[i] = (int) tiers.get(i)[1];
+        }
+        contentUpdateTierDistances = distances;
+        contentUpdateTierMultipliers = multipliers;
     }
 
     /*
@@ -123,6 +228,34 @@ public final class Config {
         return updateAvailable;
     }
 
+    /**
+     * Get the index of the content update tier for the given squared distance. Distances
+     * beyond the last tier fall into the last tier.
+     *
+     * @param distanceSquared The squared distance between a viewer and a hologram.
+     * @return The index of the tier or -1 if there are no tiers.
+     */
+    public static int getContentUpdateTier(double distanceSquared) {
+        double[] distances = contentUpdateTierDistances;
+        for (int i = 0; i < distances.length; i++) {
+            if (distanceSquared <= distances[i]) {
+                return i;
+            }
+        }
+        return distances.length - 1;
+    }
+
+    /**
+     * Get the update interval multiplier of the given content update tier.
+     *
+     * @param tier The index of the tier. (See {@link #getContentUpdateTier(double)})
+     * @return The multiplier.
+     */
+    public static int getContentUpdateMultiplier(int tier) {
+        int[] multipliers = contentUpdateTierMultipliers;
+        return tier >= 0 && tier < multipliers.length ? multipliers[tier] : 1;
+    }
+
     /**
      * Set if an update is available.
      *
@@ -32,6 +32,11 @@ import eu.decentsoftware.holograms.editor.move.MoveController;
 import eu.decentsoftware.holograms.editor.move.MoveLocationBinder;
 import eu.decentsoftware.holograms.hologram.DefaultHologram;
 import eu.decentsoftware.holograms.hologram.DefaultHologramRegistry;
+import eu.decentsoftware.holograms.ticker.LatencyHistogram;
+import eu.decentsoftware.holograms.ticker.TickTimings;
+import eu.decentsoftware.holograms.ticker.Ticker;
+import eu.decentsoftware.holograms.ticker.TickerShard;
+import eu.decentsoftware.holograms.ticker.TimingsEntry;
 import eu.decentsoftware.holograms.utils.Common;
 import eu.decentsoftware.holograms.utils.SchedulerUtil;
 import lombok.NonNull;
@@ -42,6 +47,8 @@ import org.bukkit.util.Vector;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -88,6 +95,85 @@ public class DecentHologramsCommand {
         Lang.sendVersionMessage(sender);
     }
 
+    // ==================== TICKER COMMAND ==================== //
+
+    @CommandMethod(ROOT_ALIASES + " ticker")
+    @CommandDescription("Show the tick-duration stats of the ticker shards")
+    @CommandPermission(Config.ADMIN_PERM)
+    public void ticker(@NonNull CommandSender sender) {
+        Ticker ticker = PLUGIN.getTicker();
+        List<TickerShard> shards = ticker.getShards();
+        Lang.confTell(sender, "plugin.ticker.header", shards.size(), ticker.isSharded(), ticker.getScheduledCount());
+        if (ticker.isBudgeted()) {
+            Lang.confTell(sender, "plugin.ticker.budget",
+                    ticker.getDegradationLevel(),
+                    ticker.getIntervalMultiplier(),
+                    ticker.getBacklog(),
+                    ticker.getSkippedTicks()
+            );
+        }
+        for (TickerShard shard : shards) {
+            Lang.confTell(sender, "plugin.ticker.shard",
+                    shard.getIndex(),
+                    shard.size(),
+                    shard.getBacklog(),
+                    formatNanos(shard.getLastTickNanos()),
+                    formatNanos((long) shard.getAverageTickNanos()),
+                    formatNanos(shard.getMaxTickNanos())
+            );
+        }
+    }
+
+    @CommandMethod(ROOT_ALIASES + " ticker reset")
+    @CommandDescription("Reset the tick-duration stats of the ticker shards")
+    @CommandPermission(Config.ADMIN_PERM)
+    public void tickerReset(@NonNull CommandSender sender) {
+        PLUGIN.getTicker().resetStats();
+        Lang.confTell(sender, "plugin.ticker.reset");
+    }
+
+    // ==================== TIMINGS COMMAND ==================== //
+
+    @CommandMethod(ROOT_ALIASES + " timings")
+    @CommandDescription("Show the timings of the ticked objects")
+    @CommandPermission(Config.ADMIN_PERM)
+    public void timings(@NonNull CommandSender sender) {
+        TickTimings timings = PLUGIN.getTicker().getTimings();
+        Lang.confTell(sender, "plugin.timings.header", timings.getRecordedSeconds(), Config.TIMINGS_SAMPLE_RATE);
+        Lang.confTell(sender, "plugin.timings.classes");
+        for (TimingsEntry entry : timings.getTopClasses(5)) {
+            tellTimingsEntry(sender, entry);
+        }
+        Lang.confTell(sender, "plugin.timings.objects");
+        for (TimingsEntry entry : timings.getTopObjects(10)) {
+            tellTimingsEntry(sender, entry);
+        }
+    }
+
+    @CommandMethod(ROOT_ALIASES + " timings dump")
+    @CommandDescription("Save the timings of the ticked objects to a file")
+    @CommandPermission(Config.ADMIN_PERM)
+    public void timingsDump(@NonNull CommandSender sender) {
+        SchedulerUtil.async(() -> {
+            try {
+                File file = PLUGIN.getTicker().getTimings().dump();
+                Lang.confTell(sender, "plugin.timings.dumped", file.getName());
+            } catch (IOException e) {
+                PLUGIN.getLogger().severe("Failed to save timings:");
+                e.printStackTrace();
+                Lang.confTell(sender, "plugin.timings.dump_failed");
+            }
+        });
+    }
+
+    @CommandMethod(ROOT_ALIASES + " timings reset")
+    @CommandDescription("Reset the timings of the ticked objects")
+    @CommandPermission(Config.ADMIN_PERM)
+    public void timingsReset(@NonNull CommandSender sender) {
+        PLUGIN.getTicker().getTimings().reset();
+        Lang.confTell(sender, "plugin.timings.reset");
+    }
+
     // ==================== DELETE COMMAND ==================== //
 
     @CommandMethod(value = ROOT_ALIASES + " delete|del [name]")
@@ -243,6 +329,24 @@ public class DecentHologramsCommand {
 
     // ==================== UTILS ==================== //
 
+    @NotNull
+    private static String formatNanos(long nanos) {
+        return String.format("%.3f", nanos / 1_000_000.0d);
+    }
+
+    private static void tellTimingsEntry(@NonNull CommandSender sender, @NonNull TimingsEntry entry) {
+        LatencyHistogram histogram = entry.getHistogram();
+        Lang.confTell(sender, "plugin.timings.entry",
+                entry.getName(),
+                entry.getCalls().sum(),
+                entry.getExceptions().sum(),
+                formatNanos(histogram.getPercentile(0.5d)),
+                formatNanos(histogram.getPercentile(0.99d)),
+                formatNanos(histogram.getMax()),
+                formatNanos(entry.getEstimatedTotalNanos())
+        );
+    }
+
     @Nullable
     private DefaultHologram getHologramInView(@NonNull Player player) {
         // Ray trace
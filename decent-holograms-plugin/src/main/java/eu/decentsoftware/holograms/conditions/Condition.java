@@ -78,4 +78,15 @@ public abstract class Condition {
      */
     public abstract boolean check(@NotNull Profile profile);
 
+    /**
+     * Check whether the result of this condition can be cached for a while. Conditions,
+     * whose result changes with every move of the player, should not be cached.
+     *
+     * @return True if the result can be cached, false otherwise.
+     * @see ConditionCache
+     */
+    public boolean isCacheable() {
+        return true;
+    }
+
 }
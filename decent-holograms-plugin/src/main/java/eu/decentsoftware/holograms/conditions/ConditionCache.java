@@ -0,0 +1,119 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.conditions;
+
+import eu.decentsoftware.holograms.Config;
+import eu.decentsoftware.holograms.profile.Profile;
+import eu.decentsoftware.holograms.profile.ProfileContext;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * This class represents a cache of condition results of one profile. Each
+ * {@link ConditionHolder} result is kept for {@link Config#CONDITIONS_CACHE_TIME}
+ * ticks, or until the cache is invalidated by an event that might change the
+ * result, like a world change.
+ * <p>
+ * The holders are weakly referenced, so the results of removed holograms
+ * don't stay in the cache.
+ *
+ * @author d0by
+ * @see ProfileContext#getConditionCache()
+ * @since 3.0.0
+ */
+public class ConditionCache {
+
+    private final @NotNull Map<ConditionHolder, Entry> entries;
+    private volatile int generation;
+
+    /**
+     * Creates a new instance of {@link ConditionCache}.
+     */
+    public ConditionCache() {
+        this.entries = Collections.synchronizedMap(new WeakHashMap<>());
+        this.generation = 0;
+    }
+
+    /**
+     * Check the given holder for the given profile, using the cached result if it's
+     * still valid. The 'not met' actions are only executed if the result changes from
+     * fulfilled to not fulfilled, or if the holder is checked for the first time.
+     *
+     * @param holder  The holder.
+     * @param profile The profile. (Owner of this cache)
+     * @return True if all the conditions are fulfilled, false otherwise.
+     */
+    public boolean check(@NotNull ConditionHolder holder, @NotNull Profile profile) {
+        long now = System.currentTimeMillis();
+        int currentGeneration = generation;
+        // Read the version before checking, so a result of conditions, that change
+        // during the check, is never stored as valid for the new conditions.
+        int version = holder.getVersion();
+        Entry entry = entries.get(holder);
+        if (entry != null && entry.isValid(now, currentGeneration, version)) {
+            return entry.result;
+        }
+
+        boolean executeActions = entry == null || entry.result;
+        boolean result = holder.check(profile, executeActions);
+
+        long cacheTime = holder.isCacheable() ? Config.CONDITIONS_CACHE_TIME * 50L : 0L;
+        entries.put(holder, new Entry(result, now + cacheTime, currentGeneration, version));
+        return result;
+    }
+
+    /**
+     * Invalidate all cached results. The previous results are still remembered,
+     * so the 'not met' actions are only executed on a change.
+     */
+    public void invalidate() {
+        generation++;
+    }
+
+    /**
+     * Remove all cached results.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private static class Entry {
+
+        private final boolean result;
+        private final long expiresAt;
+        private final int generation;
+        private final int version;
+
+        Entry(boolean result, long expiresAt, int generation, int version) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+            this.generation = generation;
+            this.version = version;
+        }
+
+        boolean isValid(long now, int generation, int version) {
+            return now < expiresAt && this.generation == generation && this.version == version;
+        }
+
+    }
+
+}
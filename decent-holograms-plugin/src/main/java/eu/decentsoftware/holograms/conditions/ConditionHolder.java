@@ -25,10 +25,15 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class represents a holder for conditions. It stores a list of conditions and
  * provides methods to modify this list or to check all conditions.
+ * <p>
+ * The conditions are checked by the ticker threads, while being modified on the
+ * main thread, so the list is copied on write and checks iterate a snapshot.
  *
  * @author d0by
  * @since 3.0.0
@@ -36,6 +41,7 @@ import java.util.List;
 public class ConditionHolder {
 
     private final @NotNull List<Condition> conditions;
+    private final @NotNull AtomicInteger version;
 
     /**
      * Create a new {@link ConditionHolder} with no conditions. You can add conditions later.
@@ -47,11 +53,12 @@ public class ConditionHolder {
     /**
      * Create a new {@link ConditionHolder} with the given conditions.
      *
-     * @param conditions The list of conditions.
+     * @param conditions The list of conditions. The list is copied.
      */
     @Contract(pure = true)
     public ConditionHolder(@NotNull List<Condition> conditions) {
-        this.conditions = conditions;
+        this.conditions = new CopyOnWriteArrayList<>(conditions);
+        this.version = new AtomicInteger();
     }
 
     /**
@@ -62,14 +69,27 @@ public class ConditionHolder {
      * @return true if all the conditions are fulfilled, false otherwise.
      */
     public boolean check(@NotNull Profile profile) {
-        for (Condition condition : getConditions()) {
+        return check(profile, true);
+    }
+
+    /**
+     * Checks all Conditions stored in this holder.
+     *
+     * @param profile        Profile of the player for whom we want to check the conditions.
+     * @param executeActions Whether to execute the 'not met' actions of the failed conditions.
+     * @return true if all the conditions are fulfilled, false otherwise.
+     */
+    public boolean check(@NotNull Profile profile, boolean executeActions) {
+        for (Condition condition : conditions) {
             // Check and flip if inverted.
             boolean fulfilled = condition.isInverted() != condition.check(profile);
             if (fulfilled) {
                 continue;
             }
 
-            condition.getNotMetActions().ifPresent(actions -> actions.execute(profile));
+            if (executeActions) {
+                condition.getNotMetActions().ifPresent(actions -> actions.execute(profile));
+            }
 
             if (condition.isRequired()) {
                 return false;
@@ -79,6 +99,48 @@ public class ConditionHolder {
         return true;
     }
 
+    /**
+     * Checks all Conditions stored in this holder, using the condition cache of the
+     * given profile. The 'not met' actions are only executed, when the result changes
+     * from fulfilled to not fulfilled.
+     *
+     * @param profile Profile of the player for whom we want to check the conditions.
+     * @return true if all the conditions are fulfilled, false otherwise.
+     * @see ConditionCache
+     */
+    public boolean checkCached(@NotNull Profile profile) {
+        if (conditions.isEmpty()) {
+            return true;
+        }
+        return profile.getContext().getConditionCache().check(this, profile);
+    }
+
+    /**
+     * Check whether the results of this holder can be cached. That's not the case
+     * if any of the conditions changes with every move of the player.
+     *
+     * @return True if the results can be cached, false otherwise.
+     * @see Condition#isCacheable()
+     */
+    public boolean isCacheable() {
+        for (Condition condition : conditions) {
+            if (!condition.isCacheable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the version of this holder. The version changes whenever the conditions
+     * change, so cached results of the previous conditions can be discarded.
+     *
+     * @return The version.
+     */
+    public int getVersion() {
+        return version.get();
+    }
+
     /**
      * Add the given condition to this holder.
      *
@@ -86,6 +148,7 @@ public class ConditionHolder {
      */
     public void addCondition(@NotNull Condition condition) {
         this.conditions.add(condition);
+        this.version.incrementAndGet();
     }
 
     /**
@@ -95,6 +158,7 @@ public class ConditionHolder {
      */
     public void removeCondition(@NotNull Condition condition) {
         this.conditions.remove(condition);
+        this.version.incrementAndGet();
     }
 
     /**
@@ -104,6 +168,7 @@ public class ConditionHolder {
      */
     public void removeCondition(int index) {
         this.conditions.remove(index);
+        this.version.incrementAndGet();
     }
 
     /**
@@ -111,6 +176,7 @@ public class ConditionHolder {
      */
     public void clearConditions() {
         this.conditions.clear();
+        this.version.incrementAndGet();
     }
 
     /**
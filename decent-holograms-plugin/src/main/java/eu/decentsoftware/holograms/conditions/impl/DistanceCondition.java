@@ -52,4 +52,10 @@ public class DistanceCondition extends Condition {
         return pWorld != null && pWorld.equals(world) && pLocation.distanceSquared(location) < maxDistanceSquared;
     }
 
+    @Override
+    public boolean isCacheable() {
+        // The distance changes with every move.
+        return false;
+    }
+
 }
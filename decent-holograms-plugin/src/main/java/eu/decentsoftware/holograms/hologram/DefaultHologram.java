@@ -19,36 +19,39 @@
 package eu.decentsoftware.holograms.hologram;
 
 import com.google.common.collect.ImmutableList;
+import eu.decentsoftware.holograms.DecentHolograms;
 import eu.decentsoftware.holograms.api.hologram.page.HologramPage;
 import eu.decentsoftware.holograms.api.hologram.Hologram;
 import eu.decentsoftware.holograms.api.hologram.HologramConfig;
 import eu.decentsoftware.holograms.api.hologram.HologramSettings;
-import eu.decentsoftware.holograms.api.hologram.HologramVisibilityManager;
+import eu.decentsoftware.holograms.api.hologram.line.HologramLine;
 import eu.decentsoftware.holograms.hologram.component.DefaultPositionManager;
+import eu.decentsoftware.holograms.hologram.line.renderer.LineRenderer;
 import eu.decentsoftware.holograms.hologram.page.DefaultHologramPage;
 import eu.decentsoftware.holograms.conditions.ConditionHolder;
+import eu.decentsoftware.holograms.nms.EntityRemoval;
 import eu.decentsoftware.holograms.ticker.Ticked;
 import lombok.AccessLevel;
 import lombok.Getter;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
-import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Getter
 public class DefaultHologram implements Hologram, Ticked {
 
+    private static final DecentHolograms PLUGIN = DecentHolograms.getInstance();
+    static final long VISIBILITY_UPDATE_INTERVAL = 500L;
+
     private final @NotNull String name;
     private final @NotNull HologramConfig config;
     private final @NotNull HologramSettings settings;
     private final @NotNull DefaultPositionManager positionManager;
-    private final @NotNull HologramVisibilityManager visibilityManager;
+    private final @NotNull DefaultHologramVisibilityManager visibilityManager;
     private final @NotNull List<HologramPage> pages;
     private final @NotNull ConditionHolder viewConditions;
 
@@ -56,6 +59,8 @@ public class DefaultHologram implements Hologram, Ticked {
     private final @NotNull AtomicLong lastVisibilityUpdate;
     @Getter(AccessLevel.NONE)
     private final @NotNull AtomicLong lastContentUpdate;
+    @Getter(AccessLevel.NONE)
+    private volatile long lastBlockKey = Long.MIN_VALUE;
 
     /**
      * Creates a new instance of {@link DefaultHologram} with the given name.
@@ -81,14 +86,15 @@ public class DefaultHologram implements Hologram, Ticked {
         this.positionManager = new DefaultPositionManager(location);
         this.settings = new DefaultHologramSettings(false, persistent);
         this.visibilityManager = new DefaultHologramVisibilityManager(this);
-        this.pages = new ArrayList<>();
+        this.pages = new CopyOnWriteArrayList<>();
         this.viewConditions = new ConditionHolder();
         this.lastVisibilityUpdate = new AtomicLong(0);
         this.lastContentUpdate = new AtomicLong(0);
         this.addPage(); // We always need at least one page.
 
-        // Start the ticking.
+        // Start the ticking and index the hologram, so nearby players find it right away.
         this.startTicking();
+        this.updateSpatialIndex();
 
         // Load the hologram from the file.
         this.getConfig().reload().thenRun(() -> getSettings().setEnabled(enabled));
@@ -101,14 +107,15 @@ public class DefaultHologram implements Hologram, Ticked {
         this.positionManager = new DefaultPositionManager(location);
         this.settings = settings;
         this.visibilityManager = new DefaultHologramVisibilityManager(this);
-        this.pages = new ArrayList<>();
+        this.pages = new CopyOnWriteArrayList<>();
         this.viewConditions = viewConditions;
         this.lastVisibilityUpdate = new AtomicLong(0);
         this.lastContentUpdate = new AtomicLong(0);
         this.addPage(); // We always need at least one page.
 
-        // Start the ticking.
+        // Start the ticking and index the hologram, so nearby players find it right away.
         this.startTicking();
+        this.updateSpatialIndex();
     }
 
     @Override
@@ -119,33 +126,96 @@ public class DefaultHologram implements Hologram, Ticked {
         }
 
         long currentTime = System.currentTimeMillis();
+        // The intervals are stretched while the ticker is overloaded.
+        long intervalMultiplier = PLUGIN.getTicker().getIntervalMultiplier();
 
         // If the location is bound, update the location.
-        if (positionManager.isLocationBound()
-                || settings.isRotateHorizontal()
-                || settings.isRotateVertical()
-                || settings.isRotateHeads()
-        ) {
+        if (isRecalculatedEveryTick()) {
             recalculate();
         }
 
         // Update the visibility of the hologram if the time difference is greater than 500ms.
-        if (500L < (currentTime - lastVisibilityUpdate.get())) {
-            visibilityManager.updateVisibility();
+        // New viewers are found by the registry, here we only need to check the current ones.
+        if (DefaultHologramRegistry.getVisibilityUpdateInterval() < (currentTime - lastVisibilityUpdate.get())) {
+            updateSpatialIndex();
+            visibilityManager.updateViewers();
             lastVisibilityUpdate.set(currentTime);
         }
 
         // Update the content of the hologram.
-        if (settings.getUpdateInterval() * 50L < (currentTime - lastContentUpdate.get())) {
+        if (settings.getUpdateInterval() * 50L * intervalMultiplier < (currentTime - lastContentUpdate.get())) {
             visibilityManager.updateContents();
             lastContentUpdate.set(currentTime);
         }
     }
 
+    @Override
+    public long getNextTickTime() {
+        if (!settings.isEnabled()) {
+            // Check again later, the hologram might get enabled.
+            return System.currentTimeMillis() + VISIBILITY_UPDATE_INTERVAL;
+        }
+
+        if (isRecalculatedEveryTick()) {
+            return -1L;
+        }
+
+        long intervalMultiplier = PLUGIN.getTicker().getIntervalMultiplier();
+        long nextVisibilityUpdate = lastVisibilityUpdate.get() + DefaultHologramRegistry.getVisibilityUpdateInterval();
+        long nextContentUpdate = lastContentUpdate.get() + settings.getUpdateInterval() * 50L * intervalMultiplier;
+        // The checks in tick() are exclusive, so we need to be 1ms late.
+        return Math.min(nextVisibilityUpdate, nextContentUpdate) + 1L;
+    }
+
+    @NotNull
+    @Override
+    public String getTimingsName() {
+        return "Hologram '" + name + "'";
+    }
+
     @Override
     public void destroy() {
+        EntityRemoval removal = new EntityRemoval();
+        destroy(removal);
+        removal.send(PLUGIN.getNMSManager().getAdapter());
+        releaseEntityIds();
+    }
+
+    /**
+     * Destroy this hologram, but instead of destroying the entities of the viewers
+     * right away, add them to the given removal. This way, the entities of many
+     * holograms can be destroyed with one packet per player. Once the removal has
+     * been sent, the entity ids have to be released using {@link #releaseEntityIds()}.
+     *
+     * @param removal The removal to add the entities to.
+     * @see #destroy()
+     */
+    public void destroy(@NotNull EntityRemoval removal) {
         this.stopTicking();
-        this.getVisibilityManager().destroy();
+        this.getVisibilityManager().destroy(removal);
+
+        DefaultHologramRegistry registry = PLUGIN.getHologramRegistry();
+        if (registry != null) {
+            registry.getSpatialIndex().remove(this);
+        }
+    }
+
+    /**
+     * Release the entity ids of all lines of this hologram, so they can be used by other
+     * holograms. This must only be called after the hologram has been destroyed. If it's
+     * shown again afterwards, its lines acquire new entity ids.
+     *
+     * @see #destroy(EntityRemoval)
+     * @see LineRenderer#destroy()
+     */
+    public void releaseEntityIds() {
+        for (HologramPage page : pages) {
+            for (HologramLine line : page.getLines()) {
+                if (line.getRenderer() instanceof LineRenderer) {
+                    ((LineRenderer) line.getRenderer()).destroy();
+                }
+            }
+        }
     }
 
     @Override
@@ -156,6 +226,7 @@ public class DefaultHologram implements Hologram, Ticked {
 
     @Override
     public void recalculate() {
+        updateSpatialIndex();
         pages.forEach(HologramPage::recalculate);
     }
 
@@ -188,7 +259,7 @@ public class DefaultHologram implements Hologram, Ticked {
         pages.add(index, page);
 
         // Shift the player page indexes in visibility manager.
-        shiftPlayerPages(index, 1);
+        visibilityManager.shiftPages(index, 1);
 
         return this;
     }
@@ -196,10 +267,12 @@ public class DefaultHologram implements Hologram, Ticked {
     @NotNull
     @Override
     public Hologram removePage(int index) {
+        // Hide the removed page from its viewers, they are shown their new page on the next update.
+        visibilityManager.forEachViewer(index, (player) -> visibilityManager.updateVisibility(player, false));
         pages.remove(index);
 
         // Shift the player page indexes in visibility manager.
-        shiftPlayerPages(index, -1);
+        visibilityManager.shiftPages(index, -1);
 
         return this;
     }
@@ -207,11 +280,10 @@ public class DefaultHologram implements Hologram, Ticked {
     @NotNull
     @Override
     public Hologram clearPages() {
+        // Hide the pages and reset the player page indexes in visibility manager to 0.
+        visibilityManager.resetPages();
         pages.clear();
 
-        // Reset the player page indexes in visibility manager to 0.
-        visibilityManager.getPlayerPages().replaceAll((k, v) -> 0);
-
         return this;
     }
 
@@ -229,20 +301,63 @@ public class DefaultHologram implements Hologram, Ticked {
         return ImmutableList.copyOf(pages);
     }
 
+    @NotNull
+    @Override
+    public Hologram edit(@NotNull Consumer<Hologram> editor) {
+        // Pages added during the edit are displayed as usual.
+        List<HologramPage> editedPages = ImmutableList.copyOf(pages);
+        editedPages.forEach(HologramPage::beginEdit);
+        try {
+            editor.accept(this);
+        } finally {
+            editedPages.forEach(HologramPage::commitEdit);
+        }
+        return this;
+    }
+
     /**
-     * Shift the player page indexes in visibility manager by the given amount at the given index.
+     * Get the number of pages of this hologram.
      *
-     * @param index The index to start shifting from.
-     * @param shift The amount to shift by.
+     * @return The number of pages.
      */
-    private void shiftPlayerPages(int index, int shift) {
-        for (Map.Entry<UUID, Integer> entry : visibilityManager.getPlayerPages().entrySet()) {
-            if (entry.getValue() >= index) {
-                Player player = Bukkit.getPlayer(entry.getKey());
-                if (player != null) {
-                    visibilityManager.setPage(player, entry.getValue() + shift);
-                }
-            }
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Check whether the position of this hologram needs to be recalculated every
+     * tick. That is the case if it's bound to a location or if it rotates.
+     *
+     * @return True if the hologram needs to be recalculated every tick.
+     */
+    private boolean isRecalculatedEveryTick() {
+        return positionManager.isLocationBound()
+                || settings.isRotateHorizontal()
+                || settings.isRotateVertical()
+                || settings.isRotateHeads();
+    }
+
+    /**
+     * Update the position of this hologram in the spatial index of the registry.
+     * The hologram is only moved in the index, if it has moved to another cell.
+     * If the hologram has moved to another block, it's also marked as dirty, so
+     * the registry updates its visibility in the event-driven mode.
+     */
+    private void updateSpatialIndex() {
+        // The registry is null while it's loading the holograms. They are indexed when registered.
+        DefaultHologramRegistry registry = PLUGIN.getHologramRegistry();
+        if (registry == null) {
+            return;
+        }
+
+        Location location = positionManager.getActualLocation();
+        boolean cellChanged = registry.getSpatialIndex().update(this, location);
+        long blockKey = ((long) (location.getBlockX() & 0x3FFFFFF) << 38)
+                | ((long) (location.getBlockZ() & 0x3FFFFFF) << 12)
+                | (location.getBlockY() & 0xFFF);
+        if (cellChanged || blockKey != lastBlockKey) {
+            lastBlockKey = blockKey;
+            registry.markDirty(this);
         }
     }
 
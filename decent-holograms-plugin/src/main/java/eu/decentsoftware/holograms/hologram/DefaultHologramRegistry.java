@@ -23,7 +23,13 @@ import eu.decentsoftware.holograms.Config;
 import eu.decentsoftware.holograms.DecentHolograms;
 import eu.decentsoftware.holograms.api.hologram.Hologram;
 import eu.decentsoftware.holograms.hologram.serialization.SerializableHologram;
+import eu.decentsoftware.holograms.nms.EntityRemoval;
+import eu.decentsoftware.holograms.ticker.Ticked;
 import eu.decentsoftware.holograms.utils.FileUtils;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -31,6 +37,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -38,19 +45,189 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class represents a registry of holograms. It holds all holograms that are currently registered.
+ * <p>
+ * The registry also keeps a spatial index of all existing holograms and periodically
+ * shows the nearby holograms to each player. That way, a hologram is only checked
+ * against the players near it, instead of against every online player.
+ * <p>
+ * In the event-driven mode (see {@link Config#VISIBILITY_EVENT_DRIVEN}), the visibility
+ * is only updated for players and holograms that have been marked as dirty after
+ * moving. The periodic update then only serves as a slow fallback.
  *
  * @author d0by
  * @see Hologram
  * @since 3.0.0
  */
-public class DefaultHologramRegistry {
+public class DefaultHologramRegistry implements Ticked {
 
     private static final DecentHolograms PLUGIN = DecentHolograms.getInstance();
     private final @NotNull Map<String, DefaultHologram> holograms;
+    @Getter
+    private final @NotNull HologramSpatialIndex spatialIndex;
+    private final @NotNull HologramSpawnLimiter spawnLimiter;
+    private final @NotNull Set<Player> dirtyPlayers;
+    private final @NotNull Set<DefaultHologram> dirtyHolograms;
+    private volatile long lastVisibilityUpdate;
 
     public DefaultHologramRegistry() {
         this.holograms = new ConcurrentHashMap<>();
+        this.spatialIndex = new HologramSpatialIndex();
+        this.spawnLimiter = new HologramSpawnLimiter();
+        this.dirtyPlayers = ConcurrentHashMap.newKeySet();
+        this.dirtyHolograms = ConcurrentHashMap.newKeySet();
+        this.lastVisibilityUpdate = 0L;
         this.reload();
+        this.startTicking();
+        this.spawnLimiter.startTicking();
+    }
+
+    @Override
+    public void tick() {
+        if (Config.VISIBILITY_EVENT_DRIVEN) {
+            processDirty();
+        }
+
+        long currentTime = System.currentTimeMillis();
+        if (getVisibilityUpdateInterval() >= currentTime - lastVisibilityUpdate) {
+            return;
+        }
+        lastVisibilityUpdate = currentTime;
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            spatialIndex.updatePlayer(player);
+            updateVisibility(player);
+        }
+    }
+
+    @Override
+    public long getNextTickTime() {
+        if (Config.VISIBILITY_EVENT_DRIVEN) {
+            // Dirty players and holograms need to be processed every tick.
+            return -1L;
+        }
+        // The check in tick() is exclusive, so we need to be 1ms late.
+        return lastVisibilityUpdate + getVisibilityUpdateInterval() + 1L;
+    }
+
+    /**
+     * Get the interval of the periodic visibility update in milliseconds. In the
+     * event-driven mode, this is the interval of the fallback update.
+     *
+     * @return The interval in milliseconds.
+     */
+    public static long getVisibilityUpdateInterval() {
+        long interval = Config.VISIBILITY_EVENT_DRIVEN
+                ? Config.VISIBILITY_FALLBACK_INTERVAL * 1000L
+                : DefaultHologram.VISIBILITY_UPDATE_INTERVAL;
+        // The intervals are stretched while the ticker is overloaded.
+        return interval * PLUGIN.getTicker().getIntervalMultiplier();
+    }
+
+    /**
+     * Mark the given player as dirty, so the visibility of the holograms near
+     * them is updated in the next tick. This only has an effect in the
+     * event-driven mode.
+     *
+     * @param player The player.
+     */
+    public void markDirty(@NotNull Player player) {
+        if (Config.VISIBILITY_EVENT_DRIVEN) {
+            dirtyPlayers.add(player);
+        }
+    }
+
+    /**
+     * Mark the given hologram as dirty, so its visibility is updated for the
+     * players near it in the next tick. This only has an effect in the
+     * event-driven mode.
+     *
+     * @param hologram The hologram.
+     */
+    public void markDirty(@NotNull DefaultHologram hologram) {
+        if (Config.VISIBILITY_EVENT_DRIVEN) {
+            dirtyHolograms.add(hologram);
+        }
+    }
+
+    /**
+     * Forget the given player. This method is called when the player quits.
+     *
+     * @param player The player.
+     */
+    public void removePlayer(@NotNull Player player) {
+        dirtyPlayers.remove(player);
+        spatialIndex.removePlayer(player);
+    }
+
+    private void processDirty() {
+        if (!dirtyPlayers.isEmpty()) {
+            Iterator<Player> iterator = dirtyPlayers.iterator();
+            while (iterator.hasNext()) {
+                Player player = iterator.next();
+                iterator.remove();
+                if (player.isOnline()) {
+                    spatialIndex.updatePlayer(player);
+                    // The player might have just left the range of some holograms, so we
+                    // need to look one cell further to hide them.
+                    spatialIndex.forEachNearby(player.getLocation(), 1, (hologram) -> {
+                        if (hologram.getSettings().isEnabled()) {
+                            hologram.getVisibilityManager().updateVisibility(player);
+                        }
+                    });
+                }
+            }
+        }
+
+        if (!dirtyHolograms.isEmpty()) {
+            Iterator<DefaultHologram> iterator = dirtyHolograms.iterator();
+            while (iterator.hasNext()) {
+                DefaultHologram hologram = iterator.next();
+                iterator.remove();
+                if (hologram.getSettings().isEnabled()) {
+                    updateVisibility(hologram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the visibility of the given hologram for its viewers and for the
+     * players near it. The viewers are checked too, so the ones, that are no
+     * longer in range, are hidden.
+     *
+     * @param hologram The hologram.
+     */
+    private void updateVisibility(@NotNull DefaultHologram hologram) {
+        DefaultHologramVisibilityManager visibilityManager = hologram.getVisibilityManager();
+        visibilityManager.updateViewers();
+
+        Location location = hologram.getPositionManager().getActualLocation();
+        spatialIndex.forEachNearbyPlayer(location, hologram.getSettings().getViewDistance(), (player) -> {
+            if (!visibilityManager.isViewing(player)) {
+                visibilityManager.updateVisibility(player);
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public String getTimingsName() {
+        return "Hologram Visibility";
+    }
+
+    /**
+     * Update the visibility of all holograms near the given player. Holograms, that
+     * the player is currently viewing, but that are no longer near the player, are
+     * hidden by the holograms themselves. (See {@link DefaultHologramVisibilityManager#updateViewers()})
+     *
+     * @param player The player.
+     */
+    public void updateVisibility(@NotNull Player player) {
+        spatialIndex.forEachNearby(player.getLocation(), (hologram) -> {
+            if (hologram.getSettings().isEnabled()) {
+                hologram.getVisibilityManager().updateVisibility(player);
+            }
+        });
     }
 
     /**
@@ -90,12 +267,18 @@ public class DefaultHologramRegistry {
      * Shutdown the registry. This method is called when the plugin is disabled.
      */
     public synchronized void shutdown() {
-        // Destroy all holograms
+        // Destroy all holograms, with one packet per player
+        EntityRemoval removal = new EntityRemoval();
+        for (DefaultHologram hologram : this.holograms.values()) {
+            hologram.destroy(removal);
+        }
+        removal.send(PLUGIN.getNMSManager().getAdapter());
         for (DefaultHologram hologram : this.holograms.values()) {
-            hologram.destroy();
+            hologram.releaseEntityIds();
         }
         // Clear the cache
         this.holograms.clear();
+        this.dirtyHolograms.clear();
     }
 
     /**
@@ -106,6 +289,7 @@ public class DefaultHologramRegistry {
      */
     public void registerHologram(@NotNull DefaultHologram hologram) {
         this.holograms.put(hologram.getName(), hologram);
+        this.spatialIndex.update(hologram, hologram.getPositionManager().getActualLocation());
     }
 
     /**
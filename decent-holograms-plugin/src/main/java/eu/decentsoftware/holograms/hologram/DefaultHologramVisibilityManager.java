@@ -20,26 +20,65 @@ package eu.decentsoftware.holograms.hologram;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Striped;
+import eu.decentsoftware.holograms.Config;
 import eu.decentsoftware.holograms.DecentHolograms;
 import eu.decentsoftware.holograms.api.hologram.Hologram;
 import eu.decentsoftware.holograms.api.hologram.HologramVisibilityManager;
 import eu.decentsoftware.holograms.api.hologram.Visibility;
 import eu.decentsoftware.holograms.api.hologram.page.HologramPage;
+import eu.decentsoftware.holograms.hologram.page.DefaultHologramPage;
+import eu.decentsoftware.holograms.nms.EntityRemoval;
 import eu.decentsoftware.holograms.profile.Profile;
+import eu.decentsoftware.holograms.profile.ProfileRegistry;
 import eu.decentsoftware.holograms.utils.math.MathUtil;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
-
-import java.util.*;
-
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+import static eu.decentsoftware.holograms.hologram.VisibilityState.HIDDEN;
+import static eu.decentsoftware.holograms.hologram.VisibilityState.VIEWER;
+import static eu.decentsoftware.holograms.hologram.VisibilityState.VISIBLE;
+
+/**
+ * The default implementation of {@link HologramVisibilityManager}.
+ * <p>
+ * The per-player state is stored in bitsets and arrays indexed by the slot of the
+ * player's profile (see {@link Profile#getSlot()}), so the hot paths don't need to
+ * hash or copy anything. Since slots are reused, each slot also remembers the
+ * profile that owns it, and the state of a slot is only valid for that profile.
+ * <p>
+ * This class is thread-safe. Reading the state never blocks. Changes of the state
+ * of one player are guarded by a lock, that is striped by the hologram and the
+ * slot, so different holograms and players can be updated in parallel.
+ *
+ * @author d0by
+ * @see VisibilityState
+ * @since 3.0.0
+ */
 public class DefaultHologramVisibilityManager implements HologramVisibilityManager {
 
+    private static final DecentHolograms PLUGIN = DecentHolograms.getInstance();
+    private static final Striped<Lock> LOCKS = Striped.lock(Runtime.getRuntime().availableProcessors() * 64);
+
     private final @NotNull DefaultHologram parent;
-    private final @NotNull Map<UUID, Visibility> playerVisibility;
-    private final @NotNull Map<UUID, Integer> playerPages;
-    private final @NotNull Set<UUID> currentViewers;
-    private boolean visibleByDefault;
+    private final @NotNull VisibilityState state;
+    private final int lockSeed;
+    private final @NotNull AtomicLong contentUpdates;
+    private volatile boolean visibleByDefault;
 
     /**
      * Creates a new instance of {@link DefaultHologramVisibilityManager} with the given parent.
@@ -49,99 +88,275 @@ public class DefaultHologramVisibilityManager implements HologramVisibilityManag
     @Contract(pure = true)
     public DefaultHologramVisibilityManager(@NotNull DefaultHologram parent) {
         this.parent = parent;
-        this.playerVisibility = new HashMap<>();
-        this.playerPages = new HashMap<>();
-        this.currentViewers = new HashSet<>();
+        this.state = new VisibilityState();
+        this.lockSeed = System.identityHashCode(this) * 31;
+        this.contentUpdates = new AtomicLong(0);
         this.visibleByDefault = true;
     }
 
     @Override
     public void destroy() {
+        EntityRemoval removal = new EntityRemoval();
+        destroy(removal);
+        removal.send(PLUGIN.getNMSManager().getAdapter());
+    }
+
+    /**
+     * Destroy this visibility manager, but instead of destroying the entities of the
+     * viewers right away, add them to the given removal. This way, the entities of
+     * many holograms can be destroyed with one packet per player.
+     *
+     * @param removal The removal to add the entities to.
+     * @see #destroy()
+     */
+    public void destroy(@NotNull EntityRemoval removal) {
         // Reset the visibility so that it doesn't show up for any players
         this.visibleByDefault = false;
-        this.playerVisibility.clear();
+        this.state.clearAll(VISIBLE);
+        this.state.clearAll(HIDDEN);
 
         // Hide the hologram for all players that are currently viewing it
-        getViewerPlayers().forEach((player) -> updateVisibility(player, false));
+        forEachViewer((player) -> hide(player, removal));
 
         // Clear the cache
-        this.playerPages.clear();
-        this.currentViewers.clear();
+        this.state.clear();
     }
 
     @Override
     public void removePlayer(@NotNull Player player) {
-        // Remove the player from the visibility map
-        this.playerVisibility.remove(player.getUniqueId());
-
-        // Hide the hologram for the player if they are currently viewing it
-        if (isViewing(player)) {
-            updateVisibility(player, false);
+        Profile profile = getProfile(player);
+        if (profile == null) {
+            return;
         }
 
-        // Remove the player from the page map
-        this.playerPages.remove(player.getUniqueId());
+        Lock lock = lock(profile);
+        try {
+            if (!state.owns(profile)) {
+                return;
+            }
+
+            // Hide the hologram for the player if they are currently viewing it
+            if (state.get(VIEWER, profile.getSlot())) {
+                updateVisibility(player, false);
+            }
+
+            // Remove the player from all the state
+            state.reset(profile.getSlot());
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void setVisibility(@NotNull Player player, @NotNull Visibility visibility) {
-        this.playerVisibility.put(player.getUniqueId(), visibility);
-        updateVisibility(player);
+        Profile profile = getProfile(player);
+        if (profile == null) {
+            return;
+        }
+
+        Lock lock = lock(profile);
+        try {
+            int slot = state.claim(profile);
+            state.set(VISIBLE, slot, visibility == Visibility.VISIBLE);
+            state.set(HIDDEN, slot, visibility == Visibility.HIDDEN);
+            updateVisibility(player);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-    public void updateVisibility(@NotNull Player player) {
-        // Check if the player is allowed to see this hologram.
-        if (!canSee(player)) {
-            // Hide the hologram for the player if they are not allowed
-            // to see it, and they are currently viewing it.
-            if (isViewing(player)) {
-                updateVisibility(player, false);
-            }
-            return;
+    public boolean canSee(@NotNull Player player) {
+        if (visibleByDefault) {
+            return true;
         }
+        Profile profile = getProfile(player);
+        return profile != null && state.owns(profile) && state.get(VISIBLE, profile.getSlot());
+    }
+
+    @Override
+    public void updateVisibility(@NotNull Player player) {
+        updateVisibility(player, false, false);
+    }
+
+    /**
+     * Show this hologram to the given player, who has been waiting for it in their
+     * spawn queue. The visibility is checked again, as it might have changed since.
+     *
+     * @param player The player.
+     * @return The number of packets sent to the player.
+     * @see HologramSpawnLimiter
+     */
+    public int showQueued(@NotNull Player player) {
+        return updateVisibility(player, true, true);
+    }
 
+    /**
+     * Get the number of entities, that would be shown to the given player by this hologram.
+     *
+     * @param player The player.
+     * @return The number of entities.
+     */
+    public int getEntityCount(@NotNull Player player) {
+        HologramPage page = getPageObject(getPage(player));
+        return page instanceof DefaultHologramPage ? ((DefaultHologramPage) page).getEntityCount() : 0;
+    }
+
+    /**
+     * Update the visibility of this hologram for the given player.
+     *
+     * @param player      The player.
+     * @param bypassQueue Whether to show the hologram immediately, even if the spawn limits are enabled.
+     * @param fromQueue   Whether the player has been waiting in the spawn queue.
+     * @return The number of spawn packets sent to the player.
+     */
+    private int updateVisibility(@NotNull Player player, boolean bypassQueue, boolean fromQueue) {
         // Get the player's profile.
-        Profile profile = DecentHolograms.getInstance().getProfileRegistry().getProfile(player.getUniqueId());
+        Profile profile = getProfile(player);
         if (profile == null) {
-            return;
+            return 0;
         }
+        HologramSpawnQueue spawnQueue = profile.getContext().getSpawnQueue();
+
+        Lock lock = lock(profile);
+        try {
+            // Check if the player is allowed to see this hologram.
+            if (!canSee(player)) {
+                // Hide the hologram for the player if they are not allowed
+                // to see it, and they are currently viewing it.
+                if (isViewing(player)) {
+                    updateVisibility(player, false);
+                } else if (!fromQueue && !spawnQueue.isEmpty()) {
+                    spawnQueue.remove(parent);
+                }
+                return 0;
+            }
 
-        // Check if the player is in the view distance.
-        boolean inViewDistance = MathUtil.inDistance(
-                parent.getPositionManager().getActualLocation(),
-                player.getLocation(),
-                parent.getSettings().getViewDistance()
-        );
+            // Check if the player is in the view distance.
+            Location location = parent.getPositionManager().getActualLocation();
+            double viewDistance = parent.getSettings().getViewDistance();
+            double distanceSquared = MathUtil.distanceSquared(location, player.getLocation());
+            boolean inViewDistance = distanceSquared <= viewDistance * viewDistance;
 
-        // Check if the player satisfies the view conditions.
-        boolean meetsConditions = !isVisibleByDefault() || parent.getViewConditions().check(profile);
+            // Check if the player satisfies the view conditions.
+            boolean meetsConditions = !isVisibleByDefault() || parent.getViewConditions().checkCached(profile);
 
-        if (isViewing(player) && (!inViewDistance || !meetsConditions)) {
-            // If the player is currently viewing the hologram but is no
-            // longer in the view distance or does not satisfy the view
-            // conditions, hide the hologram.
-            updateVisibility(player, false);
-        } else if (!isViewing(player) && inViewDistance && meetsConditions) {
-            // If the player is not currently viewing the hologram but is in
-            // the view distance and satisfies the view conditions, show the
-            // hologram.
-            updateVisibility(player, true);
+            boolean viewing = isViewing(player);
+            if (viewing && (!inViewDistance || !meetsConditions)) {
+                // If the player is currently viewing the hologram but is no
+                // longer in the view distance or does not satisfy the view
+                // conditions, hide the hologram.
+                updateVisibility(player, false);
+            } else if (!viewing && inViewDistance && meetsConditions) {
+                // If the player is not currently viewing the hologram but is in
+                // the view distance and satisfies the view conditions, show the
+                // hologram. If the spawn limits are enabled, the player has to
+                // wait for it in their spawn queue.
+                if (bypassQueue || !HologramSpawnQueue.isEnabled()) {
+                    spawnQueue.remove(parent);
+                    return show(player, profile);
+                }
+                spawnQueue.offer(parent, distanceSquared);
+            } else if (!viewing && !fromQueue && !spawnQueue.isEmpty()) {
+                // The player is no longer waiting for this hologram.
+                spawnQueue.remove(parent);
+            }
+            return 0;
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void updateVisibility(@NotNull Player player, boolean visible) {
-        Optional<HologramPage> pageOpt = getPageObject(player);
-        pageOpt.ifPresent((page) -> {
-            if (visible) {
-                page.display(player);
-                currentViewers.add(player.getUniqueId());
-            } else {
+        if (!visible) {
+            // Destroy the entities of the page with one packet
+            EntityRemoval removal = new EntityRemoval();
+            hide(player, removal);
+            removal.send(PLUGIN.getNMSManager().getAdapter());
+            return;
+        }
+
+        Profile profile = getProfile(player);
+        if (profile == null) {
+            return;
+        }
+
+        Lock lock = lock(profile);
+        try {
+            show(player, profile);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hide the hologram from the given player, but instead of destroying the entities
+     * right away, add them to the given removal. This way, the entities of many
+     * holograms can be destroyed with one packet.
+     * If the player isn't viewing the hologram, nothing is added.
+     *
+     * @param player  The player.
+     * @param removal The removal to add the entities to.
+     * @see #updateVisibility(Player, boolean)
+     */
+    public void hide(@NotNull Player player, @NotNull EntityRemoval removal) {
+        Profile profile = getProfile(player);
+        if (profile == null) {
+            return;
+        }
+
+        Lock lock = lock(profile);
+        try {
+            HologramSpawnQueue spawnQueue = profile.getContext().getSpawnQueue();
+            int slot = profile.getSlot();
+            if (!state.owns(profile) || !state.get(VIEWER, slot)) {
+                // The player doesn't see any entities of this hologram, but might be waiting for it.
+                if (!spawnQueue.isEmpty()) {
+                    spawnQueue.remove(parent);
+                }
+                return;
+            }
+
+            HologramPage page = getPageObject(state.getPage(slot));
+            if (page instanceof DefaultHologramPage) {
+                ((DefaultHologramPage) page).hide(player, removal);
+            } else if (page != null) {
                 page.hide(player);
-                currentViewers.remove(player.getUniqueId());
             }
-        });
+            state.set(VIEWER, slot, false);
+            spawnQueue.addShownEntities(-state.getEntities(slot));
+            state.setEntities(slot, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Display the current page of the given player and mark the player as a viewer.
+     * The caller must hold the lock of the profile.
+     *
+     * @param player  The player.
+     * @param profile The profile of the player.
+     * @return The number of spawn packets sent to the player.
+     */
+    private int show(@NotNull Player player, @NotNull Profile profile) {
+        int slot = state.claim(profile);
+        HologramPage page = getPageObject(state.getPage(slot));
+        if (page == null) {
+            return 0;
+        }
+        page.display(player);
+        state.set(VIEWER, slot, true);
+
+        if (!(page instanceof DefaultHologramPage)) {
+            return 0;
+        }
+        DefaultHologramPage defaultPage = (DefaultHologramPage) page;
+        int entities = defaultPage.getEntityCount();
+        profile.getContext().getSpawnQueue().addShownEntities(entities - state.getEntities(slot));
+        state.setEntities(slot, entities);
+        return defaultPage.getSpawnPacketCount();
     }
 
     @Override
@@ -149,32 +364,130 @@ public class DefaultHologramVisibilityManager implements HologramVisibilityManag
         getAllowedPlayers().forEach(this::updateVisibility);
     }
 
+    /**
+     * Update the visibility of this hologram for its current viewers only. Players, that
+     * are not viewing this hologram yet, are handled by the {@link DefaultHologramRegistry},
+     * which only checks the holograms near each player.
+     */
+    public void updateViewers() {
+        forEachViewer(this::updateVisibility);
+    }
+
     @Override
     public void updateContents(@NotNull Player player) {
-        Optional<HologramPage> pageOpt = getPageObject(player);
-        pageOpt.ifPresent((page) -> page.update(player));
+        HologramPage page = getPageObject(getPage(player));
+        if (page != null) {
+            page.update(player);
+        }
     }
 
+    /**
+     * Update the contents of this hologram for its viewers, depending on their distance.
+     * Viewers beyond the update distance get no updates. Within the update distance,
+     * viewers only get every n-th update, depending on their content update tier.
+     * (See {@link Config#CONTENT_UPDATE_TIERS})
+     */
     @Override
     public void updateContents() {
-        getViewerPlayers().forEach(this::updateContents);
+        long update = contentUpdates.getAndIncrement();
+        Location location = parent.getPositionManager().getActualLocation();
+        double updateDistance = parent.getSettings().getUpdateDistance();
+        double updateDistanceSquared = updateDistance * updateDistance;
+        int farLines = Config.CONTENT_UPDATE_FAR_LINES;
+
+        // Collect the viewers of each page, so the lines can update all of them at once.
+        Map<Integer, List<Player>> fullUpdates = new HashMap<>();
+        Map<Integer, List<Player>> farUpdates = new HashMap<>();
+        forEachViewer((player) -> {
+            double distanceSquared = MathUtil.distanceSquared(location, player.getLocation());
+            if (distanceSquared > updateDistanceSquared) {
+                return;
+            }
+
+            int tier = Config.getContentUpdateTier(distanceSquared);
+            if (update % Config.getContentUpdateMultiplier(tier) != 0) {
+                return;
+            }
+
+            Map<Integer, List<Player>> updates = tier > 0 && farLines > 0 ? farUpdates : fullUpdates;
+            updates.computeIfAbsent(getPage(player), (p) -> new ArrayList<>()).add(player);
+        });
+
+        fullUpdates.forEach((pageIndex, players) -> updateContents(pageIndex, players, Integer.MAX_VALUE));
+        farUpdates.forEach((pageIndex, players) -> updateContents(pageIndex, players, farLines));
+    }
+
+    private void updateContents(int pageIndex, @NotNull List<Player> players, int maxLines) {
+        HologramPage page = getPageObject(pageIndex);
+        if (page instanceof DefaultHologramPage) {
+            ((DefaultHologramPage) page).update(players, maxLines);
+        } else if (page != null) {
+            players.forEach(page::update);
+        }
     }
 
     @Override
     public void setPage(@NotNull Player player, int page) {
-        // Get the old page.
-        Optional<HologramPage> oldPageOpt = getPageObject(player);
+        Profile profile = getProfile(player);
+        if (profile == null) {
+            return;
+        }
+
+        Lock lock = lock(profile);
+        try {
+            int slot = state.claim(profile);
+
+            // Get the old page.
+            HologramPage oldPage = getPageObject(state.getPage(slot));
+
+            // Update the page index.
+            state.setPage(slot, page);
 
-        // Update the page index in the map.
-        playerPages.put(player.getUniqueId(), page);
+            // Hide the old page, the new page is then shown by the visibility update.
+            if (state.get(VIEWER, slot)) {
+                if (oldPage != null) {
+                    oldPage.hide(player);
+                }
+                state.set(VIEWER, slot, false);
+            }
 
-        // Hide the old page.
-        if (isViewing(player) && oldPageOpt.isPresent()) {
-            oldPageOpt.get().hide(player);
+            // Update the visibility for the player.
+            updateVisibility(player);
+        } finally {
+            lock.unlock();
         }
+    }
+
+    @Override
+    public int getPage(@NotNull Player player) {
+        Profile profile = getProfile(player);
+        return profile != null && state.owns(profile) ? state.getPage(profile.getSlot()) : 0;
+    }
 
-        // Update the visibility for the player.
-        updateVisibility(player);
+    @Override
+    public int getPage(@NotNull UUID uuid) {
+        Profile profile = PLUGIN.getProfileRegistry().getProfile(uuid);
+        return profile != null && state.owns(profile) ? state.getPage(profile.getSlot()) : 0;
+    }
+
+    /**
+     * Shift the page indexes of all players, that are at the given index or after
+     * it, by the given amount. This is used when a page is added or removed.
+     *
+     * @param index The index to start shifting from.
+     * @param shift The amount to shift by.
+     */
+    public void shiftPages(int index, int shift) {
+        state.shiftPages(index, shift);
+    }
+
+    /**
+     * Hide the current page from all viewers and reset the page indexes of
+     * all players to 0. This is used when all pages are removed.
+     */
+    public void resetPages() {
+        forEachViewer((player) -> updateVisibility(player, false));
+        state.resetPages();
     }
 
     @NotNull
@@ -193,35 +506,130 @@ public class DefaultHologramVisibilityManager implements HologramVisibilityManag
         this.visibleByDefault = visible;
     }
 
+    @Override
+    public boolean isViewing(@NotNull Player player) {
+        Profile profile = getProfile(player);
+        return profile != null && state.owns(profile) && state.get(VIEWER, profile.getSlot());
+    }
+
+    @Override
+    public void forEachViewer(@NotNull Consumer<Player> consumer) {
+        forEachViewer(-1, consumer);
+    }
+
+    @Override
+    public void forEachViewer(int page, @NotNull Consumer<Player> consumer) {
+        ProfileRegistry profileRegistry = PLUGIN.getProfileRegistry();
+        state.forEach(VIEWER, (slot) -> {
+            if (page >= 0 && state.getPage(slot) != page) {
+                return;
+            }
+            // Skip the slots, that belong to a profile that has been removed since.
+            Profile profile = state.getOwner(slot);
+            if (profile == null || profileRegistry.getProfile(slot) != profile) {
+                return;
+            }
+            Player player = profile.getPlayer();
+            if (player != null) {
+                consumer.accept(player);
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public Set<Player> getViewerPlayers() {
+        Set<Player> players = new HashSet<>();
+        forEachViewer(players::add);
+        return players;
+    }
+
+    @NotNull
+    @Override
+    public Set<Player> getViewerPlayers(int page) {
+        Set<Player> players = new HashSet<>();
+        forEachViewer(page, players::add);
+        return players;
+    }
+
     @NotNull
     @Override
     public Set<UUID> getViewers() {
-        return ImmutableSet.copyOf(currentViewers);
+        ImmutableSet.Builder<UUID> builder = ImmutableSet.builder();
+        forEachOwner(VIEWER, (profile) -> builder.add(profile.getUuid()));
+        return builder.build();
     }
 
     @NotNull
     @Override
     public Map<UUID, Integer> getPlayerPages() {
-        return ImmutableMap.copyOf(playerPages);
+        ImmutableMap.Builder<UUID, Integer> builder = ImmutableMap.builder();
+        PLUGIN.getProfileRegistry().forEachProfile((profile) -> {
+            int slot = profile.getSlot();
+            if (state.owns(profile) && state.getPage(slot) != 0) {
+                builder.put(profile.getUuid(), state.getPage(slot));
+            }
+        });
+        return builder.build();
     }
 
     @NotNull
     @Override
     public Map<UUID, Visibility> getPlayerVisibility() {
-        return ImmutableMap.copyOf(playerVisibility);
+        ImmutableMap.Builder<UUID, Visibility> builder = ImmutableMap.builder();
+        forEachOwner(VISIBLE, (profile) -> builder.put(profile.getUuid(), Visibility.VISIBLE));
+        forEachOwner(HIDDEN, (profile) -> builder.put(profile.getUuid(), Visibility.HIDDEN));
+        return builder.build();
+    }
+
+    private void forEachOwner(int flag, @NotNull Consumer<Profile> consumer) {
+        state.forEach(flag, (slot) -> {
+            Profile profile = state.getOwner(slot);
+            if (profile != null) {
+                consumer.accept(profile);
+            }
+        });
     }
 
     /**
-     * Get the page object for the given player by the page index.
+     * Get the profile of the given player.
      *
      * @param player The player.
-     * @return The page as an optional.
+     * @return The profile or null if the player doesn't have one.
+     */
+    @Nullable
+    private Profile getProfile(@NotNull Player player) {
+        return PLUGIN.getProfileRegistry().getProfile(player.getUniqueId());
+    }
+
+    /**
+     * Acquire the lock guarding the state of the given profile in this hologram.
+     * The lock is reentrant, so the public methods can call each other.
+     *
+     * @param profile The profile.
+     * @return The acquired lock.
      */
     @NotNull
-    private Optional<HologramPage> getPageObject(@NotNull Player player) {
-        int pageIndex = getPage(player);
-        HologramPage page = parent.getPage(pageIndex);
-        return Optional.ofNullable(page);
+    private Lock lock(@NotNull Profile profile) {
+        Lock lock = LOCKS.getAt(Math.abs((lockSeed + profile.getSlot()) % LOCKS.size()));
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Get the page object by the page index.
+     *
+     * @param index The page index.
+     * @return The page or null if there is no page at the index.
+     */
+    @Nullable
+    private HologramPage getPageObject(int index) {
+        try {
+            return index >= 0 && index < parent.getPageCount() ? parent.getPage(index) : null;
+        } catch (IndexOutOfBoundsException e) {
+            // The page has been removed concurrently.
+            return null;
+        }
     }
 
 }
@@ -0,0 +1,343 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * This class represents a spatial index of holograms. The holograms are put into
+ * a per-world grid of chunk-sized cells, so we can find the holograms near a
+ * location without checking the distance to every single hologram.
+ * <p>
+ * The players are kept in a grid of the same cells, so a hologram, that has
+ * moved, can find the players near it the same way.
+ *
+ * @author d0by
+ * @see DefaultHologramRegistry
+ * @since 3.0.0
+ */
+public class HologramSpatialIndex {
+
+    private static final int CELL_BITS = 4;
+    private static final int CELL_SIZE = 1 << CELL_BITS;
+
+    private final @NotNull Grid<DefaultHologram> holograms;
+    private final @NotNull Grid<Player> players;
+    // The number of indexed holograms per view distance, so the largest one is known after removals.
+    private final @NotNull TreeMap<Integer, Integer> viewDistances;
+    private volatile int maxViewDistance;
+
+    /**
+     * Creates a new instance of {@link HologramSpatialIndex}.
+     */
+    public HologramSpatialIndex() {
+        this.holograms = new Grid<DefaultHologram>() {
+            @Override
+            void onWeightChanged(int previous, int current) {
+                updateViewDistance(previous, current);
+            }
+        };
+        this.players = new Grid<>();
+        this.viewDistances = new TreeMap<>();
+        this.maxViewDistance = 0;
+    }
+
+    /**
+     * Put the given hologram into the cell of the given location. If the hologram
+     * is already indexed in that cell, only its view distance is updated.
+     *
+     * @param hologram The hologram.
+     * @param location The current location of the hologram.
+     * @return True if the cell of the hologram has changed, false otherwise.
+     */
+    public boolean update(@NotNull DefaultHologram hologram, @NotNull Location location) {
+        return holograms.update(hologram, location, hologram.getSettings().getViewDistance());
+    }
+
+    /**
+     * Remove the given hologram from this index.
+     *
+     * @param hologram The hologram.
+     * @return True if the hologram was indexed, false otherwise.
+     */
+    public boolean remove(@NotNull DefaultHologram hologram) {
+        return holograms.remove(hologram);
+    }
+
+    /**
+     * Call the given consumer for every hologram, that is in a cell within the largest
+     * view distance of all indexed holograms from the given location. The holograms
+     * still need to check their own view distance.
+     *
+     * @param location The location.
+     * @param consumer The consumer.
+     */
+    public void forEachNearby(@NotNull Location location, @NotNull Consumer<DefaultHologram> consumer) {
+        forEachNearby(location, 0, consumer);
+    }
+
+    /**
+     * Call the given consumer for every hologram, that is in a cell within the largest
+     * view distance of all indexed holograms, plus the given number of extra cells, from
+     * the given location. The holograms still need to check their own view distance.
+     *
+     * @param location   The location.
+     * @param extraCells The number of cells to add to the radius.
+     * @param consumer   The consumer.
+     */
+    public void forEachNearby(@NotNull Location location, int extraCells, @NotNull Consumer<DefaultHologram> consumer) {
+        holograms.forEachNearby(location, toCells(maxViewDistance) + extraCells, consumer);
+    }
+
+    /**
+     * Put the given player into the cell of their current location.
+     *
+     * @param player The player.
+     * @see #forEachNearbyPlayer(Location, int, Consumer)
+     */
+    public void updatePlayer(@NotNull Player player) {
+        players.update(player, player.getLocation(), 0);
+    }
+
+    /**
+     * Remove the given player from this index.
+     *
+     * @param player The player.
+     */
+    public void removePlayer(@NotNull Player player) {
+        players.remove(player);
+    }
+
+    /**
+     * Call the given consumer for every player, that was in a cell within the given
+     * distance from the given location, when the player was last updated. The players
+     * still need to be checked against the actual distance.
+     *
+     * @param location The location.
+     * @param distance The distance in blocks.
+     * @param consumer The consumer.
+     * @see #updatePlayer(Player)
+     */
+    public void forEachNearbyPlayer(@NotNull Location location, int distance, @NotNull Consumer<Player> consumer) {
+        players.forEachNearby(location, toCells(distance), consumer);
+    }
+
+    /**
+     * Check whether the given hologram is indexed.
+     *
+     * @param hologram The hologram.
+     * @return True if the hologram is indexed, false otherwise.
+     */
+    public boolean contains(@NotNull DefaultHologram hologram) {
+        return holograms.cells.containsKey(hologram);
+    }
+
+    /**
+     * Get the number of indexed holograms.
+     *
+     * @return The number of holograms.
+     */
+    public int size() {
+        return holograms.cells.size();
+    }
+
+    /**
+     * Remove all holograms from this index. The players stay indexed.
+     */
+    public void clear() {
+        holograms.clear();
+        synchronized (viewDistances) {
+            viewDistances.clear();
+            maxViewDistance = 0;
+        }
+    }
+
+    /**
+     * Get the largest view distance of all indexed holograms.
+     *
+     * @return The view distance.
+     */
+    public int getMaxViewDistance() {
+        return maxViewDistance;
+    }
+
+    /**
+     * Count a hologram under its new view distance instead of the previous one, and
+     * recompute the largest view distance.
+     *
+     * @param previous The previous view distance or -1 if the hologram wasn't indexed.
+     * @param current  The current view distance or -1 if the hologram has been removed.
+     */
+    private void updateViewDistance(int previous, int current) {
+        synchronized (viewDistances) {
+            if (previous >= 0) {
+                viewDistances.computeIfPresent(previous, (d, count) -> count > 1 ? count - 1 : null);
+            }
+            if (current >= 0) {
+                viewDistances.merge(current, 1, Integer::sum);
+            }
+            maxViewDistance = viewDistances.isEmpty() ? 0 : viewDistances.lastKey();
+        }
+    }
+
+    private static int toCells(int distance) {
+        return (distance + CELL_SIZE - 1) >> CELL_BITS;
+    }
+
+    private static long key(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A per-world grid of cells. Each element is in exactly one cell and has a weight,
+     * which is the view distance for holograms.
+     *
+     * @param <T> The type of the elements.
+     */
+    private static class Grid<T> {
+
+        private final @NotNull Map<String, Map<Long, Set<T>>> worlds = new ConcurrentHashMap<>();
+        private final @NotNull Map<T, Cell> cells = new ConcurrentHashMap<>();
+
+        /**
+         * Called when the weight of an element changes, while the element is locked.
+         *
+         * @param previous The previous weight or -1 if the element wasn't in the grid.
+         * @param current  The current weight or -1 if the element has been removed.
+         */
+        void onWeightChanged(int previous, int current) {
+            // Only the weights of holograms are tracked.
+        }
+
+        boolean update(@NotNull T element, @NotNull Location location, int weight) {
+            World world = location.getWorld();
+            if (world == null) {
+                return remove(element);
+            }
+
+            String worldName = world.getName();
+            int cellX = location.getBlockX() >> CELL_BITS;
+            int cellZ = location.getBlockZ() >> CELL_BITS;
+            boolean[] changed = new boolean[1];
+            // Compute on the element key, so concurrent updates of one element are serialized.
+            cells.compute(element, (e, previous) -> {
+                if (previous == null || previous.weight != weight) {
+                    onWeightChanged(previous != null ? previous.weight : -1, weight);
+                }
+                if (previous != null && previous.matches(worldName, cellX, cellZ)) {
+                    return previous.weight == weight ? previous : new Cell(worldName, cellX, cellZ, weight);
+                }
+                if (previous != null) {
+                    removeFromCell(e, previous);
+                }
+                Cell cell = new Cell(worldName, cellX, cellZ, weight);
+                worlds.computeIfAbsent(worldName, w -> new ConcurrentHashMap<>()).compute(cell.key, (k, elements) -> {
+                    Set<T> set = elements != null ? elements : ConcurrentHashMap.newKeySet();
+                    set.add(e);
+                    return set;
+                });
+                changed[0] = true;
+                return cell;
+            });
+            return changed[0];
+        }
+
+        boolean remove(@NotNull T element) {
+            boolean[] removed = new boolean[1];
+            cells.computeIfPresent(element, (e, previous) -> {
+                removeFromCell(e, previous);
+                onWeightChanged(previous.weight, -1);
+                removed[0] = true;
+                return null;
+            });
+            return removed[0];
+        }
+
+        void forEachNearby(@NotNull Location location, int radius, @NotNull Consumer<T> consumer) {
+            World world = location.getWorld();
+            if (world == null) {
+                return;
+            }
+            Map<Long, Set<T>> grid = worlds.get(world.getName());
+            if (grid == null || grid.isEmpty()) {
+                return;
+            }
+
+            int centerX = location.getBlockX() >> CELL_BITS;
+            int centerZ = location.getBlockZ() >> CELL_BITS;
+            for (int cellX = centerX - radius; cellX <= centerX + radius; cellX++) {
+                for (int cellZ = centerZ - radius; cellZ <= centerZ + radius; cellZ++) {
+                    Set<T> elements = grid.get(key(cellX, cellZ));
+                    if (elements != null) {
+                        elements.forEach(consumer);
+                    }
+                }
+            }
+        }
+
+        void clear() {
+            cells.clear();
+            worlds.clear();
+        }
+
+        private void removeFromCell(@NotNull T element, @NotNull Cell cell) {
+            Map<Long, Set<T>> grid = worlds.get(cell.world);
+            if (grid == null) {
+                return;
+            }
+            grid.computeIfPresent(cell.key, (k, elements) -> {
+                elements.remove(element);
+                return elements.isEmpty() ? null : elements;
+            });
+        }
+
+    }
+
+    private static class Cell {
+
+        private final String world;
+        private final int x;
+        private final int z;
+        private final long key;
+        private final int weight;
+
+        Cell(@NotNull String world, int x, int z, int weight) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+            this.key = key(x, z);
+            this.weight = weight;
+        }
+
+        boolean matches(@NotNull String world, int x, int z) {
+            return this.x == x && this.z == z && this.world.equals(world);
+        }
+
+    }
+
+}
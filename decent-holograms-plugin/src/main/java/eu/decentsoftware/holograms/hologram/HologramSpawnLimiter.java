@@ -0,0 +1,89 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram;
+
+import eu.decentsoftware.holograms.Config;
+import eu.decentsoftware.holograms.DecentHolograms;
+import eu.decentsoftware.holograms.profile.Profile;
+import eu.decentsoftware.holograms.ticker.Ticked;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This class shows the queued holograms to the players, while keeping the number of
+ * packets sent to each player per tick and the number of hologram entities shown to
+ * each player within the configured limits. That way, players entering an area with
+ * a lot of holograms receive them over the following ticks instead of all at once.
+ *
+ * @author d0by
+ * @see HologramSpawnQueue
+ * @since 3.0.0
+ */
+public class HologramSpawnLimiter implements Ticked {
+
+    private static final DecentHolograms PLUGIN = DecentHolograms.getInstance();
+
+    @Override
+    public void tick() {
+        PLUGIN.getProfileRegistry().forEachProfile(this::process);
+    }
+
+    @NotNull
+    @Override
+    public String getTimingsName() {
+        return "Hologram Spawn Limiter";
+    }
+
+    private void process(@NotNull Profile profile) {
+        HologramSpawnQueue queue = profile.getContext().getSpawnQueue();
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        Player player = profile.getPlayer();
+        if (player == null) {
+            queue.clear();
+            return;
+        }
+
+        // If the limits have been disabled, just show everything that's left.
+        int budget = Config.VISIBILITY_SPAWN_PACKETS_PER_TICK > 0 ? Config.VISIBILITY_SPAWN_PACKETS_PER_TICK : Integer.MAX_VALUE;
+        int maxEntities = Config.VISIBILITY_SPAWN_MAX_ENTITIES > 0 ? Config.VISIBILITY_SPAWN_MAX_ENTITIES : Integer.MAX_VALUE;
+
+        // At least one hologram is shown per tick, even if it doesn't fit into the budget.
+        while (budget > 0) {
+            DefaultHologram hologram = queue.peek();
+            if (hologram == null) {
+                break;
+            }
+
+            DefaultHologramVisibilityManager visibilityManager = hologram.getVisibilityManager();
+            if (queue.getShownEntities() + visibilityManager.getEntityCount(player) > maxEntities) {
+                // Holograms are shown strictly nearest-first. A farther hologram might still
+                // fit, but it would be shown before a nearer one, so we wait for entities to
+                // be freed instead.
+                break;
+            }
+
+            queue.poll();
+            budget -= visibilityManager.showQueued(player);
+        }
+    }
+
+}
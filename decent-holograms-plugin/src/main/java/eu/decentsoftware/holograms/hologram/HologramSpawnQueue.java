@@ -0,0 +1,193 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram;
+
+import eu.decentsoftware.holograms.Config;
+import eu.decentsoftware.holograms.profile.ProfileContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class represents a queue of holograms, that are waiting to be shown to one
+ * player. The holograms are shown strictly nearest-first, so a farther hologram is
+ * never shown before a nearer one, even if it would fit into the limits. The queue
+ * also keeps track of the number of hologram entities, that are currently shown to
+ * the player.
+ * <p>
+ * Holograms in this queue are not viewers yet. They are shown by the
+ * {@link HologramSpawnLimiter}, as the limits allow.
+ *
+ * @author d0by
+ * @see ProfileContext#getSpawnQueue()
+ * @since 3.0.0
+ */
+public class HologramSpawnQueue {
+
+    private final @NotNull PriorityQueue<Entry> queue;
+    private final @NotNull Map<DefaultHologram, Entry> entries;
+    private final @NotNull AtomicInteger shownEntities;
+
+    /**
+     * Creates a new instance of {@link HologramSpawnQueue}.
+     */
+    public HologramSpawnQueue() {
+        this.queue = new PriorityQueue<>();
+        this.entries = new HashMap<>();
+        this.shownEntities = new AtomicInteger(0);
+    }
+
+    /**
+     * Check whether the spawn limits are enabled. If they aren't, holograms
+     * are shown immediately and never queued.
+     *
+     * @return True if the limits are enabled, false otherwise.
+     */
+    public static boolean isEnabled() {
+        return Config.VISIBILITY_SPAWN_PACKETS_PER_TICK > 0 || Config.VISIBILITY_SPAWN_MAX_ENTITIES > 0;
+    }
+
+    /**
+     * Add the given hologram to this queue or update its priority if it's already queued.
+     *
+     * @param hologram        The hologram.
+     * @param distanceSquared The squared distance between the player and the hologram.
+     */
+    public synchronized void offer(@NotNull DefaultHologram hologram, double distanceSquared) {
+        Entry entry = entries.get(hologram);
+        if (entry != null) {
+            if (entry.distanceSquared == distanceSquared) {
+                return;
+            }
+            queue.remove(entry);
+        }
+        entry = new Entry(hologram, distanceSquared);
+        entries.put(hologram, entry);
+        queue.add(entry);
+    }
+
+    /**
+     * Remove the given hologram from this queue.
+     *
+     * @param hologram The hologram.
+     * @return True if the hologram was queued, false otherwise.
+     */
+    public synchronized boolean remove(@NotNull DefaultHologram hologram) {
+        Entry entry = entries.remove(hologram);
+        if (entry != null) {
+            queue.remove(entry);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the nearest queued hologram without removing it.
+     *
+     * @return The hologram or null if the queue is empty.
+     */
+    @Nullable
+    public synchronized DefaultHologram peek() {
+        Entry entry = queue.peek();
+        return entry != null ? entry.hologram : null;
+    }
+
+    /**
+     * Remove and return the nearest queued hologram.
+     *
+     * @return The hologram or null if the queue is empty.
+     */
+    @Nullable
+    public synchronized DefaultHologram poll() {
+        Entry entry = queue.poll();
+        if (entry == null) {
+            return null;
+        }
+        entries.remove(entry.hologram);
+        return entry.hologram;
+    }
+
+    /**
+     * Check whether the given hologram is queued.
+     *
+     * @param hologram The hologram.
+     * @return True if the hologram is queued, false otherwise.
+     */
+    public synchronized boolean contains(@NotNull DefaultHologram hologram) {
+        return entries.containsKey(hologram);
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove all holograms from this queue.
+     */
+    public synchronized void clear() {
+        queue.clear();
+        entries.clear();
+    }
+
+    /**
+     * Get the number of hologram entities, that are currently shown to the player.
+     *
+     * @return The number of entities.
+     */
+    public int getShownEntities() {
+        return shownEntities.get();
+    }
+
+    /**
+     * Add the given amount to the number of shown hologram entities.
+     *
+     * @param delta The amount. (Negative if entities were hidden)
+     */
+    public void addShownEntities(int delta) {
+        if (delta != 0) {
+            shownEntities.addAndGet(delta);
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        private final DefaultHologram hologram;
+        private final double distanceSquared;
+
+        Entry(@NotNull DefaultHologram hologram, double distanceSquared) {
+            this.hologram = hologram;
+            this.distanceSquared = distanceSquared;
+        }
+
+        @Override
+        public int compareTo(@NotNull Entry other) {
+            return Double.compare(distanceSquared, other.distanceSquared);
+        }
+
+    }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram;
+
+import eu.decentsoftware.holograms.profile.Profile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+
+/**
+ * This class holds the per-player visibility state of one hologram, indexed by the
+ * slot of the player's profile (see {@link Profile#getSlot()}).
+ * <p>
+ * The state is split into segments of {@value #SEGMENT_SIZE} slots. Each flag of a
+ * segment is a single {@link AtomicLong}, so reads and single-flag updates are
+ * lock-free. Growing only copies the references to the segments, so updates can
+ * never be lost to a concurrent resize. Compound updates of one slot need to be
+ * guarded by the caller. (See {@link DefaultHologramVisibilityManager})
+ *
+ * @author d0by
+ * @since 3.0.0
+ */
+final class VisibilityState {
+
+    static final int VIEWER = 0;
+    static final int VISIBLE = 1;
+    static final int HIDDEN = 2;
+    private static final int FLAGS = 3;
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private volatile Segment[] segments;
+
+    VisibilityState() {
+        this.segments = new Segment[0];
+    }
+
+    /**
+     * Get the profile, that owns the given slot in this state.
+     *
+     * @param slot The slot.
+     * @return The owner or null, if the slot is free.
+     */
+    @Nullable
+    Profile getOwner(int slot) {
+        Segment segment = getSegment(slot);
+        return segment != null ? segment.owners.get(slot & SEGMENT_MASK) : null;
+    }
+
+    /**
+     * Check whether the slot of the given profile currently belongs to it.
+     *
+     * @param profile The profile.
+     * @return True if the state in the slot belongs to the profile.
+     */
+    boolean owns(@NotNull Profile profile) {
+        return getOwner(profile.getSlot()) == profile;
+    }
+
+    /**
+     * Take over the slot of the given profile. If the slot belonged to another
+     * profile before, its state is reset first.
+     *
+     * @param profile The profile.
+     * @return The slot.
+     */
+    int claim(@NotNull Profile profile) {
+        int slot = profile.getSlot();
+        Segment segment = getOrCreateSegment(slot);
+        int index = slot & SEGMENT_MASK;
+        Profile owner = segment.owners.get(index);
+        if (owner != profile) {
+            segment.reset(index);
+            segment.owners.set(index, profile);
+        }
+        return slot;
+    }
+
+    /**
+     * Reset the state of the given slot and free it.
+     *
+     * @param slot The slot.
+     */
+    void reset(int slot) {
+        Segment segment = getSegment(slot);
+        if (segment != null) {
+            segment.reset(slot & SEGMENT_MASK);
+        }
+    }
+
+    /**
+     * Reset the state of all slots.
+     */
+    void clear() {
+        for (Segment segment : segments) {
+            for (int index = 0; index < SEGMENT_SIZE; index++) {
+                segment.reset(index);
+            }
+        }
+    }
+
+    boolean get(int flag, int slot) {
+        Segment segment = getSegment(slot);
+        return segment != null && (segment.flags[flag].get() & (1L << (slot & SEGMENT_MASK))) != 0L;
+    }
+
+    void set(int flag, int slot, boolean value) {
+        Segment segment = getOrCreateSegment(slot);
+        long bit = 1L << (slot & SEGMENT_MASK);
+        AtomicLong bits = segment.flags[flag];
+        long current;
+        do {
+            current = bits.get();
+        } while (!bits.compareAndSet(current, value ? current | bit : current & ~bit));
+    }
+
+    /**
+     * Clear the given flag in all slots.
+     *
+     * @param flag The flag.
+     */
+    void clearAll(int flag) {
+        for (Segment segment : segments) {
+            segment.flags[flag].set(0L);
+        }
+    }
+
+    int getPage(int slot) {
+        Segment segment = getSegment(slot);
+        return segment != null ? segment.pages.get(slot & SEGMENT_MASK) : 0;
+    }
+
+    void setPage(int slot, int page) {
+        getOrCreateSegment(slot).pages.set(slot & SEGMENT_MASK, page);
+    }
+
+    int getEntities(int slot) {
+        Segment segment = getSegment(slot);
+        return segment != null ? segment.entities.get(slot & SEGMENT_MASK) : 0;
+    }
+
+    void setEntities(int slot, int entities) {
+        getOrCreateSegment(slot).entities.set(slot & SEGMENT_MASK, entities);
+    }
+
+    /**
+     * Shift the pages of all owned slots, that are at the given index or after it,
+     * by the given amount. Pages never go below 0.
+     *
+     * @param index The index to start shifting from.
+     * @param shift The amount to shift by.
+     */
+    void shiftPages(int index, int shift) {
+        for (Segment segment : segments) {
+            for (int i = 0; i < SEGMENT_SIZE; i++) {
+                int page = segment.pages.get(i);
+                if (segment.owners.get(i) != null && page >= index) {
+                    segment.pages.compareAndSet(i, page, Math.max(0, page + shift));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reset the pages of all slots to 0.
+     */
+    void resetPages() {
+        for (Segment segment : segments) {
+            for (int i = 0; i < SEGMENT_SIZE; i++) {
+                segment.pages.set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Call the given consumer for each slot, that has the given flag set.
+     * This doesn't block and doesn't allocate.
+     *
+     * @param flag     The flag.
+     * @param consumer The consumer.
+     */
+    void forEach(int flag, @NotNull IntConsumer consumer) {
+        Segment[] segments = this.segments;
+        for (int s = 0; s < segments.length; s++) {
+            long bits = segments[s].flags[flag].get();
+            while (bits != 0L) {
+                int index = Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                consumer.accept((s << SEGMENT_BITS) | index);
+            }
+        }
+    }
+
+    @Nullable
+    private Segment getSegment(int slot) {
+        Segment[] segments = this.segments;
+        int s = slot >>> SEGMENT_BITS;
+        return s < segments.length ? segments[s] : null;
+    }
+
+    @NotNull
+    private Segment getOrCreateSegment(int slot) {
+        Segment segment = getSegment(slot);
+        return segment != null ? segment : grow(slot);
+    }
+
+    @NotNull
+    private synchronized Segment grow(int slot) {
+        int s = slot >>> SEGMENT_BITS;
+        Segment[] segments = this.segments;
+        if (s >= segments.length) {
+            int length = segments.length;
+            segments = Arrays.copyOf(segments, s + 1);
+            for (int i = length; i < segments.length; i++) {
+                segments[i] = new Segment();
+            }
+            this.segments = segments;
+        }
+        return segments[s];
+    }
+
+    private static final class Segment {
+
+        private final AtomicReferenceArray<Profile> owners = new AtomicReferenceArray<>(SEGMENT_SIZE);
+        private final AtomicIntegerArray pages = new AtomicIntegerArray(SEGMENT_SIZE);
+        private final AtomicIntegerArray entities = new AtomicIntegerArray(SEGMENT_SIZE);
+        private final AtomicLong[] flags = new AtomicLong[FLAGS];
+
+        private Segment() {
+            for (int i = 0; i < FLAGS; i++) {
+                flags[i] = new AtomicLong();
+            }
+        }
+
+        private void reset(int index) {
+            long mask = ~(1L << index);
+            for (AtomicLong bits : flags) {
+                long current;
+                do {
+                    current = bits.get();
+                } while (!bits.compareAndSet(current, current & mask));
+            }
+            pages.set(index, 0);
+            entities.set(index, 0);
+            owners.set(index, null);
+        }
+
+    }
+
+}
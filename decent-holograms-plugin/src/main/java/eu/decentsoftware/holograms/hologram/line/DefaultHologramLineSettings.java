@@ -19,8 +19,10 @@
 package eu.decentsoftware.holograms.hologram.line;
 
 import eu.decentsoftware.holograms.api.hologram.line.HologramLineSettings;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.jetbrains.annotations.Nullable;
 
 @Getter
 @Setter
@@ -31,6 +33,9 @@ public class DefaultHologramLineSettings implements HologramLineSettings {
     private double offsetX;
     private double offsetY;
     private double offsetZ;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient Runnable heightListener;
 
     /**
      * Create a new instance of {@link DefaultHologramLineSettings} with default values.
@@ -43,4 +48,26 @@ public class DefaultHologramLineSettings implements HologramLineSettings {
         this.offsetZ = 0d;
     }
 
+    @Override
+    public void setHeight(double height) {
+        if (this.height == height) {
+            return;
+        }
+        this.height = height;
+        Runnable listener = this.heightListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Set the listener, that is called whenever the height changes. The page uses
+     * this to keep its layout up to date.
+     *
+     * @param heightListener The listener or null to remove it.
+     */
+    public void setHeightListener(@Nullable Runnable heightListener) {
+        this.heightListener = heightListener;
+    }
+
 }
@@ -0,0 +1,56 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram.line.content;
+
+/**
+ * This enum represents how much the rendered content of a line depends on its viewers.
+ * The scope is determined when the content is parsed, so the renderers know, how often
+ * and for whom they need to render the content.
+ *
+ * @author d0by
+ * @since 3.0.0
+ */
+public enum ContentScope {
+
+    /**
+     * The content contains no placeholders. It is rendered once and never re-rendered.
+     */
+    STATIC,
+    /**
+     * The content only contains placeholders, that don't depend on the viewer
+     * (e.g. {@code {online}} or {@code {time}}). It is rendered once for all viewers.
+     */
+    GLOBAL,
+    /**
+     * The content contains placeholders, that depend on the viewer (e.g. {@code {player}}
+     * or PlaceholderAPI placeholders). It is rendered separately for each viewer.
+     */
+    PLAYER;
+
+    /**
+     * Get the broader of this and the given scope.
+     *
+     * @param other The other scope.
+     * @return The broader scope.
+     */
+    public ContentScope and(ContentScope other) {
+        return other.ordinal() > ordinal() ? other : this;
+    }
+
+}
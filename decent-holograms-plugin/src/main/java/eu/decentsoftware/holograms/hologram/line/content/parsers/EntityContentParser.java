@@ -43,7 +43,7 @@ public class EntityContentParser implements ContentParser {
             renderer.updateAll();
             return true;
         } else if (renderer != null) {
-            renderer.hideAll();
+            renderer.discard();
         }
 
         renderer = new EntityLineRenderer(line, entity);
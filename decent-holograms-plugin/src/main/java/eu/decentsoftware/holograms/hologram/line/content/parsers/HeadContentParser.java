@@ -41,7 +41,7 @@ public class HeadContentParser implements ContentParser {
             renderer.updateAll();
             return true;
         } else if (renderer != null) {
-            renderer.hideAll();
+            renderer.discard();
         }
 
         renderer = new HeadLineRenderer(line, itemStack);
@@ -41,7 +41,7 @@ public class IconContentParser implements ContentParser {
             renderer.updateAll();
             return true;
         } else if (renderer != null) {
-            renderer.hideAll();
+            renderer.discard();
         }
 
         renderer = new IconLineRenderer(line, itemStack);
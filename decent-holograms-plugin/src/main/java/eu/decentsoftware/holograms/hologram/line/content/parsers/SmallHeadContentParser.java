@@ -42,7 +42,7 @@ public class SmallHeadContentParser implements ContentParser {
             renderer.updateAll();
             return true;
         } else if (renderer != null) {
-            renderer.hideAll();
+            renderer.discard();
         }
 
         renderer = new SmallHeadLineRenderer(line, itemStack);
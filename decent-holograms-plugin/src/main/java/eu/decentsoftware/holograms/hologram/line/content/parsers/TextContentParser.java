@@ -18,13 +18,17 @@
 
 package eu.decentsoftware.holograms.hologram.line.content.parsers;
 
+import eu.decentsoftware.holograms.DecentHolograms;
 import eu.decentsoftware.holograms.api.hologram.line.HologramLine;
+import eu.decentsoftware.holograms.hologram.line.content.ContentScope;
 import eu.decentsoftware.holograms.hologram.line.renderer.LineRenderer;
 import eu.decentsoftware.holograms.hologram.line.renderer.TextLineRenderer;
 import org.jetbrains.annotations.NotNull;
 
 public class TextContentParser implements ContentParser {
 
+    private static final DecentHolograms PLUGIN = DecentHolograms.getInstance();
+
     @Override
     public boolean parse(@NotNull HologramLine line) {
         String content = line.getContent();
@@ -32,17 +36,20 @@ public class TextContentParser implements ContentParser {
             content = "";
         }
 
+        // Classify the content, so the renderer knows for whom it needs to render it.
+        ContentScope scope = PLUGIN.getReplacementRegistry().getScope(content);
+
         LineRenderer renderer = (LineRenderer) line.getRenderer();
         if (renderer instanceof TextLineRenderer) {
-            ((TextLineRenderer) line.getRenderer()).setText(content);
+            ((TextLineRenderer) line.getRenderer()).setText(content, scope);
             renderer.updateAll();
             return true;
         } else if (renderer != null) {
-            renderer.hideAll();
+            renderer.discard();
             line.getSettings().setHeight(0.3d);
         }
 
-        renderer = new TextLineRenderer(line, content);
+        renderer = new TextLineRenderer(line, content, scope);
         line.setRenderer(renderer);
         line.getPositionManager().getOffsets().setY(-0.5d);
         renderer.displayAll();
@@ -0,0 +1,97 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram.line.renderer;
+
+import eu.decentsoftware.holograms.profile.Profile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * This class remembers the last content of a line, that has been sent to each
+ * viewer, so unchanged content doesn't have to be sent again. The content is kept
+ * together with its hash code, so most changes are detected without a full
+ * {@link Object#equals(Object)} comparison. The entries are indexed by the slot
+ * of the viewer's profile (see {@link Profile#getSlot()}).
+ * <p>
+ * All methods are synchronized, as the content is sent from the ticker threads,
+ * while the entity is spawned and destroyed by the visibility updates.
+ *
+ * @author d0by
+ * @since 3.0.0
+ */
+final class ContentTracker {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Object[] contents;
+    private int[] hashes;
+
+    ContentTracker() {
+        this.contents = new Object[INITIAL_CAPACITY];
+        this.hashes = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Remember the given content as the last content sent to the given slot.
+     *
+     * @param slot    The slot of the viewer.
+     * @param content The content.
+     * @return True if the content differs from the last content sent to
+     * the slot (and should be sent), false otherwise.
+     */
+    synchronized boolean update(int slot, @NotNull Object content) {
+        if (slot < 0) {
+            return true;
+        }
+        ensureCapacity(slot);
+        int hash = content.hashCode();
+        Object last = contents[slot];
+        if (last != null && hashes[slot] == hash && last.equals(content)) {
+            return false;
+        }
+        contents[slot] = content;
+        hashes[slot] = hash;
+        return true;
+    }
+
+    /**
+     * Forget the last content sent to the given slot.
+     *
+     * @param slot The slot of the viewer.
+     */
+    synchronized void reset(int slot) {
+        if (slot >= 0 && slot < contents.length) {
+            contents[slot] = null;
+        }
+    }
+
+    private void ensureCapacity(int slot) {
+        if (slot < contents.length) {
+            return;
+        }
+        int capacity = contents.length;
+        while (capacity <= slot) {
+            capacity <<= 1;
+        }
+        contents = Arrays.copyOf(contents, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+    }
+
+}
@@ -37,13 +37,17 @@ import java.util.UUID;
  */
 public abstract class DoubleEntityLineRenderer extends LineRenderer {
 
-    protected final int eid;
-    protected final int eidOther;
+    protected final int entity;
+    protected final int entityOther;
+    protected final UUID uuid;
+    protected final UUID uuidOther;
 
     public DoubleEntityLineRenderer(@NotNull HologramLine parent, @NotNull HologramLineType type) {
         super(parent, type);
-        this.eid = NMS.getFreeEntityId();
-        this.eidOther = NMS.getFreeEntityId();
+        this.entity = newEntity();
+        this.entityOther = newEntity();
+        this.uuid = newEntityUuid();
+        this.uuidOther = newEntityUuid();
     }
 
     /**
@@ -55,49 +59,41 @@ public abstract class DoubleEntityLineRenderer extends LineRenderer {
      * @param metaOther The metadata of the passenger entity.
      */
     protected void display(@NotNull Player player, @NotNull Location location, @NotNull EntityType typeOther, @NotNull Object... metaOther) {
-        // Create the armor stand metadata objects
-        Object metaEntity = NMS.getMetaEntityProperties(false, false, false,
-                false, true, false, false);
-        Object metaArmorStand = NMS.getMetaArmorStandProperties(false, false, true,
-                true);
-        Object metaNameVisible = NMS.getMetaEntityCustomNameVisible(false);
+        int eid = getEntityId(entity);
+        int eidOther = getEntityId(entityOther);
 
-        // Spawn the fake armor stand entity
-        NMS.spawnEntityLiving(player, eid, UUID.randomUUID(), EntityType.ARMOR_STAND, location);
-        // Send the metadata
-        NMS.sendEntityMetadata(player, eid, metaEntity, metaArmorStand, metaNameVisible);
+        // Spawn the fake armor stand entity with its metadata
+        NMS.spawnEntityLiving(player, eid, uuid, EntityType.ARMOR_STAND, location, META_MARKER_ENTITY, META_MARKER_ARMOR_STAND, META_NAME_HIDDEN);
+        setLastPosition(player, location);
 
-        // Spawn the passenger entity
+        // Spawn the passenger entity with its metadata
         if (typeOther.isAlive()) {
-            NMS.spawnEntityLiving(player, eidOther, UUID.randomUUID(), typeOther, location);
+            NMS.spawnEntityLiving(player, eidOther, uuidOther, typeOther, location, metaOther);
         } else {
-            NMS.spawnEntity(player, eidOther, UUID.randomUUID(), typeOther, location);
+            NMS.spawnEntity(player, eidOther, uuidOther, typeOther, location);
+            NMS.sendEntityMetadata(player, eidOther, metaOther);
         }
-        // Send the metadata
-        NMS.sendEntityMetadata(player, eidOther, metaOther);
 
         // Add the other entity to the armor stand
         NMS.updatePassengers(player, eid, eidOther);
     }
 
     @Override
-    public void hide(@NotNull Player player) {
-        // Remove the entity from the armor stand
-        NMS.updatePassengers(player, eid);
-        // Remove the armor stand for the player
-        NMS.removeEntity(player, eid);
-        // Remove the entity for the player
-        NMS.removeEntity(player, eidOther);
+    public int getSpawnPacketCount() {
+        // Spawn + metadata for both entities + passengers
+        return NMS.canInlineSpawnMetadata() ? 4 : 5;
+    }
+
+    @Override
+    public int getEntityCount() {
+        return 2;
     }
 
     @Override
     public void teleport(@NotNull Player player, @NotNull Location location) {
-        // Remove the entity from the armor stand
-        NMS.updatePassengers(player, eid);
-        // Teleport the armor stand to the new location
-        NMS.teleportEntity(player, eid, location, false);
-        // Add the entity to the armor stand
-        NMS.updatePassengers(player, eid, eidOther);
+        // Teleport the armor stand to the new location. The passenger stays mounted
+        // and moves with it, so there is no need to dismount and remount it.
+        teleportEntity(player, getEntityId(entity), location);
     }
 
 }
@@ -41,7 +41,9 @@ public class HeadLineRenderer extends LineRenderer {
     private boolean small;
     
     @Getter(AccessLevel.NONE)
-    private final int eid;
+    private final int entity;
+    @Getter(AccessLevel.NONE)
+    private final UUID uuid;
 
     public HeadLineRenderer(@NotNull HologramLine parent, @NotNull DecentItemStack itemStack) {
         this(parent, itemStack, HologramLineType.HEAD, false);
@@ -51,7 +53,8 @@ public class HeadLineRenderer extends LineRenderer {
         super(parent, type);
         this.itemStack = itemStack;
         this.small = small;
-        this.eid = NMS.getFreeEntityId();
+        this.entity = newEntity();
+        this.uuid = newEntityUuid();
     }
 
     @Override
@@ -65,26 +68,30 @@ public class HeadLineRenderer extends LineRenderer {
         Object metaArmorStand = NMS.getMetaArmorStandProperties(small, false, true, true);
         Object metaNameVisible = NMS.getMetaEntityCustomNameVisible(false);
 
-        // Spawn the fake armor stand entity
-        NMS.spawnEntityLiving(player, eid, UUID.randomUUID(), EntityType.ARMOR_STAND, loc);
-        // Send the metadata
-        NMS.sendEntityMetadata(player, eid, metaEntity, metaArmorStand, metaNameVisible);
+        // Spawn the fake armor stand entity with its metadata
+        NMS.spawnEntityLiving(player, getEntityId(entity), uuid, EntityType.ARMOR_STAND, loc, metaEntity, metaArmorStand, metaNameVisible);
+        setLastPosition(player, loc);
+        updateLastContent(player, item);
         // Set the helmet
-        NMS.setEquipment(player, eid, EntityEquipmentSlot.HEAD, item);
+        NMS.setEquipment(player, getEntityId(entity), EntityEquipmentSlot.HEAD, item);
+    }
+
+    @Override
+    public int getSpawnPacketCount() {
+        // Spawn + metadata + equipment
+        return super.getSpawnPacketCount() + 1;
     }
 
     @Override
     public void update(@NotNull Player player) {
         ItemStack item = itemStack.toItemStack(player);
+        if (!updateLastContent(player, item)) {
+            // The player already sees this item.
+            return;
+        }
 
         // Set the helmet
-        NMS.setEquipment(player, eid, EntityEquipmentSlot.HEAD, item);
-    }
-
-    @Override
-    public void hide(@NotNull Player player) {
-        // Remove the entity
-        NMS.removeEntity(player, eid);
+        NMS.setEquipment(player, getEntityId(entity), EntityEquipmentSlot.HEAD, item);
     }
 
     @Override
@@ -92,7 +99,7 @@ public class HeadLineRenderer extends LineRenderer {
         Location loc = getParent().getPositionManager().getActualLocation();
 
         // Teleport the armor stand
-        NMS.teleportEntity(player, eid, loc, false);
+        teleportEntity(player, getEntityId(entity), loc);
     }
 
 }
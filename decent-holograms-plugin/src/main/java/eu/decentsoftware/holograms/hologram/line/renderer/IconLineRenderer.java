@@ -52,17 +52,22 @@ public class IconLineRenderer extends DoubleEntityLineRenderer {
 
         // Display
         super.display(player, location, EntityType.DROPPED_ITEM, metaEntityItem, metaItem);
+        updateLastContent(player, item);
     }
 
     @Override
     public void update(@NotNull Player player) {
         ItemStack item = itemStack.toItemStack(player);
+        if (!updateLastContent(player, item)) {
+            // The player already sees this item.
+            return;
+        }
 
         // Create the item metadata objects
         Object metaItem = NMS.getMetaItemStack(item);
 
         // Send the metadata
-        NMS.sendEntityMetadata(player, eidOther, metaItem);
+        NMS.sendEntityMetadata(player, getEntityId(entityOther), metaItem);
     }
 
 }
@@ -18,15 +18,27 @@
 
 package eu.decentsoftware.holograms.hologram.line.renderer;
 
+import eu.decentsoftware.holograms.Config;
 import eu.decentsoftware.holograms.DecentHolograms;
+import eu.decentsoftware.holograms.api.hologram.Hologram;
 import eu.decentsoftware.holograms.api.hologram.line.HologramLine;
 import eu.decentsoftware.holograms.api.hologram.line.HologramLineRenderer;
 import eu.decentsoftware.holograms.api.hologram.line.HologramLineType;
+import eu.decentsoftware.holograms.api.hologram.page.HologramPage;
+import eu.decentsoftware.holograms.hologram.page.DefaultHologramPage;
+import eu.decentsoftware.holograms.nms.EntityRemoval;
 import eu.decentsoftware.holograms.nms.NMSAdapter;
+import eu.decentsoftware.holograms.profile.Profile;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 public abstract class LineRenderer implements HologramLineRenderer {
 
@@ -38,12 +50,137 @@ public abstract class LineRenderer implements HologramLineRenderer {
     protected static final DecentHolograms PLUGIN = DecentHolograms.getInstance();
     protected static final NMSAdapter NMS = PLUGIN.getNMSManager().getAdapter();
 
+    /*
+     * The metadata of an invisible marker armor stand, that's used for most lines.
+     * The metadata objects are interned by the adapter, so they are only resolved once.
+     */
+    protected static final Object META_MARKER_ENTITY = NMS.getMetaEntityProperties(false, false, false,
+            false, true, false, false);
+    protected static final Object META_MARKER_ARMOR_STAND = NMS.getMetaArmorStandProperties(false, false, true,
+            true);
+    protected static final Object META_NAME_HIDDEN = NMS.getMetaEntityCustomNameVisible(false);
+
     private final @NotNull HologramLine parent;
     private final @NotNull HologramLineType type;
+    private final @NotNull PositionTracker positions;
+    private final @NotNull ContentTracker contents;
+    private volatile int[] entityIds;
+    private int entities;
 
     public LineRenderer(@NotNull HologramLine parent, @NotNull HologramLineType type) {
         this.parent = parent;
         this.type = type;
+        this.positions = new PositionTracker();
+        this.contents = new ContentTracker();
+        this.entityIds = new int[0];
+        this.entities = 0;
+    }
+
+    /**
+     * Destroy this renderer, releasing the entity ids it uses, so they can be used
+     * by other renderers. This must only be called after the line has been hidden
+     * from all players. This happens whenever the line is removed from its page, its
+     * renderer is replaced, or the hologram is destroyed.
+     * <p>
+     * If the line is displayed again afterwards, the renderer acquires new entity ids.
+     *
+     * @see #getEntityId(int)
+     */
+    public synchronized void destroy() {
+        for (int eid : entityIds) {
+            NMS.releaseEntityId(eid);
+        }
+        entityIds = new int[0];
+    }
+
+    /**
+     * Called when a destroyed renderer acquires new entity ids, because its line is
+     * displayed again. Renderers, that stop their work when destroyed, resume it here.
+     *
+     * @see #destroy()
+     */
+    protected void onRestore() {
+        // Nothing to resume by default.
+    }
+
+    /**
+     * Discard this renderer, as its line got a new one. The line is hidden from all
+     * viewers and this renderer is destroyed. If the page of the line is being edited,
+     * this happens when the edit is committed.
+     *
+     * @see DefaultHologramPage#discardRenderer(LineRenderer)
+     */
+    public void discard() {
+        HologramPage page = parent.getParent();
+        if (page instanceof DefaultHologramPage) {
+            ((DefaultHologramPage) page).discardRenderer(this);
+        } else {
+            hideAll();
+            destroy();
+        }
+    }
+
+    /**
+     * Add a new entity to this renderer and get its index. The id of the entity can
+     * then be obtained using {@link #getEntityId(int)}.
+     *
+     * @return The index of the entity.
+     * @see #getEntityId(int)
+     */
+    protected synchronized int newEntity() {
+        int index = entities++;
+        int[] ids = Arrays.copyOf(entityIds, index + 1);
+        ids[index] = NMS.getFreeEntityId();
+        entityIds = ids;
+        return index;
+    }
+
+    /**
+     * Get the current id of the entity with the given index. If this renderer has been
+     * destroyed, new ids are acquired for all of its entities first.
+     *
+     * @param index The index of the entity. (See {@link #newEntity()})
+     * @return The entity id.
+     * @see #destroy()
+     */
+    protected int getEntityId(int index) {
+        int[] ids = entityIds;
+        if (index < ids.length) {
+            return ids[index];
+        }
+        if (restore()) {
+            onRestore();
+        }
+        return entityIds[index];
+    }
+
+    private synchronized boolean restore() {
+        if (entityIds.length == entities) {
+            return false;
+        }
+        int[] ids = new int[entities];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = NMS.getFreeEntityId();
+        }
+        entityIds = ids;
+        return true;
+    }
+
+    /**
+     * Get a new random UUID for an entity of this renderer. The UUID should be created
+     * once and then used whenever the entity is spawned.
+     *
+     * @return The UUID.
+     * @implNote Unlike {@link UUID#randomUUID()}, this doesn't use a {@link java.security.SecureRandom},
+     * as these UUIDs don't need to be unpredictable.
+     */
+    @NotNull
+    protected static UUID newEntityUuid() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Set the version (4) and the variant (IETF), so it looks like any other random UUID.
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
     }
 
     /**
@@ -55,34 +192,120 @@ public abstract class LineRenderer implements HologramLineRenderer {
         return parent.getParent().getParent().getVisibilityManager().getViewerPlayers();
     }
 
+    /**
+     * Call the given consumer for each player, that is currently viewing the page
+     * of this line. Unlike {@link #getViewerPlayers()}, this doesn't copy the viewers.
+     *
+     * @param consumer The consumer.
+     */
+    public void forEachViewer(@NotNull Consumer<Player> consumer) {
+        HologramPage page = parent.getParent();
+        if (page instanceof DefaultHologramPage && ((DefaultHologramPage) page).isEditing()) {
+            // The changes are sent, when the edit of the page is committed.
+            return;
+        }
+        Hologram hologram = page.getParent();
+        int pageIndex = hologram.getIndex(page);
+        if (pageIndex >= 0) {
+            hologram.getVisibilityManager().forEachViewer(pageIndex, consumer);
+        }
+    }
+
     /**
      * Display the line to all players, that are currently viewing the hologram.
      *
      * @see #display(Player)
-     * @see #getViewerPlayers()
+     * @see #forEachViewer(Consumer)
      */
     public void displayAll() {
-        getViewerPlayers().forEach(this::display);
+        forEachViewer(this::display);
     }
 
     /**
      * Update the line for all players, that are currently viewing the hologram.
      *
      * @see #update(Player)
-     * @see #getViewerPlayers()
+     * @see #forEachViewer(Consumer)
      */
     public void updateAll() {
-        getViewerPlayers().forEach(this::update);
+        forEachViewer(this::update);
+    }
+
+    /**
+     * Update the line for the given players at once. Renderers, whose output is often
+     * the same for many players, can override this to build the packets only once
+     * for each distinct output.
+     *
+     * @param players The players.
+     * @see #update(Player)
+     */
+    public void update(@NotNull Collection<Player> players) {
+        for (Player player : players) {
+            update(player);
+        }
+    }
+
+    @Override
+    public void hide(@NotNull Player player) {
+        // Destroy all entities of this line with one packet
+        NMS.removeEntities(player, entityIds);
+        onHide(player);
+    }
+
+    /**
+     * Hide the line from the given player, but instead of destroying its entities right
+     * away, add them to the given removal. This way, the entities of many lines can be
+     * destroyed with one packet.
+     *
+     * @param player  The player.
+     * @param removal The removal to add the entities to.
+     * @see #hide(Player)
+     * @see EntityRemoval#send(NMSAdapter)
+     */
+    public void hide(@NotNull Player player, @NotNull EntityRemoval removal) {
+        removal.add(player, entityIds);
+        onHide(player);
+    }
+
+    /**
+     * Reset the state of this line for the given player, after its entities
+     * have been destroyed for the player.
+     *
+     * @param player The player.
+     */
+    protected void onHide(@NotNull Player player) {
+        resetLastPosition(player);
+        resetLastContent(player);
     }
 
     /**
      * Hide the line from all players, that are currently viewing the hologram.
      *
      * @see #hide(Player)
-     * @see #getViewerPlayers()
+     * @see #forEachViewer(Consumer)
      */
     public void hideAll() {
-        getViewerPlayers().forEach(this::hide);
+        forEachViewer(this::hide);
+    }
+
+    /**
+     * Get the number of packets, that are sent to a player when this line is displayed.
+     * This is used to limit the number of packets sent to a player per tick.
+     *
+     * @return The number of packets.
+     */
+    public int getSpawnPacketCount() {
+        // Spawn + metadata (possibly as part of the spawn packet)
+        return NMS.canInlineSpawnMetadata() ? 1 : 2;
+    }
+
+    /**
+     * Get the number of entities, that are shown to a player by this line.
+     *
+     * @return The number of entities.
+     */
+    public int getEntityCount() {
+        return 1;
     }
 
     @Override
@@ -107,4 +330,113 @@ public abstract class LineRenderer implements HologramLineRenderer {
         return type;
     }
 
+    /**
+     * Send the new position of the main entity of this line to the given player. Nothing
+     * is sent if the entity moved less than the movement threshold since the last position
+     * sent to the player. Small movements are sent as relative moves, which are smaller
+     * than absolute teleports.
+     *
+     * @param player   The player.
+     * @param eid      The id of the main entity.
+     * @param location The new location of the entity.
+     */
+    protected void teleportEntity(@NotNull Player player, int eid, @NotNull Location location) {
+        int slot = getSlot(player);
+        synchronized (positions) {
+            if (positions.isKnown(slot) && !positions.isRotated(slot, location)) {
+                double lastX = positions.getX(slot);
+                double lastY = positions.getY(slot);
+                double lastZ = positions.getZ(slot);
+                double dx = location.getX() - lastX;
+                double dy = location.getY() - lastY;
+                double dz = location.getZ() - lastZ;
+                double threshold = Config.MOVEMENT_THRESHOLD;
+                if (dx * dx + dy * dy + dz * dz <= threshold * threshold) {
+                    // Keep the last position, so small movements add up.
+                    return;
+                }
+                if (Config.MOVEMENT_RELATIVE_MOVES && NMS.moveEntity(player, eid, lastX, lastY, lastZ,
+                        location.getX(), location.getY(), location.getZ(), false)) {
+                    positions.set(slot, location);
+                    return;
+                }
+            }
+
+            NMS.teleportEntity(player, eid, location, false);
+            positions.set(slot, location);
+        }
+    }
+
+    /**
+     * Remember the location, at which the main entity of this line has been spawned for
+     * the given player. This should be called whenever the entity is spawned.
+     *
+     * @param player   The player.
+     * @param location The location of the entity.
+     */
+    protected void setLastPosition(@NotNull Player player, @NotNull Location location) {
+        positions.set(getSlot(player), location);
+    }
+
+    /**
+     * Forget the last position of the main entity of this line for the given player.
+     * This should be called whenever the entity is destroyed.
+     *
+     * @param player The player.
+     */
+    protected void resetLastPosition(@NotNull Player player) {
+        positions.reset(getSlot(player));
+    }
+
+    /**
+     * Remember the given content as the last content of this line sent to the given
+     * player. This should be called whenever content is about to be sent, and nothing
+     * should be sent if this returns false.
+     *
+     * @param player  The player.
+     * @param content The content. (e.g. the formatted text or the item)
+     * @return True if the content differs from the last content sent to the player.
+     */
+    protected boolean updateLastContent(@NotNull Player player, @NotNull Object content) {
+        return contents.update(getSlot(player), content);
+    }
+
+    /**
+     * Forget the last content of this line sent to the given player. This should be
+     * called whenever the entity is destroyed.
+     *
+     * @param player The player.
+     */
+    protected void resetLastContent(@NotNull Player player) {
+        contents.reset(getSlot(player));
+    }
+
+    /**
+     * Send the given metadata of an entity to the given players. If there are multiple
+     * players, the packet is built and encoded only once and shared by all of them.
+     *
+     * @param players The players.
+     * @param eid     The entity id.
+     * @param objects The metadata objects.
+     * @see NMSAdapter#sendSharedPacket(Collection, Object)
+     */
+    protected void sendEntityMetadata(@NotNull Collection<Player> players, int eid, @NotNull Object... objects) {
+        if (players.size() < 2 || !Config.PACKETS_SHARED_ENCODING) {
+            for (Player player : players) {
+                NMS.sendEntityMetadata(player, eid, objects);
+            }
+            return;
+        }
+
+        Object packet = NMS.createEntityMetadataPacket(eid, Arrays.asList(objects));
+        if (packet != null) {
+            NMS.sendSharedPacket(players, packet);
+        }
+    }
+
+    private static int getSlot(@NotNull Player player) {
+        Profile profile = PLUGIN.getProfileRegistry().getProfile(player.getUniqueId());
+        return profile == null ? -1 : profile.getSlot();
+    }
+
 }
@@ -0,0 +1,128 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram.line.renderer;
+
+import eu.decentsoftware.holograms.profile.Profile;
+import org.bukkit.Location;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * This class remembers the last position of an entity, that has been sent to each
+ * viewer. The entries are indexed by the slot of the viewer's profile (see
+ * {@link Profile#getSlot()}), so a lookup doesn't allocate anything.
+ * <p>
+ * All methods are synchronized, as the position is sent from the ticker threads,
+ * while the entity is spawned and destroyed by the visibility updates.
+ *
+ * @author d0by
+ * @since 3.0.0
+ */
+final class PositionTracker {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int STRIDE = 5;
+
+    private double[] positions;
+    private boolean[] known;
+
+    PositionTracker() {
+        this.positions = new double[INITIAL_CAPACITY * STRIDE];
+        this.known = new boolean[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Check whether a position has been sent to the given slot.
+     *
+     * @param slot The slot of the viewer.
+     * @return True if the position is known, false otherwise.
+     */
+    synchronized boolean isKnown(int slot) {
+        return slot >= 0 && slot < known.length && known[slot];
+    }
+
+    synchronized double getX(int slot) {
+        return positions[slot * STRIDE];
+    }
+
+    synchronized double getY(int slot) {
+        return positions[slot * STRIDE + 1];
+    }
+
+    synchronized double getZ(int slot) {
+        return positions[slot * STRIDE + 2];
+    }
+
+    /**
+     * Check whether the rotation of the given location differs from the last sent one.
+     *
+     * @param slot     The slot of the viewer.
+     * @param location The location.
+     * @return True if the rotation differs, false otherwise.
+     */
+    synchronized boolean isRotated(int slot, @NotNull Location location) {
+        int i = slot * STRIDE;
+        return positions[i + 3] != location.getYaw() || positions[i + 4] != location.getPitch();
+    }
+
+    /**
+     * Remember the given location as the last position sent to the given slot.
+     *
+     * @param slot     The slot of the viewer.
+     * @param location The location.
+     */
+    synchronized void set(int slot, @NotNull Location location) {
+        if (slot < 0) {
+            return;
+        }
+        ensureCapacity(slot);
+        int i = slot * STRIDE;
+        positions[i] = location.getX();
+        positions[i + 1] = location.getY();
+        positions[i + 2] = location.getZ();
+        positions[i + 3] = location.getYaw();
+        positions[i + 4] = location.getPitch();
+        known[slot] = true;
+    }
+
+    /**
+     * Forget the last position sent to the given slot.
+     *
+     * @param slot The slot of the viewer.
+     */
+    synchronized void reset(int slot) {
+        if (slot >= 0 && slot < known.length) {
+            known[slot] = false;
+        }
+    }
+
+    private void ensureCapacity(int slot) {
+        if (slot < known.length) {
+            return;
+        }
+        int capacity = known.length;
+        while (capacity <= slot) {
+            capacity <<= 1;
+        }
+        positions = Arrays.copyOf(positions, capacity * STRIDE);
+        known = Arrays.copyOf(known, capacity);
+    }
+
+}
@@ -18,20 +18,29 @@
 
 package eu.decentsoftware.holograms.hologram.line.renderer;
 
+import eu.decentsoftware.holograms.api.hologram.Hologram;
 import eu.decentsoftware.holograms.api.hologram.line.HologramLine;
 import eu.decentsoftware.holograms.api.hologram.line.HologramLineType;
+import eu.decentsoftware.holograms.hologram.DefaultHologram;
+import eu.decentsoftware.holograms.hologram.line.content.ContentScope;
 import eu.decentsoftware.holograms.hooks.MiniMessageHook;
 import eu.decentsoftware.holograms.hooks.PAPI;
 import eu.decentsoftware.holograms.nms.utils.Version;
 import eu.decentsoftware.holograms.profile.Profile;
+import eu.decentsoftware.holograms.replacements.ReplacementRegistry;
 import eu.decentsoftware.holograms.ticker.Ticked;
 import eu.decentsoftware.holograms.utils.Common;
+import eu.decentsoftware.holograms.utils.math.MathUtil;
 import lombok.Getter;
 import org.bukkit.Location;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -47,21 +56,40 @@ public class TextLineRenderer extends LineRenderer implements Ticked {
      * then this cache is not used.
      */
     private final Map<UUID, String> formattedTextCache = new ConcurrentHashMap<>();
-    private final int eid;
+    /**
+     * The formatted text shared by all viewers, if the scope of the line isn't
+     * {@link ContentScope#PLAYER}. Like {@link #formattedTextCache}, this text
+     * is neither colored nor animated. For {@link ContentScope#STATIC} lines,
+     * this is only rendered once, when the text is set.
+     */
+    private volatile String sharedFormattedText;
+    private final int entity;
+    private final UUID uuid;
     private boolean containsAnimations;
     private final String hoverText; // TODO: Hover text
     @Getter
     private String text;
+    @Getter
+    private ContentScope scope;
 
     public TextLineRenderer(@NotNull HologramLine parent, @NotNull String text) {
-        this(parent, text, null);
+        this(parent, text, (String) null);
+    }
+
+    public TextLineRenderer(@NotNull HologramLine parent, @NotNull String text, @NotNull ContentScope scope) {
+        this(parent, text, null, scope);
     }
 
     public TextLineRenderer(@NotNull HologramLine parent, @NotNull String text, String hoverText) {
+        this(parent, text, hoverText, PLUGIN.getReplacementRegistry().getScope(text));
+    }
+
+    public TextLineRenderer(@NotNull HologramLine parent, @NotNull String text, String hoverText, @NotNull ContentScope scope) {
         super(parent, HologramLineType.TEXT);
         this.hoverText = hoverText;
-        this.eid = NMS.getFreeEntityId();
-        this.setText(text);
+        this.entity = newEntity();
+        this.uuid = newEntityUuid();
+        this.setText(text, scope);
     }
 
     /**
@@ -69,12 +97,27 @@ public class TextLineRenderer extends LineRenderer implements Ticked {
      * any animations, and if it does, it will start ticking.
      *
      * @param text The new text of the line.
+     * @see #setText(String, ContentScope)
      */
     public void setText(@NotNull String text) {
+        setText(text, PLUGIN.getReplacementRegistry().getScope(text));
+    }
+
+    /**
+     * Set the text of this line along with its scope. This method will also check
+     * if the line contains any animations, and if it does, it will start ticking.
+     *
+     * @param text  The new text of the line.
+     * @param scope The scope of the text. (See {@link ReplacementRegistry#getScope(String)})
+     */
+    public void setText(@NotNull String text, @NotNull ContentScope scope) {
         this.text = text;
         if (this.text.equalsIgnoreCase("{empty}")) {
             this.text = "";
         }
+        // Hover text is shown only to the players watching the line.
+        this.scope = hoverText != null ? ContentScope.PLAYER : scope;
+        this.sharedFormattedText = this.scope == ContentScope.PLAYER ? null : renderSharedText();
         this.containsAnimations = PLUGIN.getAnimationRegistry().containsAnimation(text);
         if (this.containsAnimations) {
             this.startTicking();
@@ -89,7 +132,30 @@ public class TextLineRenderer extends LineRenderer implements Ticked {
             return;
         }
 
-        for (Player viewerPlayer : getViewerPlayers()) {
+        // Viewers beyond the update distance don't get any content updates.
+        Hologram hologram = getParent().getParent().getParent();
+        Location location = hologram.getPositionManager().getActualLocation();
+        double updateDistance = hologram.getSettings().getUpdateDistance();
+
+        if (scope != ContentScope.PLAYER) {
+            // All viewers see the same text, so it's only animated once.
+            String formattedText = PLUGIN.getAnimationRegistry().animate(sharedFormattedText);
+            List<Player> viewers = new ArrayList<>();
+            forEachViewer((viewerPlayer) -> {
+                if (MathUtil.inDistance(location, viewerPlayer.getLocation(), updateDistance)) {
+                    viewers.add(viewerPlayer);
+                }
+            });
+            update(viewers, Common.colorize(formattedText));
+            return;
+        }
+
+        // Group the viewers by their text, so each distinct text is only encoded once.
+        Map<String, List<Player>> viewersByText = new HashMap<>();
+        forEachViewer((viewerPlayer) -> {
+            if (!MathUtil.inDistance(location, viewerPlayer.getLocation(), updateDistance)) {
+                return;
+            }
             String formattedText = formattedTextCache.get(viewerPlayer.getUniqueId());
             if (formattedText == null) {
                 formattedText = getFormattedText(viewerPlayer);
@@ -97,8 +163,33 @@ public class TextLineRenderer extends LineRenderer implements Ticked {
             }
             formattedText = PLUGIN.getAnimationRegistry().animate(formattedText);
             formattedText = Common.colorize(formattedText);
-            update(viewerPlayer, formattedText);
+            viewersByText.computeIfAbsent(formattedText, (t) -> new ArrayList<>()).add(viewerPlayer);
+        });
+        viewersByText.forEach((formattedText, players) -> update(players, formattedText));
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        stopTicking();
+        formattedTextCache.clear();
+    }
+
+    @Override
+    protected void onRestore() {
+        if (containsAnimations) {
+            startTicking();
+        }
+    }
+
+    @NotNull
+    @Override
+    public String getTimingsName() {
+        Hologram hologram = getParent().getParent().getParent();
+        if (hologram instanceof DefaultHologram) {
+            return "Animated line of '" + ((DefaultHologram) hologram).getName() + "'";
         }
+        return Ticked.super.getTimingsName();
     }
 
     /**
@@ -109,6 +200,10 @@ public class TextLineRenderer extends LineRenderer implements Ticked {
      */
     @NotNull
     private String getFormattedText(@NotNull Player player) {
+        if (scope != ContentScope.PLAYER) {
+            return getSharedText();
+        }
+
         Profile profile = PLUGIN.getProfileRegistry().getProfile(player.getUniqueId());
         String formattedText = text;
 
@@ -131,23 +226,49 @@ public class TextLineRenderer extends LineRenderer implements Ticked {
         return formattedText;
     }
 
+    /**
+     * Get the formatted text shared by all viewers. Static text is rendered only
+     * once, when it is set, while global text is re-rendered on each call.
+     *
+     * @return The formatted text.
+     */
+    @NotNull
+    private String getSharedText() {
+        String formattedText = scope == ContentScope.STATIC ? sharedFormattedText : null;
+        if (formattedText == null) {
+            formattedText = renderSharedText();
+            sharedFormattedText = formattedText;
+        }
+        if (containsAnimations) {
+            formattedText = PLUGIN.getAnimationRegistry().animate(formattedText);
+        }
+        return Common.colorize(formattedText);
+    }
+
+    /**
+     * Render the text of the line, that doesn't depend on the viewer. The text
+     * is neither colored nor animated.
+     *
+     * @return The rendered text.
+     */
+    @NotNull
+    private String renderSharedText() {
+        return PLUGIN.getReplacementRegistry().replace(text, null);
+    }
+
     @Override
     public void display(@NotNull Player player) {
         Location loc = getParent().getPositionManager().getActualLocation();
         String formattedText = getFormattedText(player);
 
         // Create the metadata objects
-        Object metaEntity = NMS.getMetaEntityProperties(false, false, false,
-                false, true, false, false);
-        Object metaArmorStand = NMS.getMetaArmorStandProperties(false, false, true,
-                true);
         Object metaName = getMetaName(formattedText);
         Object metaNameVisible = NMS.getMetaEntityCustomNameVisible(!formattedText.isEmpty());
 
-        // Spawn the fake armor stand entity
-        NMS.spawnEntityLiving(player, eid, UUID.randomUUID(), EntityType.ARMOR_STAND, loc);
-        // Send the metadata
-        NMS.sendEntityMetadata(player, eid, metaEntity, metaArmorStand, metaName, metaNameVisible);
+        // Spawn the fake armor stand entity with its metadata
+        NMS.spawnEntityLiving(player, getEntityId(entity), uuid, EntityType.ARMOR_STAND, loc, META_MARKER_ENTITY, META_MARKER_ARMOR_STAND, metaName, metaNameVisible);
+        setLastPosition(player, loc);
+        updateLastContent(player, formattedText);
     }
 
     @Override
@@ -156,20 +277,67 @@ public class TextLineRenderer extends LineRenderer implements Ticked {
         update(player, formattedText);
     }
 
+    @Override
+    public void update(@NotNull Collection<Player> players) {
+        if (scope == ContentScope.STATIC) {
+            // Static text never changes, it's only sent again when it's set.
+            return;
+        }
+        if (scope == ContentScope.GLOBAL) {
+            // Render the text once for all the viewers.
+            update(players, getSharedText());
+            return;
+        }
+        if (players.size() < 2) {
+            super.update(players);
+            return;
+        }
+
+        // Group the viewers by their text, so each distinct text is only encoded once.
+        Map<String, List<Player>> viewersByText = new HashMap<>();
+        for (Player player : players) {
+            viewersByText.computeIfAbsent(getFormattedText(player), (t) -> new ArrayList<>()).add(player);
+        }
+        viewersByText.forEach((formattedText, viewers) -> update(viewers, formattedText));
+    }
+
+    private void update(@NotNull Collection<Player> players, @NotNull String text) {
+        // Skip the viewers, that already see this text.
+        List<Player> changed = new ArrayList<>(players.size());
+        for (Player player : players) {
+            if (updateLastContent(player, text)) {
+                changed.add(player);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        // Create the metadata objects
+        Object metaName = getMetaName(text);
+        Object metaNameVisible = NMS.getMetaEntityCustomNameVisible(!Common.isEmptyWithoutColors(text));
+
+        // Send the metadata
+        sendEntityMetadata(changed, getEntityId(entity), metaName, metaNameVisible);
+    }
+
     private void update(@NotNull Player player, @NotNull String text) {
+        // Skip the viewer, if it already sees this text.
+        if (!updateLastContent(player, text)) {
+            return;
+        }
+
         // Create the metadata objects
         Object metaName = getMetaName(text);
-        boolean isNameInvisible = text.isEmpty() || text.replaceAll("§.", "").isEmpty();
-        Object metaNameVisible = NMS.getMetaEntityCustomNameVisible(!isNameInvisible);
+        Object metaNameVisible = NMS.getMetaEntityCustomNameVisible(!Common.isEmptyWithoutColors(text));
 
         // Send the metadata
-        NMS.sendEntityMetadata(player, eid, metaName, metaNameVisible);
+        NMS.sendEntityMetadata(player, getEntityId(entity), metaName, metaNameVisible);
     }
 
     @Override
-    public void hide(@NotNull Player player) {
-        // Destroy the fake armor stand entity
-        NMS.removeEntity(player, eid);
+    protected void onHide(@NotNull Player player) {
+        super.onHide(player);
 
         // Remove the cached text
         formattedTextCache.remove(player.getUniqueId());
@@ -178,7 +346,7 @@ public class TextLineRenderer extends LineRenderer implements Ticked {
     @Override
     public void teleport(@NotNull Player player, @NotNull Location location) {
         // Teleport the fake armor stand entity
-        NMS.teleportEntity(player, eid, location, false);
+        teleportEntity(player, getEntityId(entity), location);
     }
 
     private Object getMetaName(@NotNull String formattedText) {
@@ -19,8 +19,11 @@
 package eu.decentsoftware.holograms.hologram.page;
 
 import com.google.common.collect.ImmutableList;
+import eu.decentsoftware.holograms.Config;
+import eu.decentsoftware.holograms.DecentHolograms;
 import eu.decentsoftware.holograms.actions.ActionHolder;
 import eu.decentsoftware.holograms.api.hologram.Hologram;
+import eu.decentsoftware.holograms.api.hologram.HologramSettings;
 import eu.decentsoftware.holograms.api.hologram.component.PositionManager;
 import eu.decentsoftware.holograms.api.hologram.line.HologramLine;
 import eu.decentsoftware.holograms.api.hologram.line.HologramLineRenderer;
@@ -29,27 +32,68 @@ import eu.decentsoftware.holograms.api.hologram.line.HologramLineType;
 import eu.decentsoftware.holograms.api.hologram.page.HologramPage;
 import eu.decentsoftware.holograms.conditions.ConditionHolder;
 import eu.decentsoftware.holograms.hologram.line.DefaultHologramLine;
-import eu.decentsoftware.holograms.utils.math.MathUtil;
+import eu.decentsoftware.holograms.hologram.line.DefaultHologramLineSettings;
+import eu.decentsoftware.holograms.hologram.line.renderer.LineRenderer;
+import eu.decentsoftware.holograms.nms.EntityRemoval;
+import eu.decentsoftware.holograms.nms.NMSAdapter;
+import eu.decentsoftware.holograms.profile.Profile;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.util.Vector;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 public class DefaultHologramPage implements HologramPage {
 
+    private static final DecentHolograms PLUGIN = DecentHolograms.getInstance();
+    /**
+     * The values per line in the layout array: height above the line,
+     * position offsets (x, y, z) and settings offsets (x, y, z).
+     */
+    private static final int LAYOUT_STRIDE = 7;
+
     private final @NotNull Hologram parent;
     private final @NotNull List<HologramLine> lines;
+    private final @NotNull LineHeights heights;
     private final @NotNull ConditionHolder clickConditions;
     private final @NotNull ActionHolder clickActions;
 
+    // The recalculation state is guarded by this page.
+    private final @NotNull RotationCache rotationCache = new RotationCache();
+    private final @NotNull Consumer<Player> viewerRecalculator = this::recalculateViewer;
+    private final @NotNull Location viewerLocation = new Location(null, 0, 0, 0);
+    private final @NotNull Location teleportLocation = new Location(null, 0, 0, 0);
+    private HologramLine[] layoutLines = new HologramLine[0];
+    private Location[] lineLocations = new Location[0];
+    private double[] layout = new double[0];
+    private int layoutCount;
+    private double layoutHeight;
+    private boolean layoutHorizontal;
+    private boolean layoutVertical;
+    private boolean layoutLineOffsets;
+    private long layoutVersion;
+    private Location origin;
+
+    // The edit state is only changed on the main thread.
+    private volatile int editDepth;
+    private List<LineSnapshot> editSnapshot;
+    // Renderers of the lines removed or replaced during the edit.
+    private List<HologramLineRenderer> editDiscarded;
+
     public DefaultHologramPage(@NotNull Hologram parent) {
         this(parent, new ConditionHolder(), new ActionHolder());
     }
@@ -57,7 +101,9 @@ public class DefaultHologramPage implements HologramPage {
     @Contract(pure = true)
     public DefaultHologramPage(@NotNull Hologram parent, @NotNull ConditionHolder clickConditions, @NotNull ActionHolder clickActions) {
         this.parent = parent;
-        this.lines = new ArrayList<>();
+        // Lines are read by the ticker threads, while being edited on the main thread.
+        this.lines = new CopyOnWriteArrayList<>();
+        this.heights = new LineHeights(this.lines);
         this.clickConditions = clickConditions;
         this.clickActions = clickActions;
     }
@@ -65,11 +111,29 @@ public class DefaultHologramPage implements HologramPage {
     @Override
     public void display(@NotNull Player player) {
         forEachLineRendererSafe((renderer) -> renderer.display(player));
+        invalidateRotation(player);
     }
 
     @Override
     public void hide(@NotNull Player player) {
-        forEachLineRendererSafe((renderer) -> renderer.hide(player));
+        // Destroy the entities of all lines with one packet
+        EntityRemoval removal = new EntityRemoval();
+        hide(player, removal);
+        removal.send(PLUGIN.getNMSManager().getAdapter());
+    }
+
+    /**
+     * Hide this page from the given player, but instead of destroying the entities
+     * right away, add them to the given removal. This way, the entities of many pages
+     * can be destroyed with one packet.
+     *
+     * @param player  The player.
+     * @param removal The removal to add the entities to.
+     * @see EntityRemoval#send(NMSAdapter)
+     */
+    public void hide(@NotNull Player player, @NotNull EntityRemoval removal) {
+        forEachLineRendererSafe((renderer) -> hideLine(renderer, player, removal));
+        invalidateRotation(player);
     }
 
     @Override
@@ -77,119 +141,336 @@ public class DefaultHologramPage implements HologramPage {
         forEachLineRendererSafe((renderer) -> renderer.update(player));
     }
 
+    /**
+     * Update only the first lines of this page for the given player.
+     *
+     * @param player   The player.
+     * @param maxLines The maximum number of lines to update.
+     */
+    public void update(@NotNull Player player, int maxLines) {
+        int count = Math.min(maxLines, lines.size());
+        for (int i = 0; i < count; i++) {
+            HologramLineRenderer renderer = lines.get(i).getRenderer();
+            if (renderer != null) {
+                renderer.update(player);
+            }
+        }
+    }
+
+    /**
+     * Update the first lines of this page for the given players at once.
+     *
+     * @param players  The players.
+     * @param maxLines The maximum number of lines to update.
+     * @see LineRenderer#update(Collection)
+     */
+    public void update(@NotNull Collection<Player> players, int maxLines) {
+        int count = Math.min(maxLines, lines.size());
+        for (int i = 0; i < count; i++) {
+            HologramLineRenderer renderer = lines.get(i).getRenderer();
+            if (renderer instanceof LineRenderer) {
+                ((LineRenderer) renderer).update(players);
+            } else if (renderer != null) {
+                players.forEach(renderer::update);
+            }
+        }
+    }
+
     @Override
     public void teleport(@NotNull Player player, @NotNull Location location) {
         forEachLineRendererSafe((renderer) -> renderer.teleport(player, location));
     }
 
     @Override
-    public void recalculate() {
+    public synchronized void recalculate() {
         int pageIndex = parent.getIndex(this);
-        Set<Player> viewers = parent.getVisibilityManager().getViewerPlayers(pageIndex);
-
-        final boolean horizontal = parent.getSettings().isRotateHorizontal();
-        final boolean vertical = parent.getSettings().isRotateVertical();
-        final boolean heads = parent.getSettings().isRotateHeads();
-        final boolean isTextOnly = lines.stream().noneMatch(line -> line.getType() != HologramLineType.TEXT);
+        if (pageIndex < 0 || isEditing()) {
+            // While editing, the page is recalculated once the edit is committed.
+            return;
+        }
 
-        for (Player viewer : viewers) {
-            recalculate(viewer, horizontal && isTextOnly, vertical, heads);
+        boolean isTextOnly = true;
+        for (HologramLine line : lines) {
+            if (line.getType() != HologramLineType.TEXT) {
+                isTextOnly = false;
+                break;
+            }
         }
+
+        prepareRecalculation(parent.getSettings().isRotateHorizontal() && isTextOnly, parent.getSettings().isRotateVertical());
+        parent.getVisibilityManager().forEachViewer(pageIndex, viewerRecalculator);
     }
 
     @Override
-    public void recalculate(@NotNull Player player, boolean horizontal, boolean vertical, boolean heads) {
-        final Location hologramLocation = parent.getPositionManager().getActualLocation();
-        final boolean downOrigin = parent.getSettings().isDownOrigin();
-        final double totalHeight = getHeight();
+    public synchronized void recalculate(@NotNull Player player, boolean horizontal, boolean vertical, boolean heads) {
+        prepareRecalculation(horizontal, vertical);
+        recalculateViewer(player);
+    }
+
+    /**
+     * Prepare the values, that are shared by all viewers in a recalculation.
+     *
+     * @param horizontal Whether the lines rotate horizontally.
+     * @param vertical   Whether the lines rotate vertically.
+     */
+    private void prepareRecalculation(boolean horizontal, boolean vertical) {
+        updateLayout(horizontal, vertical);
 
+        Location location = parent.getPositionManager().getActualLocation();
         // If the hologram location is originating from the bottom,
         // we need to move the start location up by the total height
         // of the hologram.
-        if (downOrigin) {
-            hologramLocation.add(0, totalHeight, 0);
+        if (parent.getSettings().isDownOrigin()) {
+            location.add(0, layoutHeight, 0);
         }
+        this.origin = location;
+    }
+
+    /**
+     * Position the lines of this page for the given viewer. All values are kept in primitives
+     * and the line locations are updated in place, so this doesn't allocate anything. If the
+     * lines have already been positioned for the same layout, origin and (nearly) the same look
+     * direction of the viewer, nothing is sent.
+     * <p>
+     * This is package-private for the recalculation benchmark.
+     *
+     * @param player The viewer.
+     */
+    void recalculateViewer(@NotNull Player player) {
+        final Location origin = this.origin;
+        final World world = origin.getWorld();
+        final double originX = origin.getX();
+        final double originY = origin.getY();
+        final double originZ = origin.getZ();
+        final boolean horizontal = layoutHorizontal;
+        final boolean vertical = layoutVertical;
+        final Profile profile = PLUGIN.getProfileRegistry().getProfile(player.getUniqueId());
+        final int slot = profile == null ? -1 : profile.getSlot();
 
         // If we don't rotate, we just align the lines properly.
         if (!horizontal && !vertical) {
-            for (HologramLine line : lines) {
-                HologramLineRenderer renderer = line.getRenderer();
-                PositionManager positionManager = line.getPositionManager();
-                positionManager.setLocation(hologramLocation.clone());
+            if (rotationCache.isUpToDate(slot, layoutVersion, 0, 0, 0, originX, originY, originZ, 0)) {
+                return;
+            }
+            for (int i = 0; i < layoutCount; i++) {
+                int j = i * LAYOUT_STRIDE;
+                Location location = setLineLocation(i, world, originX, originY - layout[j], originZ);
+                HologramLineRenderer renderer = layoutLines[i].getRenderer();
                 if (renderer != null) {
-                    renderer.teleport(player, positionManager.getActualLocation());
+                    // Same as the actual location of the line. (See LinePositionManager)
+                    double offsetX = layoutLineOffsets ? layout[j + 1] + layout[j + 4] : 0;
+                    double offsetY = layoutLineOffsets ? layout[j + 2] + layout[j + 5] : 0;
+                    double offsetZ = layoutLineOffsets ? layout[j + 3] + layout[j + 6] : 0;
+                    teleportLocation.setWorld(world);
+                    teleportLocation.setX(location.getX() + offsetX);
+                    teleportLocation.setY(location.getY() + offsetY);
+                    teleportLocation.setZ(location.getZ() + offsetZ);
+                    teleportLocation.setYaw(location.getYaw());
+                    teleportLocation.setPitch(location.getPitch());
+                    renderer.teleport(player, teleportLocation);
                 }
-                hologramLocation.subtract(0, line.getSettings().getHeight(), 0);
             }
+            rotationCache.store(slot, layoutVersion, 0, 0, 0, originX, originY, originZ);
             return;
         }
 
-        Location playerEyeLocation = player.getEyeLocation();
-        Vector playerLookDirection = playerEyeLocation.getDirection().clone().normalize();
+        // The look direction of the player. (See Location#getDirection)
+        player.getLocation(viewerLocation);
+        final double yaw = Math.toRadians(viewerLocation.getYaw());
+        final double pitch = Math.toRadians(viewerLocation.getPitch());
+        final double cosPitch = Math.cos(pitch);
+        final double dirX = -cosPitch * Math.sin(yaw);
+        final double dirY = -Math.sin(pitch);
+        final double dirZ = cosPitch * Math.cos(yaw);
+
+        final double epsilon = Config.ROTATION_EPSILON;
+        if (rotationCache.isUpToDate(slot, layoutVersion, dirX, dirY, dirZ, originX, originY, originZ, epsilon * epsilon)) {
+            return;
+        }
 
-        // Calculate the required vectors.
-        Vector horizontalPerpendicular = playerLookDirection.clone()
-                .crossProduct(MathUtil.UP_VECTOR)
-                .normalize();
-        Vector verticalPerpendicular = horizontalPerpendicular.clone()
-                .crossProduct(playerLookDirection)
-                .multiply(-1d)
-                .normalize();
+        // Calculate the required vectors. Both are unit vectors, as the direction is one.
+        // horizontal = direction x UP (normalized), vertical = -(horizontal x direction)
+        final double horizontalX = -Math.cos(yaw);
+        final double horizontalZ = -Math.sin(yaw);
+        final double verticalX = horizontalZ * dirY;
+        final double verticalY = horizontalX * dirZ - horizontalZ * dirX;
+        final double verticalZ = -horizontalX * dirY;
 
         // Calculate the pivot point. (The center of the hologram)
-        Location pivot = hologramLocation.clone().subtract(0, totalHeight / 2, 0);
+        final double halfHeight = layoutHeight / 2;
+        final double pivotY = originY - halfHeight;
 
         // Calculate new location for each line.
-        double height = 0.0d;
-        for (HologramLine line : lines) {
-            HologramLineRenderer renderer = line.getRenderer();
-            PositionManager positionManager = line.getPositionManager();
-            HologramLineSettings settings = line.getSettings();
-            Vector offsets = positionManager.getOffsets();
-            double totalOffsetY = offsets.getY() + settings.getOffsetY();
-
-            // Calculate the new location.
-            Location location;
+        for (int i = 0; i < layoutCount; i++) {
+            int j = i * LAYOUT_STRIDE;
+            double height = layout[j];
+            double totalOffsetX = layout[j + 1] + layout[j + 4];
+            double totalOffsetY = layout[j + 2] + layout[j + 5];
+            double totalOffsetZ = layout[j + 3] + layout[j + 6];
+
+            double x;
+            double y;
+            double z;
             if (vertical) {
                 // If we rotate vertically, we put the lines along the relative vertical vector.
-                double angle = Math.toRadians(playerEyeLocation.getPitch());
-                double totalOffsetYAdjusted = totalOffsetY * Math.cos(angle);
-                Vector vector = verticalPerpendicular.clone().multiply((height - totalOffsetYAdjusted) - totalHeight / 2);
-                location = pivot.clone().add(vector);
+                double distance = (height - totalOffsetY * cosPitch) - halfHeight;
+                x = originX + verticalX * distance;
+                y = pivotY + verticalY * distance;
+                z = originZ + verticalZ * distance;
             } else {
                 // If we don't rotate vertically, we put the lines above each other.
-                location = hologramLocation.clone().subtract(0, height - totalOffsetY, 0);
+                x = originX;
+                y = originY - (height - totalOffsetY);
+                z = originZ;
             }
 
-            height += settings.getHeight();
-
             // Add the line offsets.
-            double totalOffsetX = offsets.getX() + settings.getOffsetX();
-            double totalOffsetZ = offsets.getZ() + settings.getOffsetZ();
             if (horizontal) {
-                if (totalOffsetX != 0) {
-                    location.add(horizontalPerpendicular.clone().multiply(totalOffsetX));
-                }
-                if (totalOffsetZ != 0) {
-                    location.add(playerLookDirection.clone().multiply(totalOffsetZ));
-                }
+                x += horizontalX * totalOffsetX + dirX * totalOffsetZ;
+                y += dirY * totalOffsetZ;
+                z += horizontalZ * totalOffsetX + dirZ * totalOffsetZ;
             } else {
-                location.add(totalOffsetX, 0, totalOffsetZ);
+                x += totalOffsetX;
+                z += totalOffsetZ;
             }
 
-            positionManager.setLocation(location);
+            Location location = setLineLocation(i, world, x, y, z);
 
             // Update the line location for the current viewer.
+            HologramLineRenderer renderer = layoutLines[i].getRenderer();
             if (renderer != null) {
                 renderer.teleport(player, location);
             }
         }
+        rotationCache.store(slot, layoutVersion, dirX, dirY, dirZ, originX, originY, originZ);
+    }
+
+    /**
+     * Move the location of the line at the given layout index in place.
+     *
+     * @return The location of the line.
+     */
+    @NotNull
+    private Location setLineLocation(int index, World world, double x, double y, double z) {
+        Location location = lineLocations[index];
+        location.setWorld(world);
+        location.setX(x);
+        location.setY(y);
+        location.setZ(z);
+        location.setYaw(origin.getYaw());
+        location.setPitch(origin.getPitch());
+
+        PositionManager positionManager = layoutLines[index].getPositionManager();
+        if (positionManager.getLocation() != location) {
+            positionManager.setLocation(location);
+        }
+        return location;
+    }
+
+    /**
+     * Collect the heights and offsets of the lines into the layout arrays, so they don't
+     * have to be looked up for every viewer. If anything has changed since the previous
+     * recalculation, the layout version is increased, which invalidates the rotation cache.
+     *
+     * @param horizontal Whether the lines rotate horizontally.
+     * @param vertical   Whether the lines rotate vertically.
+     */
+    private void updateLayout(boolean horizontal, boolean vertical) {
+        // The actual location of a line only includes its offsets, if the hologram doesn't rotate.
+        HologramSettings hologramSettings = parent.getSettings();
+        boolean lineOffsets = !hologramSettings.isRotateVertical() && !hologramSettings.isRotateHorizontal();
+        boolean changed = horizontal != layoutHorizontal || vertical != layoutVertical || lineOffsets != layoutLineOffsets;
+        int count = 0;
+        double height = 0.0d;
+        for (HologramLine line : lines) {
+            ensureLayoutCapacity(count + 1);
+            if (layoutLines[count] != line) {
+                // Every line gets its own location, which is then moved in place.
+                layoutLines[count] = line;
+                lineLocations[count] = new Location(null, 0, 0, 0);
+                changed = true;
+            }
+
+            Vector offsets = line.getPositionManager().getOffsets();
+            HologramLineSettings settings = line.getSettings();
+            int j = count * LAYOUT_STRIDE;
+            changed |= setLayoutValue(j, height);
+            changed |= setLayoutValue(j + 1, offsets.getX());
+            changed |= setLayoutValue(j + 2, offsets.getY());
+            changed |= setLayoutValue(j + 3, offsets.getZ());
+            changed |= setLayoutValue(j + 4, settings.getOffsetX());
+            changed |= setLayoutValue(j + 5, settings.getOffsetY());
+            changed |= setLayoutValue(j + 6, settings.getOffsetZ());
+
+            height += settings.getHeight();
+            count++;
+        }
+
+        if (count != layoutCount) {
+            // Release the lines, that are no longer on this page.
+            for (int i = count; i < layoutCount; i++) {
+                layoutLines[i] = null;
+                lineLocations[i] = null;
+            }
+            changed = true;
+        }
+
+        layoutCount = count;
+        layoutHeight = height;
+        layoutHorizontal = horizontal;
+        layoutVertical = vertical;
+        layoutLineOffsets = lineOffsets;
+        if (changed) {
+            layoutVersion++;
+        }
+    }
+
+    private boolean setLayoutValue(int index, double value) {
+        if (layout[index] == value) {
+            return false;
+        }
+        layout[index] = value;
+        return true;
+    }
+
+    private void ensureLayoutCapacity(int count) {
+        if (count <= layoutLines.length) {
+            return;
+        }
+        int capacity = Math.max(count, layoutLines.length * 2);
+        layoutLines = Arrays.copyOf(layoutLines, capacity);
+        lineLocations = Arrays.copyOf(lineLocations, capacity);
+        layout = Arrays.copyOf(layout, capacity * LAYOUT_STRIDE);
+    }
+
+    /**
+     * Forget where the lines have been positioned for the given player, so
+     * they are positioned again on the next recalculation.
+     *
+     * @param player The player.
+     */
+    private void invalidateRotation(@NotNull Player player) {
+        Profile profile = PLUGIN.getProfileRegistry().getProfile(player.getUniqueId());
+        if (profile != null) {
+            rotationCache.invalidate(profile.getSlot());
+        }
     }
 
     @NotNull
     @Override
     public Location getNextLineLocation() {
-        return parent.getPositionManager().getActualLocation().subtract(0, getHeight(), 0);
+        return getLineLocation(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the location of a line at the given index, when the lines are aligned.
+     *
+     * @param index The index of the line.
+     * @return The location.
+     */
+    @NotNull
+    private Location getLineLocation(int index) {
+        return parent.getPositionManager().getActualLocation().subtract(0, heights.getAbove(index), 0);
     }
 
     @NotNull
@@ -208,10 +489,48 @@ public class DefaultHologramPage implements HologramPage {
         return clickActions;
     }
 
+    /**
+     * Get the number of packets, that are sent to a player when this page is displayed.
+     *
+     * @return The number of packets.
+     * @see LineRenderer#getSpawnPacketCount()
+     */
+    public int getSpawnPacketCount() {
+        int count = 0;
+        for (HologramLine line : lines) {
+            HologramLineRenderer renderer = line.getRenderer();
+            count += renderer instanceof LineRenderer ? ((LineRenderer) renderer).getSpawnPacketCount() : 2;
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of entities, that are shown to a player by this page.
+     *
+     * @return The number of entities.
+     * @see LineRenderer#getEntityCount()
+     */
+    public int getEntityCount() {
+        int count = 0;
+        for (HologramLine line : lines) {
+            HologramLineRenderer renderer = line.getRenderer();
+            count += renderer instanceof LineRenderer ? ((LineRenderer) renderer).getEntityCount() : 1;
+        }
+        return count;
+    }
+
     public double getHeight() {
-        return lines.stream()
-                .mapToDouble((l) -> l.getSettings().getHeight())
-                .sum();
+        return heights.getTotal();
+    }
+
+    /**
+     * Get the sum of the heights of all lines above the line at the given index.
+     *
+     * @param index The index of the line.
+     * @return The height above the line.
+     */
+    public double getHeightAbove(int index) {
+        return heights.getAbove(index);
     }
 
     @Override
@@ -227,9 +546,12 @@ public class DefaultHologramPage implements HologramPage {
     @Override
     public HologramLine removeLine(int index) {
         HologramLine line = lines.remove(index);
+        unwatchHeight(line);
+        heights.invalidate();
 
         // Hide the line to all viewers
         forEachViewerUseLineRendererSafe(line, HologramLineRenderer::hide);
+        releaseRenderer(line);
 
         recalculate();
         return line;
@@ -245,6 +567,8 @@ public class DefaultHologramPage implements HologramPage {
     @Override
     public HologramPage addLine(@NotNull HologramLine line) {
         lines.add(line);
+        watchHeight(line);
+        heights.appended(line);
 
         // Show the line to all viewers
         // TODO: check view conditions
@@ -257,13 +581,15 @@ public class DefaultHologramPage implements HologramPage {
     @NotNull
     @Override
     public HologramPage addLine(int index, @NotNull String line) {
-        return addLine(index, new DefaultHologramLine(this, getNextLineLocation(), line));
+        return addLine(index, new DefaultHologramLine(this, getLineLocation(index), line));
     }
 
     @NotNull
     @Override
     public HologramPage addLine(int index, @NotNull HologramLine line) {
         lines.add(index, line);
+        watchHeight(line);
+        heights.invalidate();
 
         // Show the line to all viewers
         // TODO: check view conditions
@@ -277,9 +603,11 @@ public class DefaultHologramPage implements HologramPage {
     @Override
     public HologramPage setLine(int index, @NotNull HologramLine line) {
         HologramLine previousLine = lines.remove(index);
+        unwatchHeight(previousLine);
 
         // Hide the previous line to all viewers
         forEachViewerUseLineRendererSafe(previousLine, HologramLineRenderer::hide);
+        releaseRenderer(previousLine);
 
         addLine(index, line);
         return this;
@@ -288,33 +616,51 @@ public class DefaultHologramPage implements HologramPage {
     @NotNull
     @Override
     public HologramPage clearLines() {
-        // Hide all lines from all viewers
-        forEachLineRendererAndViewerSafe(HologramLineRenderer::hide);
+        // Hide all lines from all viewers, with one packet per viewer
+        EntityRemoval removal = new EntityRemoval();
+        forEachLineRendererAndViewerSafe((renderer, player) -> hideLine(renderer, player, removal));
+        removal.send(PLUGIN.getNMSManager().getAdapter());
 
+        lines.forEach(this::unwatchHeight);
+        lines.forEach(this::releaseRenderer);
         lines.clear();
+        heights.invalidate();
         return this;
     }
 
     @NotNull
     @Override
     public HologramPage setLinesFromStrings(@NotNull List<String> lines) {
-        return setLines(lines.stream()
-                .map((s) -> new DefaultHologramLine(this, getNextLineLocation(), s))
-                .collect(Collectors.toList()));
+        return edit((page) -> {
+            // Reuse the existing lines, so lines of the same type keep their entities.
+            int reused = Math.min(lines.size(), this.lines.size());
+            for (int i = 0; i < reused; i++) {
+                HologramLine line = this.lines.get(i);
+                String content = lines.get(i);
+                if (!content.equals(line.getContent())) {
+                    line.setContent(content);
+                }
+            }
+            while (this.lines.size() > lines.size()) {
+                removeLine(this.lines.size() - 1);
+            }
+            for (int i = reused; i < lines.size(); i++) {
+                addLine(lines.get(i));
+            }
+        });
     }
 
     @NotNull
     @Override
     public HologramPage setLines(@NotNull List<HologramLine> lines) {
-        // Hide all lines from all viewers
-        forEachLineRendererAndViewerSafe(HologramLineRenderer::hide);
-
-        this.lines.clear();
-        this.lines.addAll(lines);
-
-        // Show all lines to all viewers
-        forEachLineRendererAndViewerSafe(HologramLineRenderer::display);
-        return this;
+        // The lines, that are on the page before and after, are left untouched.
+        return edit((page) -> {
+            this.lines.forEach(this::unwatchHeight);
+            this.lines.clear();
+            this.lines.addAll(lines);
+            this.lines.forEach(this::watchHeight);
+            heights.invalidate();
+        });
     }
 
     @NotNull
@@ -323,6 +669,161 @@ public class DefaultHologramPage implements HologramPage {
         return ImmutableList.copyOf(lines);
     }
 
+    @NotNull
+    @Override
+    public HologramPage edit(@NotNull Consumer<HologramPage> editor) {
+        beginEdit();
+        try {
+            editor.accept(this);
+        } finally {
+            commitEdit();
+        }
+        return this;
+    }
+
+    @Override
+    public void beginEdit() {
+        if (editDepth++ == 0) {
+            List<LineSnapshot> snapshot = new ArrayList<>(lines.size());
+            for (HologramLine line : lines) {
+                snapshot.add(new LineSnapshot(line));
+            }
+            editSnapshot = snapshot;
+            editDiscarded = new ArrayList<>();
+        }
+    }
+
+    @Override
+    public void commitEdit() {
+        if (editDepth <= 0) {
+            throw new IllegalStateException("The page is not being edited.");
+        }
+        if (--editDepth > 0) {
+            return;
+        }
+
+        List<LineSnapshot> snapshot = editSnapshot;
+        List<HologramLineRenderer> discarded = editDiscarded;
+        editSnapshot = null;
+        editDiscarded = null;
+
+        Set<HologramLine> currentLines = Collections.newSetFromMap(new IdentityHashMap<>());
+        currentLines.addAll(lines);
+        Set<HologramLine> keptLines = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<HologramLineRenderer> previousRenderers = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (LineSnapshot previous : snapshot) {
+            HologramLine line = previous.line;
+            previousRenderers.add(previous.renderer);
+            if (!currentLines.contains(line)) {
+                // The line has been removed.
+                forEachViewerUseRendererSafe(previous.renderer, HologramLineRenderer::hide);
+                destroyRenderer(previous.renderer);
+                continue;
+            }
+
+            keptLines.add(line);
+            HologramLineRenderer renderer = line.getRenderer();
+            if (renderer != previous.renderer) {
+                // The type of the line has changed, so the entities have been replaced.
+                forEachViewerUseRendererSafe(previous.renderer, HologramLineRenderer::hide);
+                destroyRenderer(previous.renderer);
+                forEachViewerUseRendererSafe(renderer, HologramLineRenderer::display);
+            } else if (!Objects.equals(previous.content, line.getContent())) {
+                // Same entities, only the content has changed.
+                forEachViewerUseRendererSafe(renderer, HologramLineRenderer::update);
+            }
+        }
+
+        for (HologramLine line : lines) {
+            if (!keptLines.contains(line)) {
+                // The line has been added.
+                forEachViewerUseLineRendererSafe(line, HologramLineRenderer::display);
+            }
+        }
+
+        Set<HologramLineRenderer> currentRenderers = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (HologramLine line : lines) {
+            currentRenderers.add(line.getRenderer());
+        }
+        for (HologramLineRenderer renderer : discarded) {
+            if (!previousRenderers.contains(renderer) && !currentRenderers.contains(renderer)) {
+                // Created and discarded during the edit, so it has never been displayed.
+                destroyRenderer(renderer);
+            }
+        }
+
+        recalculate();
+    }
+
+    /**
+     * Discard the given renderer of a line of this page, that has been replaced by a new one.
+     * The renderer is hidden from all viewers and destroyed, so its entity ids can be reused.
+     * While editing, this happens when the edit is committed, as the viewers still see the
+     * entities of the renderer until then.
+     *
+     * @param renderer The renderer.
+     * @see #commitEdit()
+     */
+    public void discardRenderer(@NotNull LineRenderer renderer) {
+        if (isEditing()) {
+            editDiscarded.add(renderer);
+            return;
+        }
+        renderer.hideAll();
+        renderer.destroy();
+    }
+
+    /**
+     * Check whether this page is currently being edited in a batch. While editing,
+     * the changes of the lines are not sent to the viewers.
+     *
+     * @return True if the page is being edited, false otherwise.
+     * @see #beginEdit()
+     */
+    public boolean isEditing() {
+        return editDepth > 0;
+    }
+
+    private void watchHeight(@NotNull HologramLine line) {
+        if (line.getSettings() instanceof DefaultHologramLineSettings) {
+            ((DefaultHologramLineSettings) line.getSettings()).setHeightListener(heights::invalidate);
+        }
+    }
+
+    private void unwatchHeight(@NotNull HologramLine line) {
+        if (line.getSettings() instanceof DefaultHologramLineSettings) {
+            ((DefaultHologramLineSettings) line.getSettings()).setHeightListener(null);
+        }
+    }
+
+    /**
+     * Release the entity ids of the renderer of the given line, that has been removed
+     * from this page. While editing, this happens when the edit is committed.
+     *
+     * @param line The removed line.
+     */
+    private void releaseRenderer(@NotNull HologramLine line) {
+        if (isEditing()) {
+            editDiscarded.add(line.getRenderer());
+        } else {
+            destroyRenderer(line.getRenderer());
+        }
+    }
+
+    private static void destroyRenderer(@Nullable HologramLineRenderer renderer) {
+        if (renderer instanceof LineRenderer) {
+            ((LineRenderer) renderer).destroy();
+        }
+    }
+
+    private static void hideLine(@NotNull HologramLineRenderer renderer, @NotNull Player player, @NotNull EntityRemoval removal) {
+        if (renderer instanceof LineRenderer) {
+            ((LineRenderer) renderer).hide(player, removal);
+        } else {
+            renderer.hide(player);
+        }
+    }
+
     private void forEachLineRendererSafe(@NotNull Consumer<HologramLineRenderer> consumer) {
         for (HologramLine line : lines) {
             HologramLineRenderer renderer = line.getRenderer();
@@ -334,22 +835,41 @@ public class DefaultHologramPage implements HologramPage {
 
     private void forEachLineRendererAndViewerSafe(@NotNull BiConsumer<HologramLineRenderer, Player> consumer) {
         for (HologramLine line : lines) {
-            HologramLineRenderer renderer = line.getRenderer();
-            if (renderer != null) {
-                for (Player viewerPlayer : parent.getVisibilityManager().getViewerPlayers()) {
-                    consumer.accept(renderer, viewerPlayer);
-                }
-            }
+            forEachViewerUseLineRendererSafe(line, consumer);
         }
     }
 
     private void forEachViewerUseLineRendererSafe(@NotNull HologramLine line, @NotNull BiConsumer<HologramLineRenderer, Player> consumer) {
-        HologramLineRenderer renderer = line.getRenderer();
-        if (renderer != null) {
-            for (Player viewerPlayer : parent.getVisibilityManager().getViewerPlayers()) {
-                consumer.accept(renderer, viewerPlayer);
-            }
+        forEachViewerUseRendererSafe(line.getRenderer(), consumer);
+    }
+
+    private void forEachViewerUseRendererSafe(@Nullable HologramLineRenderer renderer, @NotNull BiConsumer<HologramLineRenderer, Player> consumer) {
+        if (isEditing()) {
+            // The changes are sent, when the edit is committed.
+            return;
+        }
+        int pageIndex = parent.getIndex(this);
+        if (renderer != null && pageIndex >= 0) {
+            // Only the viewers of this page can see its lines.
+            parent.getVisibilityManager().forEachViewer(pageIndex, (viewerPlayer) -> consumer.accept(renderer, viewerPlayer));
+        }
+    }
+
+    /**
+     * The state of a line at the start of an edit.
+     */
+    private static class LineSnapshot {
+
+        private final @NotNull HologramLine line;
+        private final @Nullable HologramLineRenderer renderer;
+        private final @Nullable String content;
+
+        LineSnapshot(@NotNull HologramLine line) {
+            this.line = line;
+            this.renderer = line.getRenderer();
+            this.content = line.getContent();
         }
+
     }
 
 }
@@ -0,0 +1,125 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram.page;
+
+import eu.decentsoftware.holograms.api.hologram.line.HologramLine;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class keeps the prefix sums of the line heights of a page, so the height of
+ * the page and the vertical offset of each line can be queried in constant time.
+ * <p>
+ * Appending a line only extends the sums. Any other change marks them as dirty and
+ * they are rebuilt from the lines on the next query. This keeps building a page line
+ * by line linear, while inserts, removals and height changes, which are rare, cost
+ * one pass over the lines.
+ *
+ * @author d0by
+ * @since 3.0.0
+ */
+final class LineHeights {
+
+    private final @NotNull List<HologramLine> lines;
+    /**
+     * The sum of the heights of all lines above the line at the index.
+     * The element after the last line holds the total height.
+     */
+    private double[] prefix;
+    private int count;
+    private boolean dirty;
+
+    LineHeights(@NotNull List<HologramLine> lines) {
+        this.lines = lines;
+        this.prefix = new double[16];
+        this.count = 0;
+        this.dirty = false;
+    }
+
+    /**
+     * Notify about a line, that has been appended to the end of the lines.
+     *
+     * @param line The appended line.
+     */
+    synchronized void appended(@NotNull HologramLine line) {
+        if (dirty || count + 1 != lines.size()) {
+            dirty = true;
+            return;
+        }
+        ensureCapacity(count + 2);
+        prefix[count + 1] = prefix[count] + line.getSettings().getHeight();
+        count++;
+    }
+
+    /**
+     * Mark the sums as outdated, because the lines or their heights have changed.
+     */
+    synchronized void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Get the total height of all lines.
+     *
+     * @return The total height.
+     */
+    synchronized double getTotal() {
+        rebuildIfDirty();
+        return prefix[count];
+    }
+
+    /**
+     * Get the sum of the heights of all lines above the line at the given index. If the
+     * index is out of bounds, it's clamped, so the index after the last line returns the
+     * total height.
+     *
+     * @param index The index of the line.
+     * @return The height above the line.
+     */
+    synchronized double getAbove(int index) {
+        rebuildIfDirty();
+        return prefix[Math.max(0, Math.min(index, count))];
+    }
+
+    private void rebuildIfDirty() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        int i = 0;
+        double height = 0.0d;
+        for (HologramLine line : lines) {
+            ensureCapacity(i + 2);
+            prefix[i] = height;
+            height += line.getSettings().getHeight();
+            i++;
+        }
+        prefix[i] = height;
+        count = i;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > prefix.length) {
+            prefix = Arrays.copyOf(prefix, Math.max(capacity, prefix.length * 2));
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram.page;
+
+import eu.decentsoftware.holograms.profile.Profile;
+
+import java.util.Arrays;
+
+/**
+ * This class remembers, for which look direction and hologram origin the lines
+ * of a page have last been positioned for each viewer. The entries are indexed by
+ * the slot of the viewer's profile (see {@link Profile#getSlot()}), so a lookup
+ * doesn't allocate anything.
+ * <p>
+ * An entry is only valid for the layout version it has been stored with, so changes
+ * of the lines invalidate all entries at once.
+ *
+ * @author d0by
+ * @since 3.0.0
+ */
+final class RotationCache {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int STRIDE = 6;
+    private static final long INVALID = -1L;
+
+    private double[] poses;
+    private long[] layouts;
+
+    RotationCache() {
+        this.poses = new double[INITIAL_CAPACITY * STRIDE];
+        this.layouts = new long[INITIAL_CAPACITY];
+        Arrays.fill(this.layouts, INVALID);
+    }
+
+    /**
+     * Check whether the lines have been positioned for the given slot with the same
+     * layout and origin, and a look direction, that differs by less than epsilon.
+     *
+     * @param slot           The slot of the viewer.
+     * @param layout         The current layout version.
+     * @param dirX           The x component of the normalized look direction.
+     * @param dirY           The y component of the normalized look direction.
+     * @param dirZ           The z component of the normalized look direction.
+     * @param originX        The x coordinate of the hologram origin.
+     * @param originY        The y coordinate of the hologram origin.
+     * @param originZ        The z coordinate of the hologram origin.
+     * @param epsilonSquared The squared epsilon.
+     * @return True if the lines don't need to be positioned again, false otherwise.
+     */
+    synchronized boolean isUpToDate(int slot, long layout, double dirX, double dirY, double dirZ,
+                                    double originX, double originY, double originZ, double epsilonSquared) {
+        if (slot < 0 || slot >= layouts.length || layouts[slot] != layout) {
+            return false;
+        }
+        int i = slot * STRIDE;
+        double ddx = poses[i] - dirX;
+        double ddy = poses[i + 1] - dirY;
+        double ddz = poses[i + 2] - dirZ;
+        return ddx * ddx + ddy * ddy + ddz * ddz <= epsilonSquared
+                && poses[i + 3] == originX
+                && poses[i + 4] == originY
+                && poses[i + 5] == originZ;
+    }
+
+    /**
+     * Remember the look direction and origin the lines have been positioned for.
+     *
+     * @param slot    The slot of the viewer.
+     * @param layout  The current layout version.
+     * @param dirX    The x component of the normalized look direction.
+     * @param dirY    The y component of the normalized look direction.
+     * @param dirZ    The z component of the normalized look direction.
+     * @param originX The x coordinate of the hologram origin.
+     * @param originY The y coordinate of the hologram origin.
+     * @param originZ The z coordinate of the hologram origin.
+     */
+    synchronized void store(int slot, long layout, double dirX, double dirY, double dirZ,
+                            double originX, double originY, double originZ) {
+        if (slot < 0) {
+            return;
+        }
+        ensureCapacity(slot);
+        int i = slot * STRIDE;
+        poses[i] = dirX;
+        poses[i + 1] = dirY;
+        poses[i + 2] = dirZ;
+        poses[i + 3] = originX;
+        poses[i + 4] = originY;
+        poses[i + 5] = originZ;
+        layouts[slot] = layout;
+    }
+
+    /**
+     * Forget the entry of the given slot, so the lines are positioned again
+     * on the next recalculation.
+     *
+     * @param slot The slot of the viewer.
+     */
+    synchronized void invalidate(int slot) {
+        if (slot >= 0 && slot < layouts.length) {
+            layouts[slot] = INVALID;
+        }
+    }
+
+    private void ensureCapacity(int slot) {
+        if (slot < layouts.length) {
+            return;
+        }
+        int capacity = layouts.length;
+        while (capacity <= slot) {
+            capacity <<= 1;
+        }
+        int previous = layouts.length;
+        poses = Arrays.copyOf(poses, capacity * STRIDE);
+        layouts = Arrays.copyOf(layouts, capacity);
+        Arrays.fill(layouts, previous, capacity, INVALID);
+    }
+
+}
@@ -22,10 +22,22 @@ import eu.decentsoftware.holograms.Config;
 import eu.decentsoftware.holograms.DecentHolograms;
 import eu.decentsoftware.holograms.Lang;
 import eu.decentsoftware.holograms.api.hologram.HologramVisibilityManager;
+import eu.decentsoftware.holograms.nms.EntityRemoval;
+import eu.decentsoftware.holograms.profile.Profile;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerExpChangeEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLevelChangeEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.event.player.PlayerTeleportEvent;
@@ -46,6 +58,9 @@ public class PlayerListener implements Listener {
         PLUGIN.getProfileRegistry().registerProfile(player.getUniqueId());
         PLUGIN.getNMSManager().hook(player);
 
+        // -- Show the nearby holograms to the player
+        PLUGIN.getHologramRegistry().markDirty(player);
+
         // -- Notify the player about a new version (if available)
         if (Config.isUpdateAvailable() && player.hasPermission(Config.ADMIN_PERM)) {
             Lang.sendUpdateMessage(player);
@@ -55,24 +70,98 @@ public class PlayerListener implements Listener {
     @EventHandler
     public void onQuit(PlayerQuitEvent e) {
         Player player = e.getPlayer();
-        PLUGIN.getProfileRegistry().removeProfile(player.getUniqueId());
         PLUGIN.getNMSManager().unhook(player);
+        PLUGIN.getHologramRegistry().removePlayer(player);
 
         // -- Remove the player from the visibility cache
         PLUGIN.getHologramRegistry().getHolograms().forEach((hologram) -> {
             //
             hologram.getVisibilityManager().removePlayer(player);
         });
+
+        // -- Remove the profile last, the visibility state is indexed by its slot
+        PLUGIN.getProfileRegistry().removeProfile(player.getUniqueId());
     }
 
     @EventHandler
     public void onTeleport(PlayerTeleportEvent e) {
         hideAllHologramsOnTeleport(e.getPlayer());
+        PLUGIN.getHologramRegistry().markDirty(e.getPlayer());
     }
 
     @EventHandler
     public void onRespawn(PlayerRespawnEvent e) {
         hideAllHologramsOnTeleport(e.getPlayer());
+        PLUGIN.getHologramRegistry().markDirty(e.getPlayer());
+    }
+
+    @EventHandler
+    public void onWorldChange(PlayerChangedWorldEvent e) {
+        invalidateConditions(e.getPlayer());
+        PLUGIN.getHologramRegistry().markDirty(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLevelChange(PlayerLevelChangeEvent e) {
+        invalidateConditions(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onExpChange(PlayerExpChangeEvent e) {
+        invalidateConditions(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onGameModeChange(PlayerGameModeChangeEvent e) {
+        invalidateConditions(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemHeld(PlayerItemHeldEvent e) {
+        invalidateConditions(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDropItem(PlayerDropItemEvent e) {
+        invalidateConditions(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClose(InventoryCloseEvent e) {
+        if (e.getPlayer() instanceof Player) {
+            invalidateConditions((Player) e.getPlayer());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent e) {
+        if (!Config.VISIBILITY_EVENT_DRIVEN) {
+            return;
+        }
+        // -- Only update the visibility, if the player has moved to another block
+        Location from = e.getFrom();
+        Location to = e.getTo();
+        if (to != null && (from.getBlockX() != to.getBlockX()
+                || from.getBlockY() != to.getBlockY()
+                || from.getBlockZ() != to.getBlockZ()
+                || from.getWorld() != to.getWorld())) {
+            PLUGIN.getHologramRegistry().markDirty(e.getPlayer());
+        }
+    }
+
+    /**
+     * Invalidate the cached condition results of the player, after something has
+     * changed, that might affect them. Permission and economy changes have no
+     * events in Bukkit, so those are only picked up once the results expire.
+     *
+     * @param player The player.
+     * @see eu.decentsoftware.holograms.conditions.ConditionCache
+     */
+    private void invalidateConditions(Player player) {
+        Profile profile = PLUGIN.getProfileRegistry().getProfile(player.getUniqueId());
+        if (profile != null) {
+            profile.getContext().getConditionCache().invalidate();
+        }
     }
 
     /**
@@ -84,10 +173,13 @@ public class PlayerListener implements Listener {
      * @see HologramVisibilityManager#updateVisibility(Player, boolean)
      */
     private void hideAllHologramsOnTeleport(Player player) {
+        // Destroy the entities of all holograms with one packet
+        EntityRemoval removal = new EntityRemoval();
         PLUGIN.getHologramRegistry().getHolograms().forEach((hologram) -> {
             //
-            hologram.getVisibilityManager().updateVisibility(player, false);
+            hologram.getVisibilityManager().hide(player, removal);
         });
+        removal.send(PLUGIN.getNMSManager().getAdapter());
     }
 
 }
@@ -34,18 +34,42 @@ import java.util.UUID;
 public class Profile {
 
     private final @NotNull UUID uuid;
+    private final int slot;
     private final @NotNull ProfileContext context;
 
     /**
      * Create a new profile for the given player.
      *
      * @param uuid The player's UUID.
+     * @param slot The slot of the profile. (See {@link #getSlot()})
      */
-    public Profile(@NotNull UUID uuid) {
+    public Profile(@NotNull UUID uuid, int slot) {
         this.uuid = uuid;
+        this.slot = slot;
         this.context = new ProfileContext();
     }
 
+    /**
+     * Get the UUID of the player owning this profile.
+     *
+     * @return The UUID.
+     */
+    @NotNull
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    /**
+     * Get the slot of this profile. Slots are small, dense integers assigned by the
+     * {@link ProfileRegistry}, so per-player state can be kept in plain arrays and
+     * bitsets instead of maps. A slot is reused once the profile is removed.
+     *
+     * @return The slot.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
     /**
      * Get the owner of the profile.
      *
@@ -22,6 +22,8 @@ import eu.decentsoftware.holograms.DecentHolograms;
 import eu.decentsoftware.holograms.api.hologram.Hologram;
 import eu.decentsoftware.holograms.api.hologram.line.HologramLine;
 import eu.decentsoftware.holograms.api.hologram.page.HologramPage;
+import eu.decentsoftware.holograms.conditions.ConditionCache;
+import eu.decentsoftware.holograms.hologram.HologramSpawnQueue;
 import lombok.Getter;
 import lombok.Setter;
 import org.jetbrains.annotations.Nullable;
@@ -38,6 +40,8 @@ import org.jetbrains.annotations.Nullable;
 public class ProfileContext {
 
     private final int clickableEntityId;
+    private final HologramSpawnQueue spawnQueue;
+    private final ConditionCache conditionCache;
     private HologramLine watchedLine;
 
     /**
@@ -45,6 +49,8 @@ public class ProfileContext {
      */
     public ProfileContext() {
         this.watchedLine = null;
+        this.spawnQueue = new HologramSpawnQueue();
+        this.conditionCache = new ConditionCache();
         this.clickableEntityId = DecentHolograms.getInstance().getNMSManager().getAdapter().getFreeEntityId();
     }
 
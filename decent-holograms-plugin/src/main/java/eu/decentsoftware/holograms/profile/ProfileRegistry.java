@@ -21,26 +21,37 @@ package eu.decentsoftware.holograms.profile;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
- * This class represents a registry of profiles.
+ * This class represents a registry of profiles. Each profile gets the lowest free
+ * slot (see {@link Profile#getSlot()}), so the slots stay dense.
  *
  * @author d0by
  * @since 3.0.0
  */
 public class ProfileRegistry {
 
+    private static final int INITIAL_SLOTS = 64;
+
     private final Map<UUID, Profile> profileMap;
+    private final BitSet usedSlots;
+    private volatile Profile[] profilesBySlot;
 
     /**
      * Creates a new profile registry.
      */
     public ProfileRegistry() {
         this.profileMap = new ConcurrentHashMap<>();
+        this.usedSlots = new BitSet();
+        this.profilesBySlot = new Profile[INITIAL_SLOTS];
         this.reload();
     }
 
@@ -61,6 +72,8 @@ public class ProfileRegistry {
      */
     public synchronized void shutdown() {
         this.profileMap.clear();
+        this.usedSlots.clear();
+        this.profilesBySlot = new Profile[INITIAL_SLOTS];
     }
 
     /**
@@ -68,8 +81,24 @@ public class ProfileRegistry {
      *
      * @param uuid The UUID of the player.
      */
-    public void registerProfile(@NotNull UUID uuid) {
-        this.profileMap.put(uuid, new Profile(uuid));
+    public synchronized void registerProfile(@NotNull UUID uuid) {
+        Profile previous = this.profileMap.get(uuid);
+        if (previous != null) {
+            releaseSlot(previous);
+        }
+
+        int slot = this.usedSlots.nextClearBit(0);
+        this.usedSlots.set(slot);
+        Profile profile = new Profile(uuid, slot);
+
+        Profile[] profiles = this.profilesBySlot;
+        if (slot >= profiles.length) {
+            profiles = Arrays.copyOf(profiles, Math.max(slot + 1, profiles.length * 2));
+        }
+        profiles[slot] = profile;
+        // Publish the array again, so readers on other threads see the new profile.
+        this.profilesBySlot = profiles;
+        this.profileMap.put(uuid, profile);
     }
 
     /**
@@ -82,13 +111,47 @@ public class ProfileRegistry {
         return this.profileMap.get(uuid);
     }
 
+    /**
+     * Get the profile in the given slot.
+     *
+     * @param slot The slot.
+     * @return The profile or null if the slot is free.
+     * @see Profile#getSlot()
+     */
+    @Nullable
+    public Profile getProfile(int slot) {
+        Profile[] profiles = this.profilesBySlot;
+        return slot >= 0 && slot < profiles.length ? profiles[slot] : null;
+    }
+
+    /**
+     * Call the given consumer for each registered profile.
+     *
+     * @param consumer The consumer.
+     */
+    public void forEachProfile(@NotNull Consumer<Profile> consumer) {
+        this.profileMap.values().forEach(consumer);
+    }
+
     /**
      * Remove the profile of the given player.
      *
      * @param uuid The UUID of the player.
      */
-    public void removeProfile(@NotNull UUID uuid) {
-        this.profileMap.remove(uuid);
+    public synchronized void removeProfile(@NotNull UUID uuid) {
+        Profile profile = this.profileMap.remove(uuid);
+        if (profile != null) {
+            releaseSlot(profile);
+        }
+    }
+
+    private void releaseSlot(@NotNull Profile profile) {
+        int slot = profile.getSlot();
+        Profile[] profiles = this.profilesBySlot;
+        if (slot < profiles.length && profiles[slot] == profile) {
+            profiles[slot] = null;
+            this.usedSlots.clear(slot);
+        }
     }
 
 }
@@ -24,6 +24,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Optional;
+import java.util.function.Predicate;
 
 /**
  * This class represents a custom placeholder.
@@ -34,15 +35,52 @@ import java.util.Optional;
 public class Replacement {
 
     private final @NotNull ReplacementSupplier replacementSupplier;
+    private final @NotNull Predicate<String> globalPredicate;
 
     /**
-     * Create new {@link Replacement}.
+     * Create new {@link Replacement}. The replacement is considered to
+     * depend on the profile it's replaced for.
      *
      * @param replacementSupplier The supplier, that finds a replacement for this placeholder.
      */
     @Contract(pure = true)
     public Replacement(@NotNull ReplacementSupplier replacementSupplier) {
+        this(replacementSupplier, false);
+    }
+
+    /**
+     * Create new {@link Replacement}.
+     *
+     * @param replacementSupplier The supplier, that finds a replacement for this placeholder.
+     * @param global              Whether the replacement is the same for all profiles.
+     */
+    @Contract(pure = true)
+    public Replacement(@NotNull ReplacementSupplier replacementSupplier, boolean global) {
+        this(replacementSupplier, (argument) -> global);
+    }
+
+    /**
+     * Create new {@link Replacement}.
+     *
+     * @param replacementSupplier The supplier, that finds a replacement for this placeholder.
+     * @param globalPredicate     The predicate, that tells whether the replacement for
+     *                            the given argument is the same for all profiles.
+     */
+    @Contract(pure = true)
+    public Replacement(@NotNull ReplacementSupplier replacementSupplier, @NotNull Predicate<String> globalPredicate) {
         this.replacementSupplier = replacementSupplier;
+        this.globalPredicate = globalPredicate;
+    }
+
+    /**
+     * Check whether the replacement for the given argument is the same for all profiles.
+     * Such replacements can be replaced once for all viewers (with a null profile).
+     *
+     * @param argument The argument.
+     * @return True if the replacement doesn't depend on the profile, false otherwise.
+     */
+    public boolean isGlobal(@Nullable String argument) {
+        return globalPredicate.test(argument);
     }
 
     /**
@@ -21,6 +21,8 @@ package eu.decentsoftware.holograms.replacements;
 import com.google.common.base.Strings;
 import eu.decentsoftware.holograms.Config;
 import eu.decentsoftware.holograms.DecentHolograms;
+import eu.decentsoftware.holograms.hologram.line.content.ContentScope;
+import eu.decentsoftware.holograms.hooks.PAPI;
 import eu.decentsoftware.holograms.profile.Profile;
 import eu.decentsoftware.holograms.server.Server;
 import eu.decentsoftware.holograms.utils.DatetimeUtils;
@@ -81,7 +83,7 @@ public class ReplacementRegistry {
         if (section != null) {
             section.getKeys(false).forEach((key) -> {
                 String value = config.getString(path + "." + key);
-                Replacement replacement = new Replacement((player, argument) -> Optional.ofNullable(value));
+                Replacement replacement = new Replacement((player, argument) -> Optional.ofNullable(value), true);
                 this.normalReplacementMap.put(key, replacement);
             });
         }
@@ -123,6 +125,43 @@ public class ReplacementRegistry {
         return string;
     }
 
+    /**
+     * Get the scope of the given String. The scope tells whether the String contains
+     * any placeholders and whether they depend on the profile they're replaced for.
+     * PlaceholderAPI placeholders are always considered to depend on the profile.
+     *
+     * @param string The string.
+     * @return The scope of the String.
+     * @see ContentScope
+     */
+    @NotNull
+    public ContentScope getScope(@NotNull String string) {
+        if (PAPI.containsPlaceholders(string)) {
+            return ContentScope.PLAYER;
+        }
+
+        ContentScope scope = ContentScope.STATIC;
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(string);
+        while (matcher.find()) {
+            Replacement replacement = defaultReplacementMap.get(matcher.group(1));
+            if (replacement == null) {
+                // Unknown placeholders are never replaced.
+                continue;
+            }
+            if (!replacement.isGlobal(matcher.group(2))) {
+                return ContentScope.PLAYER;
+            }
+            scope = ContentScope.GLOBAL;
+        }
+
+        for (Map.Entry<String, Replacement> entry : normalReplacementMap.entrySet()) {
+            if (string.contains(entry.getKey())) {
+                scope = scope.and(entry.getValue().isGlobal(null) ? ContentScope.GLOBAL : ContentScope.PLAYER);
+            }
+        }
+        return scope;
+    }
+
     /**
      * Get the replacement for the given placeholder string.
      *
@@ -153,7 +192,7 @@ public class ReplacementRegistry {
             } catch (NumberFormatException e) {
                 return Optional.of(" ");
             }
-        }));
+        }, true));
 
         // -- Player replacements
 
@@ -181,10 +220,10 @@ public class ReplacementRegistry {
         // -- Global replacements
 
         this.defaultReplacementMap.put("time", new Replacement(
-                (profile, argument) -> Optional.of(DatetimeUtils.getTimeFormatted()))
+                (profile, argument) -> Optional.of(DatetimeUtils.getTimeFormatted()), true)
         );
         this.defaultReplacementMap.put("date", new Replacement(
-                (profile, argument) -> Optional.of(DatetimeUtils.getDateFormatted()))
+                (profile, argument) -> Optional.of(DatetimeUtils.getDateFormatted()), true)
         );
 
         // -- World replacements
@@ -214,7 +253,7 @@ public class ReplacementRegistry {
                     } else {
                         return Optional.empty();
                     }
-                })
+                }, (argument) -> argument != null)
         );
 
         // -- Server & Pinger replacements
@@ -240,7 +279,7 @@ public class ReplacementRegistry {
                         return Optional.of(Bukkit.getOnlinePlayers().size() + "");
                     }
                     return Optional.empty();
-                })
+                }, (argument) -> argument == null)
         );
         this.defaultReplacementMap.put("max_players", new Replacement(
                 (profile, argument) -> {
@@ -263,7 +302,7 @@ public class ReplacementRegistry {
                         return Optional.of(Bukkit.getServer().getMaxPlayers() + "");
                     }
                     return Optional.empty();
-                })
+                }, (argument) -> argument == null)
         );
         this.defaultReplacementMap.put("motd", new Replacement(
                 (profile, argument) -> {
@@ -282,7 +321,7 @@ public class ReplacementRegistry {
                         return Optional.of(motd.trim());
                     }
                     return Optional.ofNullable(motd);
-                })
+                }, true)
         );
         this.defaultReplacementMap.put("status", new Replacement(
                 (profile, argument) -> {
@@ -300,7 +339,7 @@ public class ReplacementRegistry {
                         return Optional.ofNullable(Config.PINGER_STATUS_ONLINE);
                     }
                     return Optional.ofNullable(Config.PINGER_STATUS_OFFLINE);
-                })
+                }, true)
         );
     }
 
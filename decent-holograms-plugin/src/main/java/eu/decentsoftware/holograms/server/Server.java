@@ -72,6 +72,18 @@ public class Server implements Ticked {
         }
     }
 
+    @Override
+    public long getNextTickTime() {
+        // The check in tick() is exclusive, so we need to be 1ms late.
+        return lastUpdate.get() + Config.PINGER_UPDATE_INTERVAL * 50L + 1L;
+    }
+
+    @NotNull
+    @Override
+    public String getTimingsName() {
+        return "Server '" + name + "'";
+    }
+
     /**
      * Update the server data.
      */
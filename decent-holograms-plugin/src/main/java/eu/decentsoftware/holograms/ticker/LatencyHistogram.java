@@ -0,0 +1,172 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.ticker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents a thread-safe, fixed-size histogram of latencies in nanoseconds.
+ * <p>
+ * Values are stored in logarithmic buckets, each power of two being split into
+ * {@value #SUB_BUCKETS} sub-buckets. Percentiles are therefore approximate, but
+ * the histogram is cheap to record into and always has the same size.
+ *
+ * @author d0by
+ * @see TimingsEntry
+ * @since 3.0.0
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 1;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    /**
+     * Creates a new empty instance of {@link LatencyHistogram}.
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong(0);
+    }
+
+    /**
+     * Record the given value.
+     *
+     * @param nanos The value in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0L) {
+            nanos = 0L;
+        }
+        buckets.incrementAndGet(indexOf(nanos));
+        count.increment();
+        sum.add(nanos);
+
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            // Retry until we either set the max or someone set a greater one.
+        }
+    }
+
+    /**
+     * Remove all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0L);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0L);
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Get the sum of all recorded values.
+     *
+     * @return The sum in nanoseconds.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Get the mean of all recorded values.
+     *
+     * @return The mean in nanoseconds.
+     */
+    public double getMean() {
+        long c = getCount();
+        return c == 0L ? 0.0d : (double) getSum() / c;
+    }
+
+    /**
+     * Get the greatest recorded value.
+     *
+     * @return The greatest value in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the approximate value at the given percentile.
+     *
+     * @param percentile The percentile. (0.0 - 1.0)
+     * @return The value in nanoseconds. It's the upper bound of the bucket
+     * containing the percentile, but never greater than {@link #getMax()}.
+     */
+    public long getPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0L) {
+            return 0L;
+        }
+
+        long target = Math.max(1L, (long) Math.ceil(total * percentile));
+        long cumulative = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += buckets.get(i);
+            if (cumulative >= target) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    private static int indexOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) ((nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return exponent * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS;
+        int subBucket = index % SUB_BUCKETS;
+        long subBucketSize = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * subBucketSize - 1;
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.ticker;
+
+import eu.decentsoftware.holograms.Config;
+import eu.decentsoftware.holograms.DecentHolograms;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * This class records the timings of {@link Ticked} objects. For each object and each
+ * class of objects, it counts the calls and exceptions and keeps a latency histogram
+ * of sampled calls (see {@link Config#TIMINGS_SAMPLE_RATE}).
+ * <p>
+ * It's also responsible for logging exceptions thrown by the objects, so that objects
+ * that keep throwing don't spam the console every tick.
+ *
+ * @author d0by
+ * @see Ticker
+ * @see TimingsEntry
+ * @since 3.0.0
+ */
+public class TickTimings {
+
+    private static final DecentHolograms PLUGIN = DecentHolograms.getInstance();
+    private static final Comparator<TimingsEntry> BY_TOTAL_TIME =
+            Comparator.comparingLong(TimingsEntry::getEstimatedTotalNanos).reversed();
+
+    private final Map<Ticked, TimingsEntry> objects;
+    private final Map<Class<?>, TimingsEntry> classes;
+    private volatile long since;
+
+    /**
+     * Creates a new instance of {@link TickTimings}.
+     */
+    public TickTimings() {
+        this.objects = new ConcurrentHashMap<>();
+        this.classes = new ConcurrentHashMap<>();
+        this.since = System.currentTimeMillis();
+    }
+
+    /**
+     * Decide whether the duration of the next call should be measured.
+     *
+     * @return True if the call should be sampled.
+     */
+    public boolean shouldSample() {
+        int rate = Config.TIMINGS_SAMPLE_RATE;
+        return rate == 1 || (rate > 1 && ThreadLocalRandom.current().nextInt(rate) == 0);
+    }
+
+    /**
+     * Record a call of the tick method of the given object.
+     *
+     * @param ticked The object.
+     * @param nanos  The duration of the call or a negative number if it wasn't sampled.
+     */
+    public void record(@NotNull Ticked ticked, long nanos) {
+        getEntry(ticked).recordCall(nanos);
+    }
+
+    /**
+     * Record an exception thrown by the tick method of the given object and log it.
+     * Only one exception per object is logged every {@link Config#TIMINGS_EXCEPTION_LOG_INTERVAL}
+     * seconds, the others are only counted.
+     *
+     * @param ticked    The object.
+     * @param exception The exception.
+     */
+    public void recordException(@NotNull Ticked ticked, @NotNull Exception exception) {
+        TimingsEntry entry = getEntry(ticked);
+        entry.recordException();
+
+        long now = System.currentTimeMillis();
+        long lastLog = entry.getLastExceptionLog().get();
+        if (now - lastLog >= TimeUnit.SECONDS.toMillis(Config.TIMINGS_EXCEPTION_LOG_INTERVAL)
+                && entry.getLastExceptionLog().compareAndSet(lastLog, now)) {
+            int suppressed = entry.getSuppressedExceptions().getAndSet(0);
+            String message = "An exception occurred while ticking " + entry.getName() + "!";
+            if (suppressed > 0) {
+                message += " (" + suppressed + " more were suppressed since the last report)";
+            }
+            PLUGIN.getLogger().log(Level.SEVERE, message, exception);
+        } else {
+            entry.getSuppressedExceptions().incrementAndGet();
+        }
+    }
+
+    /**
+     * Remove the timings of the given object. The timings of its class are kept.
+     *
+     * @param ticked The object.
+     */
+    public void remove(@NotNull Ticked ticked) {
+        objects.remove(ticked);
+    }
+
+    /**
+     * Remove all recorded timings.
+     */
+    public void reset() {
+        objects.values().forEach(TimingsEntry::reset);
+        classes.values().forEach(TimingsEntry::reset);
+        since = System.currentTimeMillis();
+    }
+
+    /**
+     * Get the time since which the timings are being recorded.
+     *
+     * @return The time in milliseconds.
+     */
+    public long getSince() {
+        return since;
+    }
+
+    /**
+     * Get the objects with the highest estimated total time.
+     *
+     * @param limit The maximum number of entries.
+     * @return The list of entries, sorted by the estimated total time.
+     */
+    @NotNull
+    public List<TimingsEntry> getTopObjects(int limit) {
+        return getTop(objects.values(), limit);
+    }
+
+    /**
+     * Get the classes with the highest estimated total time.
+     *
+     * @param limit The maximum number of entries.
+     * @return The list of entries, sorted by the estimated total time.
+     */
+    @NotNull
+    public List<TimingsEntry> getTopClasses(int limit) {
+        return getTop(classes.values(), limit);
+    }
+
+    /**
+     * Write all recorded timings to a new file in the "timings" folder.
+     *
+     * @return The created file.
+     * @throws IOException If the file couldn't be written.
+     */
+    @NotNull
+    public File dump() throws IOException {
+        File folder = new File(PLUGIN.getDataFolder(), "timings");
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Failed to create folder " + folder.getPath());
+        }
+
+        String date = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
+        File file = new File(folder, "timings-" + date + ".txt");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            writer.println("DecentHolograms timings");
+            writer.println("Recorded since: " + new Date(since) + " (" + getRecordedSeconds() + "s)");
+            writer.println("Sample rate: 1 in " + Config.TIMINGS_SAMPLE_RATE + " calls");
+            writer.println();
+            writer.println("== Classes ==");
+            writeEntries(writer, getTopClasses(Integer.MAX_VALUE));
+            writer.println();
+            writer.println("== Objects ==");
+            writeEntries(writer, getTopObjects(Integer.MAX_VALUE));
+        }
+        return file;
+    }
+
+    /**
+     * Get the number of seconds the timings are being recorded for.
+     *
+     * @return The number of seconds.
+     */
+    public long getRecordedSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - since);
+    }
+
+    @NotNull
+    private TimingsEntry getEntry(@NotNull Ticked ticked) {
+        TimingsEntry entry = objects.get(ticked);
+        if (entry == null) {
+            TimingsEntry classEntry = classes.computeIfAbsent(ticked.getClass(), (c) -> new TimingsEntry(c.getSimpleName()));
+            entry = objects.computeIfAbsent(ticked, (t) -> new TimingsEntry(t, classEntry));
+        }
+        return entry;
+    }
+
+    @NotNull
+    private static List<TimingsEntry> getTop(@NotNull Collection<TimingsEntry> entries, int limit) {
+        List<TimingsEntry> list = new ArrayList<>(entries);
+        list.sort(BY_TOTAL_TIME);
+        return list.size() > limit ? list.subList(0, limit) : list;
+    }
+
+    private static void writeEntries(@NotNull PrintWriter writer, @NotNull List<TimingsEntry> entries) {
+        writer.println(String.format("%-48s %12s %10s %10s %10s %10s %12s",
+                "Name", "Calls", "Errors", "p50 (ms)", "p99 (ms)", "Max (ms)", "Total (ms)"));
+        for (TimingsEntry entry : entries) {
+            LatencyHistogram histogram = entry.getHistogram();
+            writer.println(String.format("%-48s %12d %10d %10.3f %10.3f %10.3f %12.1f",
+                    entry.getName(),
+                    entry.getCalls().sum(),
+                    entry.getExceptions().sum(),
+                    histogram.getPercentile(0.5d) / 1_000_000.0d,
+                    histogram.getPercentile(0.99d) / 1_000_000.0d,
+                    histogram.getMax() / 1_000_000.0d,
+                    entry.getEstimatedTotalNanos() / 1_000_000.0d
+            ));
+        }
+    }
+
+}
@@ -19,6 +19,7 @@
 package eu.decentsoftware.holograms.ticker;
 
 import eu.decentsoftware.holograms.DecentHolograms;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * This interface represents a ticked object.
@@ -33,6 +34,31 @@ public interface Ticked {
      */
     void tick();
 
+    /**
+     * Get the time at which this object needs to be ticked next. Objects that
+     * declare their due time are kept in a timing wheel and are only ticked
+     * once they are due, instead of every tick.
+     * <p>
+     * This method is called when the object is registered and after each tick.
+     *
+     * @return The next due time in milliseconds (see {@link System#currentTimeMillis()})
+     * or a negative number if the object should be ticked every tick.
+     */
+    default long getNextTickTime() {
+        return -1L;
+    }
+
+    /**
+     * Get the name of this object, as shown in the timings.
+     *
+     * @return The name of this object.
+     * @see TickTimings
+     */
+    @NotNull
+    default String getTimingsName() {
+        return getClass().getSimpleName();
+    }
+
     /**
      * Register the object to the ticker.
      */
@@ -18,26 +18,63 @@
 
 package eu.decentsoftware.holograms.ticker;
 
-import com.google.common.collect.Sets;
+import eu.decentsoftware.holograms.Config;
+import eu.decentsoftware.holograms.DecentHolograms;
+import eu.decentsoftware.holograms.nms.PacketBatch;
 import eu.decentsoftware.holograms.utils.SchedulerUtil;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class represents a ticker. It's used to tick the registered {@link Ticked} objects every tick.
+ * <p>
+ * The registered objects are partitioned into shards. In the default mode there is only
+ * one shard, which is ticked directly on the async ticker task. In the sharded mode
+ * (see {@link Config#TICKER_SHARDED}), there are {@link Config#TICKER_SHARDS} shards,
+ * and each of them is ticked on its own worker of a fork-join pool.
+ * <p>
+ * In the budgeted mode (see {@link Config#TICKER_BUDGET_ENABLED}), each shard only ticks
+ * for {@link Config#TICKER_BUDGET_TIME} milliseconds per tick and continues where it stopped
+ * in the next tick. If the budget keeps being exceeded, the degradation level is raised,
+ * which stretches the update intervals of holograms (see {@link #getIntervalMultiplier()}).
+ * Once the load drops, the level is lowered again.
+ * <p>
+ * With the timing wheel enabled (see {@link Config#TICKER_TIMING_WHEEL}), objects that
+ * declare their next due time (see {@link Ticked#getNextTickTime()}) aren't kept in the
+ * shards, but in a {@link TimingWheel}, so they are only woken up when they have work.
  *
  * @author d0by
  * @see Ticked
+ * @see TickerShard
+ * @see TimingWheel
  * @since 3.0.0
  */
 public class Ticker {
 
-    private final Set<Ticked> tickedObjects;
-    private final Set<Ticked> tickedObjectsToAdd;
-    private final Set<Ticked> tickedObjectsToRemove;
+    private final TickerShard[] shards;
+    private final Map<Ticked, TickerShard> assignments;
+    private final ForkJoinPool pool;
+    private final TimingWheel wheel;
+    private final ConcurrentLinkedQueue<Ticked> dueObjects;
+    private final TickTimings timings;
     private final AtomicBoolean ticking;
+    private final AtomicLong skippedTicks;
+    private volatile int degradationLevel;
+    private int overloadedTicks;
+    private int relaxedTicks;
     private int taskId;
 
     /**
@@ -45,10 +82,19 @@ public class Ticker {
      * using the {@link #start()} method.
      */
     public Ticker() {
-        this.tickedObjects = Sets.newConcurrentHashSet();
-        this.tickedObjectsToAdd = Sets.newConcurrentHashSet();
-        this.tickedObjectsToRemove = Sets.newConcurrentHashSet();
+        int shardCount = Config.TICKER_SHARDED ? resolveShardCount() : 1;
+        this.shards = new TickerShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new TickerShard(this, i);
+        }
+        this.assignments = new ConcurrentHashMap<>();
+        this.pool = shardCount > 1 ? new ForkJoinPool(shardCount, this::createWorker, null, false) : null;
+        this.wheel = Config.TICKER_TIMING_WHEEL ? new TimingWheel(Config.TICKER_TIMING_WHEEL_RESOLUTION, this::dispatchScheduled) : null;
+        this.dueObjects = new ConcurrentLinkedQueue<>();
+        this.timings = new TickTimings();
         this.ticking = new AtomicBoolean(false);
+        this.skippedTicks = new AtomicLong(0);
+        this.degradationLevel = 0;
         this.start();
     }
 
@@ -57,22 +103,43 @@ public class Ticker {
      */
     public synchronized void shutdown() {
         this.stop();
-        this.tickedObjects.clear();
-        this.tickedObjectsToAdd.clear();
-        this.tickedObjectsToRemove.clear();
+        this.unregisterAll();
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(1L, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     /**
-     * Register the given object to the ticker.
+     * Register the given object to the ticker. The object is assigned to
+     * the shard with the least objects, or to the timing wheel if it declares
+     * its next due time.
      *
      * @param ticked The object to register.
      */
     public void register(@NotNull Ticked ticked) {
-        synchronized (tickedObjectsToAdd) {
-            if (!tickedObjects.contains(ticked)) {
-                tickedObjectsToAdd.add(ticked);
+        assignments.compute(ticked, (t, current) -> {
+            if (current != null) {
+                return current;
             }
-        }
+            if (wheel != null) {
+                if (wheel.contains(t)) {
+                    return null;
+                }
+                long due = t.getNextTickTime();
+                if (due >= 0L) {
+                    wheel.schedule(t, due);
+                    return null;
+                }
+            }
+            TickerShard shard = getLeastLoadedShard();
+            shard.add(t);
+            return shard;
+        });
     }
 
     /**
@@ -81,22 +148,30 @@ public class Ticker {
      * @param ticked The object to unregister.
      */
     public void unregister(@NotNull Ticked ticked) {
-        synchronized (tickedObjectsToRemove) {
-            if (tickedObjects.contains(ticked)) {
-                tickedObjectsToRemove.add(ticked);
+        assignments.compute(ticked, (t, shard) -> {
+            if (shard != null) {
+                shard.remove(t);
             }
-        }
+            if (wheel != null) {
+                wheel.cancel(t);
+                dueObjects.remove(t);
+            }
+            return null;
+        });
+        timings.remove(ticked);
     }
 
     /**
      * Unregister all objects from the ticker.
      */
     public void unregisterAll() {
-        synchronized (tickedObjectsToAdd) {
-            tickedObjectsToAdd.clear();
+        for (Ticked ticked : assignments.keySet()) {
+            unregister(ticked);
         }
-        synchronized (tickedObjectsToRemove) {
-            tickedObjectsToRemove.addAll(tickedObjects);
+        if (wheel != null) {
+            for (Ticked ticked : wheel.getScheduled()) {
+                unregister(ticked);
+            }
         }
     }
 
@@ -105,6 +180,9 @@ public class Ticker {
      */
     public synchronized void start() {
         taskId = SchedulerUtil.scheduleAsync(this::tick, 1L);
+        if (wheel != null) {
+            wheel.start();
+        }
     }
 
     /**
@@ -112,34 +190,275 @@ public class Ticker {
      */
     public synchronized void stop() {
         SchedulerUtil.cancel(taskId);
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    /**
+     * Check whether this ticker is running in the sharded mode.
+     *
+     * @return True if the ticker is sharded, false otherwise.
+     */
+    public boolean isSharded() {
+        return pool != null;
+    }
+
+    /**
+     * Get an unmodifiable list of all shards of this ticker.
+     *
+     * @return The list of shards.
+     */
+    @NotNull
+    public List<TickerShard> getShards() {
+        return Collections.unmodifiableList(Arrays.asList(shards));
+    }
+
+    /**
+     * Get the timings recorded by this ticker.
+     *
+     * @return The timings.
+     */
+    @NotNull
+    public TickTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * Get the number of objects, that are currently scheduled in the timing wheel
+     * instead of being ticked every tick.
+     *
+     * @return The number of scheduled objects.
+     */
+    public int getScheduledCount() {
+        return wheel == null ? 0 : wheel.size();
+    }
+
+    /**
+     * Check whether this ticker is running in the budgeted mode.
+     *
+     * @return True if the ticker is budgeted, false otherwise.
+     */
+    public boolean isBudgeted() {
+        return Config.TICKER_BUDGET_ENABLED;
+    }
+
+    /**
+     * Get the current degradation level. The level is 0 while the ticker keeps
+     * up with its work and is raised while the tick budget keeps being exceeded.
+     *
+     * @return The degradation level.
+     */
+    public int getDegradationLevel() {
+        return degradationLevel;
+    }
+
+    /**
+     * Get the multiplier that should be applied to update intervals of ticked
+     * objects. The multiplier doubles with each degradation level.
+     *
+     * @return The interval multiplier.
+     */
+    public int getIntervalMultiplier() {
+        return 1 << degradationLevel;
+    }
+
+    /**
+     * Get the number of objects, that were deferred to the next tick
+     * because the time budget of the last tick was exceeded.
+     *
+     * @return The deferred-work backlog.
+     */
+    public int getBacklog() {
+        int backlog = 0;
+        for (TickerShard shard : shards) {
+            backlog += shard.getBacklog();
+        }
+        return backlog;
+    }
+
+    /**
+     * Get the number of ticks, that were skipped because the previous
+     * tick was still running.
+     *
+     * @return The number of skipped ticks.
+     */
+    public long getSkippedTicks() {
+        return skippedTicks.get();
+    }
+
+    /**
+     * Reset the tick-duration stats of all shards.
+     */
+    public void resetStats() {
+        for (TickerShard shard : shards) {
+            shard.resetStats();
+        }
+        skippedTicks.set(0);
+    }
+
+    /**
+     * Tick the given object and record its timings. If the timing wheel is enabled, the object is then
+     * moved between the shards and the wheel according to its next due time.
+     *
+     * @param ticked The object to tick.
+     */
+    void tickObject(@NotNull Ticked ticked) {
+        boolean sampled = timings.shouldSample();
+        long start = sampled ? System.nanoTime() : 0L;
+        // Queue the packets sent during the tick, so each player's channel is flushed only once.
+        // Inside a shard tick, this joins the batch of the shard.
+        boolean batching = Config.PACKETS_BATCHING;
+        if (batching) {
+            PacketBatch.begin(DecentHolograms.getInstance().getNMSManager().getAdapter());
+        }
+        try {
+            ticked.tick();
+        } catch (Exception e) {
+            timings.recordException(ticked, e);
+        } finally {
+            if (batching) {
+                PacketBatch.end();
+            }
+        }
+        timings.record(ticked, sampled ? System.nanoTime() - start : -1L);
+
+        if (wheel != null) {
+            schedule(ticked);
+        }
+    }
+
+    private void schedule(@NotNull Ticked ticked) {
+        long due = ticked.getNextTickTime();
+        if (due >= 0L) {
+            // Either it's already on the wheel, or we move it there from its shard.
+            if (!wheel.reschedule(ticked, due)) {
+                assignments.computeIfPresent(ticked, (t, shard) -> {
+                    shard.remove(t);
+                    wheel.schedule(t, due);
+                    return null;
+                });
+            }
+        } else if (wheel.contains(ticked)) {
+            // The object wants to be ticked every tick again.
+            assignments.compute(ticked, (t, current) -> {
+                if (current != null || !wheel.cancel(t)) {
+                    return current;
+                }
+                TickerShard shard = getLeastLoadedShard();
+                shard.add(t);
+                return shard;
+            });
+        }
+    }
+
+    /**
+     * Hand an object, that is due on the timing wheel, over to the ticker. The object is never
+     * ticked on the clock thread of the wheel, so a slow object can't delay the others.
+     *
+     * @param ticked The due object.
+     */
+    private void dispatchScheduled(@NotNull Ticked ticked) {
+        if (pool != null) {
+            pool.execute(() -> tickObject(ticked));
+        } else {
+            // Without a pool, the object is ticked on the async ticker task, like the shard.
+            dueObjects.add(ticked);
+        }
+    }
+
+    private void tickDueObjects() {
+        Ticked ticked;
+        while ((ticked = dueObjects.poll()) != null) {
+            tickObject(ticked);
+        }
     }
 
     private void tick() {
-        if (ticking.compareAndSet(false, true)) {
-            // Tick all ticked objects
-            synchronized (tickedObjects) {
-                for (Ticked ticked : tickedObjects) {
-                    try {
-                        ticked.tick();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
+        if (!ticking.compareAndSet(false, true)) {
+            skippedTicks.incrementAndGet();
+            return;
+        }
+
+        try {
+            long budgetNanos = isBudgeted() ? TimeUnit.MILLISECONDS.toNanos(Config.TICKER_BUDGET_TIME) : 0L;
+            boolean completed = true;
+            if (pool == null) {
+                tickDueObjects();
+                completed = shards[0].tick(budgetNanos);
+            } else {
+                // Tick each shard on its own worker and wait for all of them.
+                List<ForkJoinTask<Boolean>> tasks = new ArrayList<>(shards.length);
+                for (TickerShard shard : shards) {
+                    tasks.add(pool.submit(() -> shard.tick(budgetNanos)));
+                }
+                for (ForkJoinTask<Boolean> task : tasks) {
+                    completed &= task.join();
                 }
             }
+            updateDegradation(completed);
+        } finally {
+            ticking.set(false);
+        }
+    }
 
-            // Add ticked objects
-            synchronized (tickedObjectsToAdd) {
-                tickedObjects.addAll(tickedObjectsToAdd);
-                tickedObjectsToAdd.clear();
+    /**
+     * Raise the degradation level if the budget was exceeded for too many ticks
+     * in a row, or lower it if all work fit into the budget for long enough.
+     *
+     * @param completed Whether all objects were ticked during the last tick.
+     */
+    private void updateDegradation(boolean completed) {
+        if (!isBudgeted()) {
+            degradationLevel = 0;
+            overloadedTicks = 0;
+            relaxedTicks = 0;
+            return;
+        }
+
+        if (!completed) {
+            relaxedTicks = 0;
+            if (++overloadedTicks >= Config.TICKER_BUDGET_DEGRADE_AFTER) {
+                overloadedTicks = 0;
+                degradationLevel = Math.min(degradationLevel + 1, Config.TICKER_BUDGET_MAX_DEGRADATION);
+            }
+        } else if (degradationLevel > 0) {
+            overloadedTicks = 0;
+            if (++relaxedTicks >= Config.TICKER_BUDGET_RECOVER_AFTER) {
+                relaxedTicks = 0;
+                degradationLevel--;
             }
+        } else {
+            overloadedTicks = 0;
+        }
+    }
 
-            // Remove ticked objects
-            synchronized (tickedObjectsToRemove) {
-                tickedObjects.removeAll(tickedObjectsToRemove);
-                tickedObjectsToRemove.clear();
+    @NotNull
+    private TickerShard getLeastLoadedShard() {
+        TickerShard leastLoaded = shards[0];
+        for (int i = 1; i < shards.length; i++) {
+            if (shards[i].size() < leastLoaded.size()) {
+                leastLoaded = shards[i];
             }
         }
-        ticking.set(false);
+        return leastLoaded;
+    }
+
+    @NotNull
+    private ForkJoinWorkerThread createWorker(@NotNull ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("DecentHolograms Ticker #" + thread.getPoolIndex());
+        thread.setContextClassLoader(Ticker.class.getClassLoader());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static int resolveShardCount() {
+        int shards = Config.TICKER_SHARDS;
+        if (shards <= 0) {
+            shards = Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, shards);
     }
 
 }
@@ -0,0 +1,205 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.ticker;
+
+import eu.decentsoftware.holograms.Config;
+import eu.decentsoftware.holograms.DecentHolograms;
+import eu.decentsoftware.holograms.nms.PacketBatch;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class represents one shard of the {@link Ticker}. Each shard holds a subset
+ * of the registered {@link Ticked} objects and ticks them on its own worker. The
+ * shard also keeps track of how long its ticks take, so we can see the imbalance
+ * between shards.
+ *
+ * @author d0by
+ * @see Ticker
+ * @since 3.0.0
+ */
+@Getter
+public class TickerShard {
+
+    /**
+     * Weight of the newest sample in the average tick duration.
+     */
+    private static final double AVERAGE_WEIGHT = 0.05d;
+
+    @Getter(AccessLevel.NONE)
+    private final Ticker ticker;
+    private final int index;
+    private final Set<Ticked> tickedObjects;
+    @Getter(AccessLevel.NONE)
+    private volatile boolean snapshotDirty;
+    @Getter(AccessLevel.NONE)
+    private Ticked[] snapshot;
+    @Getter(AccessLevel.NONE)
+    private int cursor;
+    private volatile int backlog;
+    private volatile long lastTickNanos;
+    private volatile long maxTickNanos;
+    private volatile double averageTickNanos;
+
+    /**
+     * Creates a new instance of {@link TickerShard}.
+     *
+     * @param ticker The ticker this shard belongs to.
+     * @param index  The index of this shard.
+     */
+    public TickerShard(@NotNull Ticker ticker, int index) {
+        this.ticker = ticker;
+        this.index = index;
+        this.tickedObjects = ConcurrentHashMap.newKeySet();
+        this.snapshotDirty = false;
+        this.snapshot = new Ticked[0];
+        this.cursor = 0;
+        this.backlog = 0;
+    }
+
+    /**
+     * Add the given object to this shard.
+     *
+     * @param ticked The object.
+     */
+    public void add(@NotNull Ticked ticked) {
+        if (tickedObjects.add(ticked)) {
+            snapshotDirty = true;
+        }
+    }
+
+    /**
+     * Remove the given object from this shard.
+     *
+     * @param ticked The object.
+     */
+    public void remove(@NotNull Ticked ticked) {
+        if (tickedObjects.remove(ticked)) {
+            snapshotDirty = true;
+        }
+    }
+
+    /**
+     * Remove all objects from this shard.
+     */
+    public void clear() {
+        tickedObjects.clear();
+        snapshotDirty = true;
+    }
+
+    /**
+     * Get the number of objects in this shard.
+     *
+     * @return The number of objects.
+     */
+    public int size() {
+        return tickedObjects.size();
+    }
+
+    /**
+     * Tick all objects of this shard and record the duration of the tick.
+     */
+    public void tick() {
+        tick(0L);
+    }
+
+    /**
+     * Tick the objects of this shard within the given time budget and record the
+     * duration of the tick. The objects are processed round-robin, starting where the
+     * previous tick stopped, so no object starves when the budget keeps being exceeded.
+     *
+     * @param budgetNanos The time budget in nanoseconds. (0 = unlimited)
+     * @return True if all objects have been ticked, false if some were deferred.
+     */
+    public boolean tick(long budgetNanos) {
+        long start = System.nanoTime();
+        Ticked[] objects = getSnapshot();
+        int count = objects.length;
+        if (cursor >= count) {
+            cursor = 0;
+        }
+
+        // One batch for the whole shard, so each player's channel is flushed once per tick.
+        boolean batching = Config.PACKETS_BATCHING;
+        if (batching) {
+            PacketBatch.begin(DecentHolograms.getInstance().getNMSManager().getAdapter());
+        }
+        int processed = 0;
+        try {
+            while (processed < count) {
+                Ticked ticked = objects[cursor];
+                cursor = cursor + 1 < count ? cursor + 1 : 0;
+                processed++;
+
+                ticker.tickObject(ticked);
+
+                if (budgetNanos > 0L && System.nanoTime() - start >= budgetNanos) {
+                    break;
+                }
+            }
+        } finally {
+            if (batching) {
+                PacketBatch.end();
+            }
+        }
+
+        backlog = count - processed;
+        recordTick(System.nanoTime() - start);
+        return backlog == 0;
+    }
+
+    /**
+     * Reset the tick-duration stats of this shard.
+     */
+    public void resetStats() {
+        lastTickNanos = 0L;
+        maxTickNanos = 0L;
+        averageTickNanos = 0.0d;
+    }
+
+    /**
+     * Get the array of objects to tick. The array is only rebuilt when the
+     * objects of this shard change, so a tick doesn't need to iterate the
+     * concurrent set, and the round-robin cursor has stable indexes.
+     */
+    @NotNull
+    private Ticked[] getSnapshot() {
+        if (snapshotDirty) {
+            // Reset the flag first, so changes made while copying aren't lost.
+            snapshotDirty = false;
+            snapshot = tickedObjects.toArray(new Ticked[0]);
+        }
+        return snapshot;
+    }
+
+    private void recordTick(long nanos) {
+        // Only the worker of this shard writes these, so no CAS is needed.
+        lastTickNanos = nanos;
+        if (nanos > maxTickNanos) {
+            maxTickNanos = nanos;
+        }
+        double average = averageTickNanos;
+        averageTickNanos = average == 0.0d ? nanos : average + (nanos - average) * AVERAGE_WEIGHT;
+    }
+
+}
@@ -0,0 +1,297 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.ticker;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * This class represents a hierarchical timing wheel for {@link Ticked} objects,
+ * that declare their next due time (see {@link Ticked#getNextTickTime()}).
+ * <p>
+ * The wheel is driven by its own clock thread, which advances the wheel every
+ * {@code resolution} milliseconds and passes only the due objects to the dispatcher.
+ * Each level of the wheel has {@value #WHEEL_SIZE} buckets and each bucket of
+ * a level spans all buckets of the level below it. Objects are cascaded down
+ * to the lower levels as their due time approaches.
+ * <p>
+ * The buckets are only ever touched by the clock thread. Other threads hand
+ * over new entries through a concurrent queue.
+ *
+ * @author d0by
+ * @see Ticker
+ * @since 3.0.0
+ */
+public class TimingWheel {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long resolutionMillis;
+    private final long resolutionNanos;
+    private final Consumer<Ticked> dispatcher;
+    private final ArrayDeque<Entry>[][] buckets;
+    private final Queue<Entry> pending;
+    private final Map<Ticked, Entry> entries;
+    private final List<Entry> expired;
+    private long originMillis;
+    private long currentTick;
+    private volatile boolean running;
+    private volatile Thread thread;
+
+    /**
+     * Creates a new instance of {@link TimingWheel}.
+     *
+     * @param resolutionMillis The duration of one tick of the wheel in milliseconds.
+     * @param dispatcher       The consumer that is called with each due object.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long resolutionMillis, @NotNull Consumer<Ticked> dispatcher) {
+        this.resolutionMillis = Math.max(1L, resolutionMillis);
+        this.resolutionNanos = TimeUnit.MILLISECONDS.toNanos(this.resolutionMillis);
+        this.dispatcher = dispatcher;
+        this.buckets = new ArrayDeque[LEVELS][WHEEL_SIZE];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                this.buckets[level][slot] = new ArrayDeque<>();
+            }
+        }
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.entries = new ConcurrentHashMap<>();
+        this.expired = new ArrayList<>();
+        this.originMillis = System.currentTimeMillis();
+        this.currentTick = 0L;
+    }
+
+    /**
+     * Start the clock thread of this wheel.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "DecentHolograms Timing Wheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the clock thread of this wheel. The scheduled objects are kept.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread = null;
+        }
+    }
+
+    /**
+     * Schedule the given object to be dispatched at the given time. If the object
+     * is already scheduled, its previous schedule is replaced.
+     *
+     * @param ticked    The object.
+     * @param dueMillis The due time in milliseconds. (See {@link System#currentTimeMillis()})
+     */
+    public void schedule(@NotNull Ticked ticked, long dueMillis) {
+        Entry entry = new Entry(ticked, dueMillis);
+        Entry previous = entries.put(ticked, entry);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        pending.add(entry);
+    }
+
+    /**
+     * Schedule the given object to be dispatched at the given time, but only
+     * if it's currently scheduled in this wheel.
+     *
+     * @param ticked    The object.
+     * @param dueMillis The due time in milliseconds. (See {@link System#currentTimeMillis()})
+     * @return True if the object has been rescheduled, false otherwise.
+     */
+    public boolean reschedule(@NotNull Ticked ticked, long dueMillis) {
+        return entries.computeIfPresent(ticked, (t, previous) -> {
+            previous.cancelled = true;
+            Entry entry = new Entry(t, dueMillis);
+            pending.add(entry);
+            return entry;
+        }) != null;
+    }
+
+    /**
+     * Remove the given object from this wheel.
+     *
+     * @param ticked The object.
+     * @return True if the object was scheduled, false otherwise.
+     */
+    public boolean cancel(@NotNull Ticked ticked) {
+        Entry entry = entries.remove(ticked);
+        if (entry != null) {
+            entry.cancelled = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check whether the given object is scheduled in this wheel.
+     *
+     * @param ticked The object.
+     * @return True if the object is scheduled, false otherwise.
+     */
+    public boolean contains(@NotNull Ticked ticked) {
+        return entries.containsKey(ticked);
+    }
+
+    /**
+     * Get the set of all objects scheduled in this wheel.
+     *
+     * @return The set of objects.
+     */
+    @NotNull
+    public Set<Ticked> getScheduled() {
+        return entries.keySet();
+    }
+
+    /**
+     * Get the number of objects scheduled in this wheel.
+     *
+     * @return The number of objects.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void run() {
+        // Align the wheel with the current time, in case it has been stopped before.
+        originMillis = System.currentTimeMillis() - currentTick * resolutionMillis;
+        long nextTickNanos = System.nanoTime() + resolutionNanos;
+        while (running && thread == Thread.currentThread()) {
+            long waitNanos = nextTickNanos - System.nanoTime();
+            if (waitNanos > 0L) {
+                LockSupport.parkNanos(this, waitNanos);
+                continue;
+            }
+
+            drainPending();
+            advance();
+            nextTickNanos += resolutionNanos;
+        }
+    }
+
+    private void drainPending() {
+        Entry entry;
+        while ((entry = pending.poll()) != null) {
+            long delta = entry.dueMillis - originMillis;
+            // Round up, so we never dispatch an object before its due time.
+            entry.dueTick = delta <= 0L ? 0L : (delta + resolutionMillis - 1) / resolutionMillis;
+            insert(entry);
+        }
+    }
+
+    private void advance() {
+        currentTick++;
+
+        // Whenever a level wraps around, cascade the current bucket of the level above it.
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0L) {
+                break;
+            }
+            int slot = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+            reinsert(buckets[level][slot]);
+        }
+
+        reinsert(buckets[0][(int) (currentTick & WHEEL_MASK)]);
+
+        if (expired.isEmpty()) {
+            return;
+        }
+        for (Entry entry : expired) {
+            if (!entry.cancelled) {
+                try {
+                    dispatcher.accept(entry.ticked);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        expired.clear();
+    }
+
+    private void reinsert(@NotNull ArrayDeque<Entry> bucket) {
+        // Only process the entries that were in the bucket before we started.
+        for (int i = bucket.size(); i > 0; i--) {
+            insert(bucket.poll());
+        }
+    }
+
+    private void insert(@NotNull Entry entry) {
+        if (entry.cancelled) {
+            return;
+        }
+
+        long delta = entry.dueTick - currentTick;
+        if (delta <= 0L) {
+            expired.add(entry);
+            return;
+        }
+
+        // Entries too far in the future are parked in the top level
+        // and re-inserted once that bucket is cascaded.
+        long tick = currentTick + Math.min(delta, MAX_DELTA);
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        buckets[level][slot].add(entry);
+    }
+
+    private static class Entry {
+
+        private final Ticked ticked;
+        private final long dueMillis;
+        private long dueTick;
+        private volatile boolean cancelled;
+
+        Entry(@NotNull Ticked ticked, long dueMillis) {
+            this.ticked = ticked;
+            this.dueMillis = dueMillis;
+            this.cancelled = false;
+        }
+
+    }
+
+}
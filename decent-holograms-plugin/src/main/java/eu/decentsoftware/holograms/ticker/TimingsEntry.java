@@ -0,0 +1,135 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.ticker;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class holds the timings of either a single {@link Ticked} object
+ * or of all objects of one class.
+ *
+ * @author d0by
+ * @see TickTimings
+ * @since 3.0.0
+ */
+@Getter
+public class TimingsEntry {
+
+    private final @Nullable Ticked ticked;
+    private final @NotNull String name;
+    private final @Nullable TimingsEntry classEntry;
+    private final @NotNull LatencyHistogram histogram;
+    private final @NotNull LongAdder calls;
+    private final @NotNull LongAdder exceptions;
+    private final @NotNull AtomicLong lastExceptionLog;
+    private final @NotNull AtomicInteger suppressedExceptions;
+
+    /**
+     * Creates a new {@link TimingsEntry} for a class of objects.
+     *
+     * @param name The name of the class.
+     */
+    public TimingsEntry(@NotNull String name) {
+        this(null, name, null);
+    }
+
+    /**
+     * Creates a new {@link TimingsEntry} for the given object.
+     *
+     * @param ticked     The object.
+     * @param classEntry The entry of the class of the object.
+     */
+    public TimingsEntry(@NotNull Ticked ticked, @NotNull TimingsEntry classEntry) {
+        this(ticked, classEntry.getName(), classEntry);
+    }
+
+    private TimingsEntry(@Nullable Ticked ticked, @NotNull String name, @Nullable TimingsEntry classEntry) {
+        this.ticked = ticked;
+        this.name = name;
+        this.classEntry = classEntry;
+        this.histogram = new LatencyHistogram();
+        this.calls = new LongAdder();
+        this.exceptions = new LongAdder();
+        this.lastExceptionLog = new AtomicLong(0);
+        this.suppressedExceptions = new AtomicInteger(0);
+    }
+
+    /**
+     * Get the name of this entry. For object entries, the name is
+     * provided by the object (see {@link Ticked#getTimingsName()}).
+     *
+     * @return The name.
+     */
+    @NotNull
+    public String getName() {
+        return ticked == null ? name : ticked.getTimingsName();
+    }
+
+    /**
+     * Record a call of the tick method.
+     *
+     * @param nanos The duration of the call or a negative number if it wasn't sampled.
+     */
+    public void recordCall(long nanos) {
+        calls.increment();
+        if (nanos >= 0L) {
+            histogram.record(nanos);
+        }
+        if (classEntry != null) {
+            classEntry.recordCall(nanos);
+        }
+    }
+
+    /**
+     * Record an exception thrown by the tick method.
+     */
+    public void recordException() {
+        exceptions.increment();
+        if (classEntry != null) {
+            classEntry.recordException();
+        }
+    }
+
+    /**
+     * Get the estimated total time spent ticking. As only some calls are sampled,
+     * this is the mean of the sampled calls multiplied by the number of calls.
+     *
+     * @return The estimated total time in nanoseconds.
+     */
+    public long getEstimatedTotalNanos() {
+        return (long) (histogram.getMean() * calls.sum());
+    }
+
+    /**
+     * Remove all recorded data of this entry.
+     */
+    public void reset() {
+        histogram.reset();
+        calls.reset();
+        exceptions.reset();
+        suppressedExceptions.set(0);
+    }
+
+}
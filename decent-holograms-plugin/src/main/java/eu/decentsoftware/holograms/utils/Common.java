@@ -104,6 +104,33 @@ public final class Common {
         return DecentColorAPI.process(list);
     }
 
+    /**
+     * Check whether the given string is empty after removing all color codes.
+     * This is the same as {@code string.replaceAll("§.", "").isEmpty()}, but
+     * without the regex.
+     *
+     * @param string The string.
+     * @return True if the string only consists of color codes, false otherwise.
+     */
+    public static boolean isEmptyWithoutColors(@NotNull String string) {
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c == '§' && i + 1 < length && !isLineTerminator(string.charAt(i + 1))) {
+                // Skip the color code
+                i++;
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        // The characters not matched by '.' in a regex
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
     /*
      * 	Log
      */
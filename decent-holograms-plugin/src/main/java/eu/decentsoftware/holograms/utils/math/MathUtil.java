@@ -51,6 +51,23 @@ public final class MathUtil {
         return center.distanceSquared(location) <= distance * distance;
     }
 
+    /**
+     * Get the squared distance between the given locations.
+     *
+     * @param a The first location.
+     * @param b The second location.
+     * @return The squared distance or {@link Double#MAX_VALUE} if the locations are in different worlds.
+     */
+    public static double distanceSquared(@NotNull Location a, @NotNull Location b) {
+        if (a.getWorld() != null && b.getWorld() != null && !a.getWorld().equals(b.getWorld())) {
+            return Double.MAX_VALUE;
+        }
+        double dx = a.getX() - b.getX();
+        double dy = a.getY() - b.getY();
+        double dz = a.getZ() - b.getZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+
     /**
      * Draws a line of particles from the given location representing the given vector.
      *
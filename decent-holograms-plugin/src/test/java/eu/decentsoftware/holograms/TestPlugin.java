@@ -0,0 +1,120 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms;
+
+import eu.decentsoftware.holograms.animations.AnimationRegistry;
+import eu.decentsoftware.holograms.nms.NMSAdapter;
+import eu.decentsoftware.holograms.nms.NMSManager;
+import eu.decentsoftware.holograms.profile.ProfileRegistry;
+import eu.decentsoftware.holograms.replacements.ReplacementRegistry;
+import eu.decentsoftware.holograms.ticker.Ticker;
+import lombok.experimental.UtilityClass;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.craftbukkit.v1_8_R3.TestServer;
+import org.bukkit.plugin.PluginManager;
+import org.jetbrains.annotations.NotNull;
+import org.objenesis.ObjenesisStd;
+
+import java.lang.reflect.Field;
+import java.util.logging.Logger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A {@link DecentHolograms} instance with mocked managers, for tests of classes, that
+ * look up the plugin and the NMS adapter in their static initializers. As these lookups
+ * happen only once per JVM, the instance and its mocks are shared by all tests, so the
+ * tests should call {@link #reset()} before using them.
+ * <p>
+ * A mocked 1.8 server is installed as well, on which no other plugins are enabled.
+ */
+@UtilityClass
+public final class TestPlugin {
+
+    private static DecentHolograms plugin;
+    private static NMSAdapter adapter;
+
+    /**
+     * Get the plugin, installing it as {@link DecentHolograms#getInstance()} first if needed.
+     *
+     * @return The plugin.
+     */
+    @NotNull
+    public static synchronized DecentHolograms get() {
+        if (plugin == null) {
+            installServer();
+            // The plugin can't be constructed outside a server, so its constructor is skipped.
+            DecentHolograms instance = new ObjenesisStd().newInstance(DecentHolograms.class);
+            adapter = mock(NMSAdapter.class);
+            NMSManager nmsManager = mock(NMSManager.class);
+            when(nmsManager.getAdapter()).thenReturn(adapter);
+            setField(instance, "nmsManager", nmsManager);
+            setField(instance, "ticker", mock(Ticker.class));
+            setField(instance, "profileRegistry", mock(ProfileRegistry.class));
+            setField(instance, "replacementRegistry", mock(ReplacementRegistry.class));
+            setField(instance, "animationRegistry", mock(AnimationRegistry.class));
+            setField(null, "instance", instance);
+            plugin = instance;
+        }
+        return plugin;
+    }
+
+    /**
+     * Get the mocked NMS adapter of the plugin.
+     *
+     * @return The adapter.
+     */
+    @NotNull
+    public static NMSAdapter getAdapter() {
+        get();
+        return adapter;
+    }
+
+    /**
+     * Forget the stubbings and invocations of the mocked managers.
+     */
+    public static void reset() {
+        DecentHolograms plugin = get();
+        org.mockito.Mockito.reset(adapter, plugin.getTicker(), plugin.getProfileRegistry(),
+                plugin.getReplacementRegistry(), plugin.getAnimationRegistry());
+    }
+
+    private static void installServer() {
+        if (Bukkit.getServer() != null) {
+            return;
+        }
+        Server server = mock(TestServer.class);
+        when(server.getLogger()).thenReturn(Logger.getLogger("TestServer"));
+        when(server.getPluginManager()).thenReturn(mock(PluginManager.class));
+        Bukkit.setServer(server);
+    }
+
+    private static void setField(Object target, @NotNull String name, Object value) {
+        try {
+            Field field = DecentHolograms.class.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to set the field '" + name + "' of the plugin.", e);
+        }
+    }
+
+}
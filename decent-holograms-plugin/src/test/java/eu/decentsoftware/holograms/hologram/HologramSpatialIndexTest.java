@@ -0,0 +1,191 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram;
+
+import eu.decentsoftware.holograms.api.hologram.HologramSettings;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the cells of {@link HologramSpatialIndex}, the largest view distance, that
+ * determines the radius of the nearby queries, and the grid of the players.
+ */
+class HologramSpatialIndexTest {
+
+    private final HologramSpatialIndex index = new HologramSpatialIndex();
+    private final World world = world("world");
+
+    @Test
+    void testUpdateReportsCellChangesOnly() {
+        DefaultHologram hologram = hologram(48);
+
+        assertTrue(index.update(hologram, new Location(world, 0, 64, 0)));
+        assertFalse(index.update(hologram, new Location(world, 15, 80, 15)));
+        assertTrue(index.update(hologram, new Location(world, 16, 64, 0)));
+        assertTrue(index.update(hologram, new Location(world("other"), 16, 64, 0)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testMaxViewDistanceShrinksWhenHologramIsRemoved() {
+        DefaultHologram near = hologram(48);
+        DefaultHologram far = hologram(200);
+        index.update(near, new Location(world, 0, 64, 0));
+        index.update(far, new Location(world, 100, 64, 100));
+        assertEquals(200, index.getMaxViewDistance());
+
+        index.remove(far);
+        assertEquals(48, index.getMaxViewDistance());
+        index.remove(near);
+        assertEquals(0, index.getMaxViewDistance());
+    }
+
+    @Test
+    void testMaxViewDistanceFollowsViewDistanceChanges() {
+        DefaultHologram first = hologram(48);
+        DefaultHologram second = hologram(48);
+        index.update(first, new Location(world, 0, 64, 0));
+        index.update(second, new Location(world, 0, 64, 0));
+
+        when(first.getSettings().getViewDistance()).thenReturn(128);
+        index.update(first, new Location(world, 0, 64, 0));
+        assertEquals(128, index.getMaxViewDistance());
+
+        when(first.getSettings().getViewDistance()).thenReturn(32);
+        index.update(first, new Location(world, 0, 64, 0));
+        // The second hologram still counts with its own view distance.
+        assertEquals(48, index.getMaxViewDistance());
+    }
+
+    @Test
+    void testNearbyQueryRadiusShrinksWithMaxViewDistance() {
+        DefaultHologram near = hologram(16);
+        DefaultHologram far = hologram(160);
+        index.update(near, new Location(world, 0, 64, 0));
+        index.update(far, new Location(world, 1000, 64, 1000));
+
+        // A player 5 cells away finds the near hologram only while the radius is wide.
+        Location player = new Location(world, 80, 64, 0);
+        assertTrue(nearby(player).contains(near));
+        index.remove(far);
+        assertFalse(nearby(player).contains(near));
+        assertTrue(nearby(new Location(world, 20, 64, 0)).contains(near));
+    }
+
+    @Test
+    void testRemovedHologramIsNotFound() {
+        DefaultHologram hologram = hologram(48);
+        index.update(hologram, new Location(world, 0, 64, 0));
+
+        assertTrue(index.remove(hologram));
+        assertFalse(index.remove(hologram));
+        assertFalse(index.contains(hologram));
+        assertTrue(nearby(new Location(world, 0, 64, 0)).isEmpty());
+    }
+
+    @Test
+    void testNearbyPlayersAreFoundWithinDistance() {
+        Player near = player(new Location(world, 40, 64, 0));
+        Player edge = player(new Location(world, 0, 64, 47));
+        Player far = player(new Location(world, 200, 64, 0));
+        Player elsewhere = player(new Location(world("other"), 0, 64, 0));
+        index.updatePlayer(near);
+        index.updatePlayer(edge);
+        index.updatePlayer(far);
+        index.updatePlayer(elsewhere);
+
+        Set<Player> players = nearbyPlayers(new Location(world, 0, 64, 0), 48);
+        assertTrue(players.contains(near));
+        assertTrue(players.contains(edge));
+        assertFalse(players.contains(far));
+        assertFalse(players.contains(elsewhere));
+    }
+
+    @Test
+    void testPlayersFollowTheirLocation() {
+        Player player = player(new Location(world, 0, 64, 0));
+        index.updatePlayer(player);
+        assertTrue(nearbyPlayers(new Location(world, 0, 64, 0), 16).contains(player));
+
+        when(player.getLocation()).thenReturn(new Location(world, 500, 64, 0));
+        index.updatePlayer(player);
+        assertFalse(nearbyPlayers(new Location(world, 0, 64, 0), 16).contains(player));
+        assertTrue(nearbyPlayers(new Location(world, 500, 64, 0), 16).contains(player));
+
+        index.removePlayer(player);
+        assertTrue(nearbyPlayers(new Location(world, 500, 64, 0), 16).isEmpty());
+    }
+
+    @Test
+    void testPlayersDoNotWidenTheHologramQueries() {
+        index.updatePlayer(player(new Location(world, 0, 64, 0)));
+        assertEquals(0, index.getMaxViewDistance());
+        assertEquals(0, index.size());
+    }
+
+    @NotNull
+    private Set<Player> nearbyPlayers(@NotNull Location location, int distance) {
+        Set<Player> players = new HashSet<>();
+        index.forEachNearbyPlayer(location, distance, players::add);
+        return players;
+    }
+
+    @NotNull
+    private static Player player(@NotNull Location location) {
+        Player player = mock(Player.class);
+        when(player.getLocation()).thenReturn(location);
+        return player;
+    }
+
+    @NotNull
+    private Set<DefaultHologram> nearby(@NotNull Location location) {
+        Set<DefaultHologram> holograms = new HashSet<>();
+        index.forEachNearby(location, holograms::add);
+        return holograms;
+    }
+
+    @NotNull
+    private static DefaultHologram hologram(int viewDistance) {
+        HologramSettings settings = mock(HologramSettings.class);
+        when(settings.getViewDistance()).thenReturn(viewDistance);
+        DefaultHologram hologram = mock(DefaultHologram.class);
+        when(hologram.getSettings()).thenReturn(settings);
+        return hologram;
+    }
+
+    @NotNull
+    private static World world(@NotNull String name) {
+        World world = mock(World.class);
+        when(world.getName()).thenReturn(name);
+        return world;
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram;
+
+import com.google.common.util.concurrent.Striped;
+import eu.decentsoftware.holograms.profile.Profile;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+import static eu.decentsoftware.holograms.hologram.VisibilityState.HIDDEN;
+import static eu.decentsoftware.holograms.hologram.VisibilityState.VIEWER;
+import static eu.decentsoftware.holograms.hologram.VisibilityState.VISIBLE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Hammers one {@link VisibilityState} with joins, quits, teleports and page switches
+ * from many threads, while another thread keeps iterating the viewers. The updates
+ * of a slot are guarded by a striped lock, the same way {@link DefaultHologramVisibilityManager}
+ * guards them. Every update is mirrored in a plain model under the same lock, so at
+ * the end, the state has to match the model exactly. Slots of the same segment share
+ * their flag words, so a lost update of one slot would show up as a mismatch.
+ */
+class VisibilityStateStressTest {
+
+    private static final int SLOTS = 300;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 200_000;
+    private static final int PAGES = 5;
+    private static final int PROFILES_PER_SLOT = 4;
+
+    private final Striped<Lock> locks = Striped.lock(16);
+    private final VisibilityState state = new VisibilityState();
+    private final Model[] models = new Model[SLOTS];
+    private final Profile[][] profiles = new Profile[SLOTS][PROFILES_PER_SLOT];
+
+    @Test
+    void testConcurrentJoinsQuitsTeleportsAndPageSwitches() throws Exception {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            models[slot] = new Model();
+            for (int i = 0; i < PROFILES_PER_SLOT; i++) {
+                Profile profile = mock(Profile.class, withSettings().stubOnly());
+                when(profile.getSlot()).thenReturn(slot);
+                profiles[slot][i] = profile;
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int operation = 0; operation < OPERATIONS; operation++) {
+                        int slot = random.nextInt(SLOTS);
+                        Lock lock = locks.get(slot);
+                        lock.lock();
+                        try {
+                            switch (random.nextInt(4)) {
+                                case 0:
+                                    join(slot, profiles[slot][random.nextInt(PROFILES_PER_SLOT)]);
+                                    break;
+                                case 1:
+                                    quit(slot);
+                                    break;
+                                case 2:
+                                    teleport(slot, 1 + random.nextInt(10));
+                                    break;
+                                default:
+                                    switchPage(slot, random.nextInt(PAGES));
+                                    break;
+                            }
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            Future<?> reader = executor.submit(() -> {
+                start.await();
+                while (running.get()) {
+                    // Iterating never blocks, so it has to cope with the state changing under it.
+                    state.forEach(VIEWER, (slot) -> assertTrue(slot >= 0 && slot < SLOTS, "Invalid slot: " + slot));
+                }
+                return null;
+            });
+
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(2, TimeUnit.MINUTES);
+            }
+            running.set(false);
+            reader.get(1, TimeUnit.MINUTES);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+
+        for (int slot = 0; slot < SLOTS; slot++) {
+            Model model = models[slot];
+            assertSame(model.owner, state.getOwner(slot), "Owner of slot " + slot);
+            assertEquals(model.viewer, state.get(VIEWER, slot), "Viewer flag of slot " + slot);
+            assertEquals(model.visible, state.get(VISIBLE, slot), "Visible flag of slot " + slot);
+            assertEquals(false, state.get(HIDDEN, slot), "Hidden flag of slot " + slot);
+            assertEquals(model.page, state.getPage(slot), "Page of slot " + slot);
+            assertEquals(model.entities, state.getEntities(slot), "Entities of slot " + slot);
+        }
+
+        // Each slot reported by the iteration must be a viewer in the model.
+        state.forEach(VIEWER, (slot) -> assertTrue(models[slot].viewer, "Unexpected viewer: " + slot));
+    }
+
+    private void join(int slot, Profile profile) {
+        // Another profile may take over the slot, like a player joining after the previous one quit.
+        assertEquals(slot, state.claim(profile));
+        state.set(VISIBLE, slot, true);
+
+        Model model = models[slot];
+        if (model.owner != profile) {
+            model.reset();
+            model.owner = profile;
+        }
+        model.visible = true;
+    }
+
+    private void quit(int slot) {
+        state.reset(slot);
+        models[slot].reset();
+    }
+
+    private void teleport(int slot, int entities) {
+        Model model = models[slot];
+        if (model.owner == null) {
+            return;
+        }
+        // Hide and show again, like the teleport listener does.
+        state.set(VIEWER, slot, false);
+        state.setEntities(slot, 0);
+        state.set(VIEWER, slot, true);
+        state.setEntities(slot, entities);
+        model.viewer = true;
+        model.entities = entities;
+    }
+
+    private void switchPage(int slot, int page) {
+        Model model = models[slot];
+        if (model.owner == null) {
+            return;
+        }
+        state.setPage(slot, page);
+        state.set(VIEWER, slot, false);
+        state.setEntities(slot, 0);
+        model.page = page;
+        model.viewer = false;
+        model.entities = 0;
+    }
+
+    private static class Model {
+
+        private Profile owner;
+        private boolean viewer;
+        private boolean visible;
+        private int page;
+        private int entities;
+
+        private void reset() {
+            owner = null;
+            viewer = false;
+            visible = false;
+            page = 0;
+            entities = 0;
+        }
+
+    }
+
+}
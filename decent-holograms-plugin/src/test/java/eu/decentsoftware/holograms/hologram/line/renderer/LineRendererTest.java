@@ -0,0 +1,208 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram.line.renderer;
+
+import eu.decentsoftware.holograms.Config;
+import eu.decentsoftware.holograms.TestPlugin;
+import eu.decentsoftware.holograms.api.hologram.line.HologramLine;
+import eu.decentsoftware.holograms.api.hologram.line.HologramLineType;
+import eu.decentsoftware.holograms.nms.NMSAdapter;
+import eu.decentsoftware.holograms.profile.Profile;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the movement threshold of {@link LineRenderer#teleportEntity(Player, int, Location)}
+ * and its choice between relative moves and absolute teleports.
+ */
+class LineRendererTest {
+
+    private static final int EID = 42;
+
+    private final double threshold = Config.MOVEMENT_THRESHOLD;
+    private final boolean relativeMoves = Config.MOVEMENT_RELATIVE_MOVES;
+    private NMSAdapter adapter;
+    private Player player;
+    private LineRenderer renderer;
+
+    @BeforeEach
+    void setUp() {
+        TestPlugin.reset();
+        adapter = TestPlugin.getAdapter();
+        player = mock(Player.class);
+        UUID uuid = UUID.randomUUID();
+        when(player.getUniqueId()).thenReturn(uuid);
+        Profile profile = mock(Profile.class);
+        when(profile.getSlot()).thenReturn(0);
+        when(TestPlugin.get().getProfileRegistry().getProfile(uuid)).thenReturn(profile);
+        renderer = new TestRenderer(mock(HologramLine.class));
+
+        Config.MOVEMENT_THRESHOLD = 0.01d;
+        Config.MOVEMENT_RELATIVE_MOVES = true;
+    }
+
+    @AfterEach
+    void tearDown() {
+        Config.MOVEMENT_THRESHOLD = threshold;
+        Config.MOVEMENT_RELATIVE_MOVES = relativeMoves;
+    }
+
+    @Test
+    void testUnknownPositionIsTeleported() {
+        Location location = location(0, 64, 0);
+        renderer.teleportEntity(player, EID, location);
+
+        verify(adapter).teleportEntity(player, EID, location, false);
+        verifyNoMove();
+    }
+
+    @Test
+    void testMovementBelowThresholdIsNotSent() {
+        renderer.setLastPosition(player, location(0, 64, 0));
+        renderer.teleportEntity(player, EID, location(0.005, 64, 0));
+
+        verifyNoTeleport();
+        verifyNoMove();
+    }
+
+    @Test
+    void testSmallMovementsAddUp() {
+        when(adapter.moveEntity(any(), anyInt(), anyDouble(), anyDouble(), anyDouble(),
+                anyDouble(), anyDouble(), anyDouble(), anyBoolean())).thenReturn(true);
+        renderer.setLastPosition(player, location(0, 64, 0));
+        renderer.teleportEntity(player, EID, location(0.004, 64, 0));
+        renderer.teleportEntity(player, EID, location(0.008, 64, 0));
+        verifyNoMove();
+
+        // The third step is compared with the last position sent, not the previous step.
+        renderer.teleportEntity(player, EID, location(0.012, 64, 0));
+        verify(adapter).moveEntity(player, EID, 0, 64, 0, 0.012, 64, 0, false);
+        verifyNoTeleport();
+    }
+
+    @Test
+    void testMovementAboveThresholdIsSentAsRelativeMove() {
+        when(adapter.moveEntity(any(), anyInt(), anyDouble(), anyDouble(), anyDouble(),
+                anyDouble(), anyDouble(), anyDouble(), anyBoolean())).thenReturn(true);
+        renderer.setLastPosition(player, location(0, 64, 0));
+        renderer.teleportEntity(player, EID, location(1, 65, 2));
+
+        verify(adapter).moveEntity(player, EID, 0, 64, 0, 1, 65, 2, false);
+        verifyNoTeleport();
+
+        // The next move starts at the position sent last.
+        renderer.teleportEntity(player, EID, location(2, 65, 2));
+        verify(adapter).moveEntity(player, EID, 1, 65, 2, 2, 65, 2, false);
+    }
+
+    @Test
+    void testTooLongMovementIsTeleported() {
+        // The adapter refuses relative moves, that are too long.
+        renderer.setLastPosition(player, location(0, 64, 0));
+        Location location = location(100, 64, 0);
+        renderer.teleportEntity(player, EID, location);
+
+        verify(adapter).teleportEntity(player, EID, location, false);
+    }
+
+    @Test
+    void testMovementIsTeleportedWithoutRelativeMoves() {
+        Config.MOVEMENT_RELATIVE_MOVES = false;
+        renderer.setLastPosition(player, location(0, 64, 0));
+        Location location = location(1, 64, 0);
+        renderer.teleportEntity(player, EID, location);
+
+        verify(adapter).teleportEntity(player, EID, location, false);
+        verifyNoMove();
+    }
+
+    @Test
+    void testRotationIsTeleportedEvenBelowThreshold() {
+        renderer.setLastPosition(player, location(0, 64, 0));
+        Location location = location(0, 64, 0);
+        location.setYaw(90f);
+        renderer.teleportEntity(player, EID, location);
+
+        verify(adapter).teleportEntity(player, EID, location, false);
+        verifyNoMove();
+    }
+
+    @Test
+    void testHiddenPlayerIsTeleported() {
+        renderer.setLastPosition(player, location(0, 64, 0));
+        renderer.resetLastPosition(player);
+        Location location = location(0.005, 64, 0);
+        renderer.teleportEntity(player, EID, location);
+
+        verify(adapter).teleportEntity(player, EID, location, false);
+    }
+
+    private void verifyNoTeleport() {
+        verify(adapter, never()).teleportEntity(any(), anyInt(), any(), anyBoolean());
+    }
+
+    private void verifyNoMove() {
+        verify(adapter, never()).moveEntity(any(), anyInt(), anyDouble(), anyDouble(), anyDouble(),
+                anyDouble(), anyDouble(), anyDouble(), anyBoolean());
+    }
+
+    @NotNull
+    private static Location location(double x, double y, double z) {
+        return new Location(null, x, y, z);
+    }
+
+    private static class TestRenderer extends LineRenderer {
+
+        TestRenderer(@NotNull HologramLine parent) {
+            super(parent, HologramLineType.TEXT);
+        }
+
+        @Override
+        public void display(@NotNull Player player) {
+            // Not needed in these tests.
+        }
+
+        @Override
+        public void update(@NotNull Player player) {
+            // Not needed in these tests.
+        }
+
+        @Override
+        public void teleport(@NotNull Player player, @NotNull Location location) {
+            // Not needed in these tests.
+        }
+
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.hologram.line.renderer;
+
+import eu.decentsoftware.holograms.Config;
+import eu.decentsoftware.holograms.DecentHolograms;
+import eu.decentsoftware.holograms.TestPlugin;
+import eu.decentsoftware.holograms.api.hologram.line.HologramLine;
+import eu.decentsoftware.holograms.hologram.line.content.ContentScope;
+import eu.decentsoftware.holograms.nms.NMSAdapter;
+import eu.decentsoftware.holograms.profile.Profile;
+import eu.decentsoftware.holograms.replacements.ReplacementRegistry;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatcher;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests how {@link TextLineRenderer#update(Collection)} renders the text and fans out
+ * the metadata to the viewers, depending on the scope of the text.
+ */
+class TextLineRendererTest {
+
+    private static final Object PACKET = new Object();
+
+    private final boolean sharedEncoding = Config.PACKETS_SHARED_ENCODING;
+    private NMSAdapter adapter;
+    private ReplacementRegistry replacements;
+    private int nextSlot;
+
+    @BeforeEach
+    void setUp() {
+        TestPlugin.reset();
+        DecentHolograms plugin = TestPlugin.get();
+        adapter = TestPlugin.getAdapter();
+        replacements = plugin.getReplacementRegistry();
+        when(replacements.replace(anyString(), any())).thenAnswer((invocation) -> invocation.getArgument(0));
+        when(adapter.getMetaEntityCustomName(anyString())).thenAnswer((invocation) -> "name:" + invocation.getArgument(0));
+        when(adapter.createEntityMetadataPacket(anyInt(), anyList())).thenReturn(PACKET);
+        Config.PACKETS_SHARED_ENCODING = true;
+    }
+
+    @AfterEach
+    void tearDown() {
+        Config.PACKETS_SHARED_ENCODING = sharedEncoding;
+    }
+
+    @Test
+    void testStaticLineIsNeverUpdated() {
+        TextLineRenderer renderer = renderer("Hello", ContentScope.STATIC);
+        clearInvocations(replacements);
+
+        renderer.update(Arrays.asList(player(), player(), player()));
+
+        verify(replacements, never()).replace(anyString(), any());
+        verifyNothingSent();
+    }
+
+    @Test
+    void testGlobalLineIsRenderedOnceAndShared() {
+        TextLineRenderer renderer = renderer("{time}", ContentScope.GLOBAL);
+        clearInvocations(replacements);
+        List<Player> players = Arrays.asList(player(), player(), player());
+
+        renderer.update(players);
+
+        verify(replacements, times(1)).replace(eq("{time}"), isNull());
+        verify(adapter, times(1)).createEntityMetadataPacket(anyInt(), anyList());
+        verify(adapter).sendSharedPacket(argThat(sameElements(players)), eq(PACKET));
+        verify(adapter, never()).sendEntityMetadata(any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void testGlobalLineIsOnlySentToViewersThatDontSeeItYet() {
+        TextLineRenderer renderer = renderer("{time}", ContentScope.GLOBAL);
+        Player viewer = player();
+        renderer.update(Collections.singletonList(viewer));
+        clearInvocations(adapter);
+
+        Player newViewer = player();
+        renderer.update(Arrays.asList(viewer, newViewer));
+
+        // Only the new viewer gets the text, so the packet isn't shared.
+        verify(adapter).sendEntityMetadata(eq(newViewer), anyInt(), eq("name:{time}"), any());
+        verify(adapter, never()).sendEntityMetadata(eq(viewer), anyInt(), any(), any());
+        verify(adapter, never()).sendSharedPacket(any(), any());
+    }
+
+    @Test
+    void testPlayerLineIsGroupedByText() {
+        Player first = player();
+        Player second = player();
+        Player third = player();
+        TextLineRenderer renderer = renderer("{player}", ContentScope.PLAYER);
+        Profile thirdProfile = TestPlugin.get().getProfileRegistry().getProfile(third.getUniqueId());
+        when(replacements.replace(eq("{player}"), any()))
+                .thenAnswer((invocation) -> invocation.getArgument(1) == thirdProfile ? "Bye" : "Hello");
+
+        renderer.update(Arrays.asList(first, second, third));
+
+        // The first two viewers share one packet, the third one gets its own text.
+        verify(adapter, times(1)).createEntityMetadataPacket(anyInt(), anyList());
+        verify(adapter).sendSharedPacket(argThat(sameElements(Arrays.asList(first, second))), eq(PACKET));
+        verify(adapter).sendEntityMetadata(eq(third), anyInt(), eq("name:Bye"), any());
+        verify(replacements, times(3)).replace(eq("{player}"), any());
+    }
+
+    @Test
+    void testPlayerLineWithOneViewerIsSentDirectly() {
+        Player viewer = player();
+        TextLineRenderer renderer = renderer("{player}", ContentScope.PLAYER);
+
+        renderer.update(Collections.singletonList(viewer));
+
+        verify(adapter).sendEntityMetadata(eq(viewer), anyInt(), eq("name:{player}"), any());
+        verify(adapter, never()).createEntityMetadataPacket(anyInt(), anyList());
+        verify(adapter, never()).sendSharedPacket(any(), any());
+    }
+
+    private void verifyNothingSent() {
+        verify(adapter, never()).createEntityMetadataPacket(anyInt(), anyList());
+        verify(adapter, never()).sendSharedPacket(any(), any());
+        verify(adapter, never()).sendEntityMetadata(any(), anyInt(), any(), any());
+    }
+
+    @NotNull
+    private TextLineRenderer renderer(@NotNull String text, @NotNull ContentScope scope) {
+        return new TextLineRenderer(mock(HologramLine.class), text, null, scope);
+    }
+
+    /**
+     * Create a viewer with its own profile and slot.
+     */
+    @NotNull
+    private Player player() {
+        Player player = mock(Player.class);
+        UUID uuid = UUID.randomUUID();
+        when(player.getUniqueId()).thenReturn(uuid);
+        Profile profile = mock(Profile.class);
+        when(profile.getSlot()).thenReturn(nextSlot++);
+        when(TestPlugin.get().getProfileRegistry().getProfile(uuid)).thenReturn(profile);
+        return player;
+    }
+
+    @NotNull
+    private static ArgumentMatcher<Collection<? extends Player>> sameElements(@NotNull List<Player> players) {
+        return (collection) -> collection != null && collection.size() == players.size()
+                && new HashSet<>(collection).equals(new HashSet<>(players));
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.decentsoftware.holograms.replacements;
+
+import eu.decentsoftware.holograms.Config;
+import eu.decentsoftware.holograms.TestPlugin;
+import eu.decentsoftware.holograms.hologram.line.content.ContentScope;
+import eu.decentsoftware.holograms.utils.config.FileConfig;
+import org.bukkit.configuration.ConfigurationSection;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the scope classification of {@link ReplacementRegistry#getScope(String)},
+ * which tells the text renderers whether a line has to be rendered per player.
+ */
+class ReplacementRegistryTest {
+
+    private static ReplacementRegistry registry;
+
+    @BeforeAll
+    static void setUp() throws ReflectiveOperationException {
+        // PlaceholderAPI is looked up through the plugin manager of the test server,
+        // on which it's never enabled.
+        TestPlugin.get();
+
+        // One custom replacement in the config.
+        FileConfig config = mock(FileConfig.class);
+        ConfigurationSection section = mock(ConfigurationSection.class);
+        when(config.getConfigurationSection("replacements")).thenReturn(section);
+        when(section.getKeys(false)).thenReturn(Collections.singleton("%custom%"));
+        when(config.getString("replacements.%custom%")).thenReturn("value");
+        setConfig(config);
+
+        registry = new ReplacementRegistry();
+    }
+
+    @AfterAll
+    static void tearDown() throws ReflectiveOperationException {
+        setConfig(null);
+    }
+
+    @Test
+    void testTextWithoutPlaceholdersIsStatic() {
+        assertEquals(ContentScope.STATIC, registry.getScope("Hello world"));
+        assertEquals(ContentScope.STATIC, registry.getScope(""));
+    }
+
+    @Test
+    void testUnknownPlaceholdersAreStatic() {
+        assertEquals(ContentScope.STATIC, registry.getScope("{unknown}"));
+        assertEquals(ContentScope.STATIC, registry.getScope("{unknown:argument}"));
+    }
+
+    @Test
+    void testGlobalPlaceholdersAreGlobal() {
+        assertEquals(ContentScope.GLOBAL, registry.getScope("It's {time}"));
+        assertEquals(ContentScope.GLOBAL, registry.getScope("{date}{space:4}{motd}"));
+        assertEquals(ContentScope.GLOBAL, registry.getScope("Online: {online}"));
+    }
+
+    @Test
+    void testPlayerPlaceholdersArePlayer() {
+        assertEquals(ContentScope.PLAYER, registry.getScope("Hi {player}"));
+        assertEquals(ContentScope.PLAYER, registry.getScope("{displayname}"));
+        assertEquals(ContentScope.PLAYER, registry.getScope("{uuid}"));
+    }
+
+    @Test
+    void testPlayerPlaceholderWinsOverGlobalOnes() {
+        assertEquals(ContentScope.PLAYER, registry.getScope("{time} {player}"));
+        assertEquals(ContentScope.PLAYER, registry.getScope("{player} {time}"));
+    }
+
+    @Test
+    void testScopeDependsOnTheArgument() {
+        // Without an argument, these refer to the world or the server of the player.
+        assertEquals(ContentScope.PLAYER, registry.getScope("{world}"));
+        assertEquals(ContentScope.GLOBAL, registry.getScope("{world:world_nether}"));
+        assertEquals(ContentScope.GLOBAL, registry.getScope("{max_players}"));
+        assertEquals(ContentScope.PLAYER, registry.getScope("{max_players:lobby}"));
+        assertEquals(ContentScope.PLAYER, registry.getScope("{online:lobby}"));
+    }
+
+    @Test
+    void testCustomReplacementsAreGlobal() {
+        assertEquals(ContentScope.GLOBAL, registry.getScope("Custom: %custom%"));
+        assertEquals(ContentScope.PLAYER, registry.getScope("%custom% {player}"));
+    }
+
+    private static void setConfig(FileConfig config) throws ReflectiveOperationException {
+        Field field = Config.class.getDeclaredField("config");
+        field.setAccessible(true);
+        field.set(null, config);
+    }
+
+}
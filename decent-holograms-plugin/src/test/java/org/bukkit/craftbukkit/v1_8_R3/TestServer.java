@@ -0,0 +1,28 @@
+/*
+ * DecentHolograms
+ * Copyright (C) DecentSoftware.eu
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.bukkit.craftbukkit.v1_8_R3;
+
+import org.bukkit.Server;
+
+/**
+ * The server used by the tests. The NMS version is read from the package of the
+ * server class (see {@code Version#CURRENT}), so this server is a 1.8 one.
+ */
+public abstract class TestServer implements Server {
+}